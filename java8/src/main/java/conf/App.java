@@ -4,8 +4,8 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.time.Year;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -108,15 +108,20 @@ public class App {
      * Create a map of shirt sizes to counts per shirt size to be ordered
      *
      * @param theConference - the current conference
-     * @return - a Map of shirt size to counts per size
+     * @return - a Map of shirt size label to counts per size; sizes ShirtSize
+     *           does not know are counted as given, after the known ones
      */
     static Map<String, Integer> determineShirtCount(Conference theConference) {
-        Map<String, Integer> shirtCountMap = new HashMap<>();
-        for (Speaker speaker : theConference.getSpeakers()) {
-            String shirtSize = speaker.getShirtSize();
-            shirtCountMap.putIfAbsent(shirtSize, ZERO_INTEGER);
-            shirtCountMap.compute(shirtSize, (k, currentCount) -> currentCount + 1);
+        // Counted by ordinal over the shirt size column rather than the speaker objects
+        ConferenceColumns columns = theConference.getColumns();
+        int[] counts = columns.countShirtSizes();
+        Map<String, Integer> shirtCountMap = new LinkedHashMap<>();
+        for (ShirtSize shirtSize : ShirtSize.values()) {
+            if (counts[shirtSize.ordinal()] > 0) {
+                shirtCountMap.put(shirtSize.getLabel(), counts[shirtSize.ordinal()]);
+            }
         }
+        shirtCountMap.putAll(columns.countOtherShirtSizes());
         return shirtCountMap;
     }
 
@@ -147,15 +152,19 @@ public class App {
      * Create a map of hat sizes to counts per hat size to be ordered
      *
      * @param theConference - the current conference
-     * @return - a Map of hat size to counts per size
+     * @return - a Map of hat size label to counts per size; sizes HatSize
+     *           does not know are counted as given, after the known ones
      */
     static Map<String, Integer> determineHatCount(Conference theConference) {
-        Map<String, Integer> hatCountMap = new HashMap<>();
-        for (Staff staff : theConference.getStaff()) {
-            String hatSize = staff.getHatSize();
-            hatCountMap.putIfAbsent(hatSize, ZERO_INTEGER);
-            hatCountMap.compute(hatSize, (k, currentCount) -> currentCount + 1);
+        ConferenceColumns columns = theConference.getColumns();
+        int[] counts = columns.countHatSizes();
+        Map<String, Integer> hatCountMap = new LinkedHashMap<>();
+        for (HatSize hatSize : HatSize.values()) {
+            if (counts[hatSize.ordinal()] > 0) {
+                hatCountMap.put(hatSize.getLabel(), counts[hatSize.ordinal()]);
+            }
         }
+        hatCountMap.putAll(columns.countOtherHatSizes());
         return hatCountMap;
     }
 
@@ -186,18 +195,21 @@ public class App {
      */
     static void displayPaymentInvoicing(Conference theConference) {
         double processingFee = 0.0D;
-        for (Attendee attendee : theConference.getAttendees()) {
+        // One count per payment type from the payment type column, then one fee per type
+        int[] paymentTypeCounts = theConference.getColumns().countPaymentTypes();
+        for (PaymentType paymentType : PaymentType.values()) {
+            int count = paymentTypeCounts[paymentType.ordinal()];
             //FIXME_5_: Switch Expressions: Improve readability
-            switch (attendee.getPaymentType()) {
+            switch (paymentType) {
                 case AMEX:
-                    processingFee += 0.10D;
+                    processingFee += count * 0.10D;
                     break;
                 case VISA:
                 case MASTERCARD:
-                    processingFee += 0.08D;
+                    processingFee += count * 0.08D;
                     break;
                 case PAYPAL:
-                    processingFee += 0.11D;
+                    processingFee += count * 0.11D;
                     break;
             }
         }
@@ -235,46 +247,22 @@ public class App {
      * @param theConference - the current conference
      */
     static void displayRaffleWinners(Conference theConference) {
-        List<String> allowedWinnerPool = new ArrayList<>();
-
-        allowedWinnerPool.addAll(
-                theConference.getAttendees().stream().map(Attendee::getUniqueId).collect(Collectors.toList()));
-        allowedWinnerPool.addAll(
-                theConference.getSpeakers().stream().map(Speaker::getUniqueId).collect(Collectors.toList()));
-        allowedWinnerPool.addAll(
-                theConference.getVendorSponsors().stream().map(VendorSponsor::getUniqueId).collect(Collectors.toList()));
-        int[] winners = {-1, -1, -1};
-        for (int i = 0; i < winners.length; i++) {
-            winners[i] = ThreadLocalRandom.current().nextInt(0, allowedWinnerPool.size());
-        }
-        while (winners[1] == winners[0]) {
-            winners[1] = ThreadLocalRandom.current().nextInt(0, allowedWinnerPool.size());
-        }
-        while (winners[2] == winners[1] || winners[2] == winners[0]) {
-            winners[2] = ThreadLocalRandom.current().nextInt(0, allowedWinnerPool.size());
-        }
+        PersonSet allowedWinnerPool = theConference.newPersonSet();
+        allowedWinnerPool.addAll(theConference.getAttendees());
+        allowedWinnerPool.addAll(theConference.getSpeakers());
+        allowedWinnerPool.addAll(theConference.getVendorSponsors());
 
         AllowedPerson[] allowedPersonWinner = new AllowedPerson[3];
-
-        for (int i = 0; i < winners.length; i++) {
-            for (Attendee attendee : theConference.getAttendees()) {
-                if (attendee.getUniqueId().equals(allowedWinnerPool.get(winners[i]))) {
-                    allowedPersonWinner[i] = attendee;
-                    break;
-                }
-            }
-            for (Speaker speaker : theConference.getSpeakers()) {
-                if (speaker.getUniqueId().equals(allowedWinnerPool.get(winners[i]))) {
-                    allowedPersonWinner[i] = speaker;
-                    break;
-                }
-            }
-            for (VendorSponsor vendorSponsor : theConference.getVendorSponsors()) {
-                if (vendorSponsor.getUniqueId().equals(allowedWinnerPool.get(winners[i]))) {
-                    allowedPersonWinner[i] = vendorSponsor;
-                    break;
-                }
+        PersonSet alreadyWon = theConference.newPersonSet();
+        for (int i = 0; i < allowedPersonWinner.length; i++) {
+            PersonSet stillEligible = allowedWinnerPool.difference(alreadyWon);
+            if (stillEligible.isEmpty()) {
+                break;
             }
+            List<AllowedPerson> eligible = new ArrayList<>(stillEligible.size());
+            stillEligible.forEach(eligible::add);
+            allowedPersonWinner[i] = eligible.get(ThreadLocalRandom.current().nextInt(0, eligible.size()));
+            alreadyWon.add(allowedPersonWinner[i]);
         }
 
         boolean allowedPersonFound = false;
@@ -291,7 +279,7 @@ public class App {
                 Speaker speaker = (Speaker) allowedPerson;
                 System.out.println("Winner is a speaker: " +
                         speaker.getFirstName() + " " + speaker.getLastName() +
-                        ", shirt size: " + speaker.getShirtSize());
+                        ", shirt size: " + speaker.getShirtSizeLabel());
                 allowedPersonFound = true;
             }
             if (allowedPerson instanceof VendorSponsor) {
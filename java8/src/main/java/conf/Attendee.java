@@ -1,17 +1,33 @@
 package conf;
 
-import java.util.UUID;
-
 public class Attendee extends AllowedPerson {
     private PaymentType paymentType;
-    private final String uniqueId = UUID.randomUUID().toString();
+    private final PersonId uniqueId;
 
     public Attendee(String firstName, String lastName, PaymentType paymentType) {
+        this(firstName, lastName, requirePaymentType(paymentType), PersonId.random());
+    }
+
+    /**
+     * Recreates a previously registered attendee, keeping its unique id. The
+     * payment type may be null here, as a stored attendee can have none (see
+     * {@link #setPaymentType}).
+     */
+    public Attendee(String firstName, String lastName, PaymentType paymentType, String uniqueId) {
+        this(firstName, lastName, paymentType, PersonId.of(uniqueId));
+    }
+
+    public Attendee(String firstName, String lastName, PaymentType paymentType, PersonId uniqueId) {
         super(firstName, lastName);
+        this.paymentType = paymentType;
+        this.uniqueId = uniqueId;
+    }
+
+    private static PaymentType requirePaymentType(PaymentType paymentType) {
         if(paymentType == null) {
             throw new IllegalArgumentException("Invalid Payment type");
         }
-        this.paymentType = paymentType;
+        return paymentType;
     }
 
     public PaymentType getPaymentType() {
@@ -23,6 +39,10 @@ public class Attendee extends AllowedPerson {
     }
 
     public String getUniqueId() {
+        return uniqueId == null ? null : uniqueId.toString();
+    }
+
+    public PersonId getId() {
         return uniqueId;
     }
 
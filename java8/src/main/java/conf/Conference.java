@@ -2,7 +2,11 @@ package conf;
 
 import java.time.Year;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class Conference {
@@ -18,6 +22,18 @@ public class Conference {
     private AllowedPerson winner1;
     private AllowedPerson winner2;
     private AllowedPerson winner3;
+    // Attendees, speakers and vendors by uniqueId; built on first lookup, since
+    // Gson fills the fields without going through the setters
+    private transient PersonIdMap<AllowedPerson> peopleById;
+    // Everyone numbered so far, staff included, by number; kept here so a
+    // person in two conferences has a number in each
+    private transient List<AllowedPerson> peopleByNumber;
+    // The numbers of attendees, speakers and vendors by uniqueId, so a PersonSet
+    // finds one with a single probe; kept after the person is removed
+    private transient PersonIdMap<Integer> numbersById;
+    // Staff have no uniqueId, and there are few of them
+    private transient Map<AllowedPerson, Integer> otherNumbers;
+    private transient ConferenceColumns columns;
 
     public Conference(String name, String nickName, Year year, String venue) {
         this.name = name;
@@ -48,6 +64,16 @@ public class Conference {
 
     public void setStaff(Set<Staff> staff) {
         this.staff = staff;
+        columns = null;
+    }
+
+    public void addStaff(Staff member) {
+        if (staff == null) {
+            staff = new LinkedHashSet<>();
+        }
+        staff.add(member);
+        personNumber(member);
+        columns = null;
     }
 
     public Set<Speaker> getSpeakers() {
@@ -56,6 +82,18 @@ public class Conference {
 
     public void setSpeakers(Set<Speaker> speakers) {
         this.speakers = speakers;
+        peopleById = null;
+        columns = null;
+    }
+
+    public void addSpeaker(Speaker speaker) {
+        if (speakers == null) {
+            speakers = new LinkedHashSet<>();
+        }
+        speakers.add(speaker);
+        registered(speaker.getId(), speaker);
+        personNumber(speaker);
+        columns = null;
     }
 
     public Set<Attendee> getAttendees() {
@@ -64,6 +102,18 @@ public class Conference {
 
     public void setAttendees(Set<Attendee> attendees) {
         this.attendees = attendees;
+        peopleById = null;
+        columns = null;
+    }
+
+    public void addAttendee(Attendee attendee) {
+        if (attendees == null) {
+            attendees = new LinkedHashSet<>();
+        }
+        attendees.add(attendee);
+        registered(attendee.getId(), attendee);
+        personNumber(attendee);
+        columns = null;
     }
 
     public Set<VendorSponsor> getVendorSponsors() {
@@ -72,6 +122,92 @@ public class Conference {
 
     public void setVendorSponsors(Set<VendorSponsor> vendorSponsors) {
         this.vendorSponsors = vendorSponsors;
+        peopleById = null;
+    }
+
+    public void addVendorSponsor(VendorSponsor vendorSponsor) {
+        if (vendorSponsors == null) {
+            vendorSponsors = new LinkedHashSet<>();
+        }
+        vendorSponsors.add(vendorSponsor);
+        registered(vendorSponsor.getId(), vendorSponsor);
+        personNumber(vendorSponsor);
+    }
+
+    /**
+     * The attendee, speaker or vendor/sponsor with the given uniqueId, found
+     * without going through the sets. Changes made to the sets directly are
+     * not seen; set them again or use the add and remove methods.
+     *
+     * @return null if there is no such person
+     */
+    public AllowedPerson findPerson(String uniqueId) {
+        return peopleById().get(uniqueId);
+    }
+
+    /**
+     * Removes the attendee, speaker or vendor/sponsor with the given uniqueId.
+     *
+     * @return the removed person, or null if there was none
+     */
+    public AllowedPerson removePerson(String uniqueId) {
+        AllowedPerson person = peopleById().remove(uniqueId);
+        if (person instanceof Attendee) {
+            attendees.remove(person);
+        } else if (person instanceof Speaker) {
+            speakers.remove(person);
+        } else if (person instanceof VendorSponsor) {
+            vendorSponsors.remove(person);
+        }
+        columns = null;
+        return person;
+    }
+
+    /**
+     * The attendees, speakers and staff as columns, for counting over all of
+     * them; built on first use and again after the sets are replaced or
+     * changed through this class.
+     */
+    public ConferenceColumns getColumns() {
+        if (columns == null) {
+            columns = ConferenceColumns.of(this);
+        }
+        return columns;
+    }
+
+    /**
+     * The dense number of the person within this conference. Everyone in the
+     * sets is numbered when numbers are first needed, and everyone added
+     * through this class as they are added; anyone else the first time they
+     * are asked for. A person keeps their number after being removed, so
+     * {@link PersonSet}s stay valid.
+     */
+    public int personNumber(AllowedPerson person) {
+        int number = numberOf(person);
+        return number >= 0 ? number : assignNumber(person);
+    }
+
+    /**
+     * @return null if no one has that number
+     */
+    public AllowedPerson getPerson(int number) {
+        List<AllowedPerson> people = peopleByNumber();
+        return number >= 0 && number < people.size() ? people.get(number) : null;
+    }
+
+    /**
+     * An empty set of people of this conference, e.g. those checked in.
+     */
+    public PersonSet newPersonSet() {
+        return new PersonSet(this);
+    }
+
+    // The person's number here, without handing one out; -1 if it has none
+    int numberOf(AllowedPerson person) {
+        peopleByNumber();
+        PersonId id = idOf(person);
+        Integer number = id != null ? numbersById.get(id) : otherNumbers.get(person);
+        return number == null ? -1 : number;
     }
 
     public Set<Session> getSessions() {
@@ -115,6 +251,85 @@ public class Conference {
         return allowedPeople;
     }
 
+    private PersonIdMap<AllowedPerson> peopleById() {
+        if (peopleById == null) {
+            PersonIdMap<AllowedPerson> people = new PersonIdMap<>();
+            if (attendees != null) {
+                for (Attendee attendee : attendees) {
+                    register(people, attendee.getId(), attendee);
+                }
+            }
+            if (speakers != null) {
+                for (Speaker speaker : speakers) {
+                    register(people, speaker.getId(), speaker);
+                }
+            }
+            if (vendorSponsors != null) {
+                for (VendorSponsor vendorSponsor : vendorSponsors) {
+                    register(people, vendorSponsor.getId(), vendorSponsor);
+                }
+            }
+            peopleById = people;
+        }
+        return peopleById;
+    }
+
+    private List<AllowedPerson> peopleByNumber() {
+        if (peopleByNumber == null) {
+            peopleByNumber = new ArrayList<>();
+            numbersById = new PersonIdMap<>();
+            otherNumbers = new IdentityHashMap<>();
+            for (Set<? extends AllowedPerson> people : Arrays.asList(staff, attendees, speakers, vendorSponsors)) {
+                if (people != null) {
+                    for (AllowedPerson person : people) {
+                        if (numberOf(person) < 0) {
+                            assignNumber(person);
+                        }
+                    }
+                }
+            }
+        }
+        return peopleByNumber;
+    }
+
+    private int assignNumber(AllowedPerson person) {
+        List<AllowedPerson> people = peopleByNumber();
+        int number = people.size();
+        people.add(person);
+        PersonId id = idOf(person);
+        if (id != null) {
+            numbersById.put(id, number);
+        } else {
+            otherNumbers.put(person, number);
+        }
+        return number;
+    }
+
+    private static PersonId idOf(AllowedPerson person) {
+        if (person instanceof Attendee) {
+            return ((Attendee) person).getId();
+        }
+        if (person instanceof Speaker) {
+            return ((Speaker) person).getId();
+        }
+        if (person instanceof VendorSponsor) {
+            return ((VendorSponsor) person).getId();
+        }
+        return null;
+    }
+
+    private void registered(PersonId id, AllowedPerson person) {
+        if (peopleById != null) {
+            register(peopleById, id, person);
+        }
+    }
+
+    private static void register(PersonIdMap<AllowedPerson> people, PersonId id, AllowedPerson person) {
+        if (id != null) {
+            people.put(id, person);
+        }
+    }
+
     @Override
     public String toString() {
         return "Conference{" +
@@ -0,0 +1,242 @@
+package conf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The people of a {@link Conference} laid out column by column for
+ * reporting: one primitive array per field, with a row per person. Names
+ * are stored once in a dictionary and referred to by code; enums (payment
+ * types, shirt and hat sizes) by their ordinal. Counting over a column scans one contiguous array
+ * instead of following a pointer per person and field, and allocates almost
+ * nothing.
+ * <p>
+ * The columns are a copy: they do not follow later changes to the people.
+ * {@link Conference#getColumns()} builds them again after its sets are
+ * replaced or added to.
+ */
+public class ConferenceColumns {
+    private static final PaymentType[] PAYMENT_TYPES = PaymentType.values();
+    private static final ShirtSize[] SHIRT_SIZES = ShirtSize.values();
+    private static final HatSize[] HAT_SIZES = HatSize.values();
+
+    private final String[] names;
+    private final int[] attendeeFirstNames;
+    private final int[] attendeeLastNames;
+    // PaymentType ordinals; -1 for none
+    private final byte[] attendeePaymentTypes;
+    private final int[] speakerFirstNames;
+    private final int[] speakerLastNames;
+    // ShirtSize ordinals; -1 for none
+    private final byte[] speakerShirtSizes;
+    // Name codes of the sizes ShirtSize does not know, missing ones included; -1 where it does
+    private final int[] speakerOtherShirtSizes;
+    private final int[] staffFirstNames;
+    private final int[] staffLastNames;
+    // HatSize ordinals; -1 for none
+    private final byte[] staffHatSizes;
+    // Name codes of the sizes HatSize does not know, missing ones included; -1 where it does
+    private final int[] staffOtherHatSizes;
+
+    private ConferenceColumns(Conference conference) {
+        Dictionary names = new Dictionary();
+
+        Collection<Attendee> attendees = orEmpty(conference.getAttendees());
+        attendeeFirstNames = new int[attendees.size()];
+        attendeeLastNames = new int[attendees.size()];
+        attendeePaymentTypes = new byte[attendees.size()];
+        int row = 0;
+        for (Attendee attendee : attendees) {
+            attendeeFirstNames[row] = names.code(attendee.getFirstName());
+            attendeeLastNames[row] = names.code(attendee.getLastName());
+            PaymentType paymentType = attendee.getPaymentType();
+            attendeePaymentTypes[row] = (byte) (paymentType == null ? -1 : paymentType.ordinal());
+            row++;
+        }
+
+        Collection<Speaker> speakers = orEmpty(conference.getSpeakers());
+        speakerFirstNames = new int[speakers.size()];
+        speakerLastNames = new int[speakers.size()];
+        speakerShirtSizes = new byte[speakers.size()];
+        speakerOtherShirtSizes = new int[speakers.size()];
+        row = 0;
+        for (Speaker speaker : speakers) {
+            speakerFirstNames[row] = names.code(speaker.getFirstName());
+            speakerLastNames[row] = names.code(speaker.getLastName());
+            ShirtSize shirtSize = speaker.getShirtSize();
+            speakerShirtSizes[row] = (byte) (shirtSize == null ? -1 : shirtSize.ordinal());
+            speakerOtherShirtSizes[row] = shirtSize == null ? names.code(speaker.getShirtSizeLabel()) : -1;
+            row++;
+        }
+
+        Collection<Staff> staff = orEmpty(conference.getStaff());
+        staffFirstNames = new int[staff.size()];
+        staffLastNames = new int[staff.size()];
+        staffHatSizes = new byte[staff.size()];
+        staffOtherHatSizes = new int[staff.size()];
+        row = 0;
+        for (Staff member : staff) {
+            staffFirstNames[row] = names.code(member.getFirstName());
+            staffLastNames[row] = names.code(member.getLastName());
+            HatSize hatSize = member.getHatSize();
+            staffHatSizes[row] = (byte) (hatSize == null ? -1 : hatSize.ordinal());
+            staffOtherHatSizes[row] = hatSize == null ? names.code(member.getHatSizeLabel()) : -1;
+            row++;
+        }
+
+        this.names = names.values();
+    }
+
+    public static ConferenceColumns of(Conference conference) {
+        return new ConferenceColumns(conference);
+    }
+
+    public int attendeeCount() {
+        return attendeePaymentTypes.length;
+    }
+
+    public int speakerCount() {
+        return speakerShirtSizes.length;
+    }
+
+    public int staffCount() {
+        return staffHatSizes.length;
+    }
+
+    public String attendeeFirstName(int row) {
+        return names[attendeeFirstNames[row]];
+    }
+
+    public String attendeeLastName(int row) {
+        return names[attendeeLastNames[row]];
+    }
+
+    public PaymentType attendeePaymentType(int row) {
+        byte ordinal = attendeePaymentTypes[row];
+        return ordinal < 0 ? null : PAYMENT_TYPES[ordinal];
+    }
+
+    public String speakerFirstName(int row) {
+        return names[speakerFirstNames[row]];
+    }
+
+    public String speakerLastName(int row) {
+        return names[speakerLastNames[row]];
+    }
+
+    public ShirtSize speakerShirtSize(int row) {
+        byte ordinal = speakerShirtSizes[row];
+        return ordinal < 0 ? null : SHIRT_SIZES[ordinal];
+    }
+
+    public String staffFirstName(int row) {
+        return names[staffFirstNames[row]];
+    }
+
+    public String staffLastName(int row) {
+        return names[staffLastNames[row]];
+    }
+
+    public HatSize staffHatSize(int row) {
+        byte ordinal = staffHatSizes[row];
+        return ordinal < 0 ? null : HAT_SIZES[ordinal];
+    }
+
+    /**
+     * The number of attendees paying with each payment type, indexed by
+     * {@link PaymentType#ordinal()}.
+     */
+    public int[] countPaymentTypes() {
+        return countOrdinals(attendeePaymentTypes, PAYMENT_TYPES.length);
+    }
+
+    /**
+     * The number of speakers per shirt size, indexed by
+     * {@link ShirtSize#ordinal()}. Speakers without one of these sizes are
+     * counted by {@link #countOtherShirtSizes()}.
+     */
+    public int[] countShirtSizes() {
+        return countOrdinals(speakerShirtSizes, SHIRT_SIZES.length);
+    }
+
+    /**
+     * The number of speakers per shirt size that {@link ShirtSize} does not
+     * know, by the size as given; null counts those without a size.
+     */
+    public Map<String, Integer> countOtherShirtSizes() {
+        return countCodes(speakerOtherShirtSizes);
+    }
+
+    /**
+     * The number of staff per hat size, indexed by {@link HatSize#ordinal()}.
+     * Staff without one of these sizes are counted by
+     * {@link #countOtherHatSizes()}.
+     */
+    public int[] countHatSizes() {
+        return countOrdinals(staffHatSizes, HAT_SIZES.length);
+    }
+
+    /**
+     * The number of staff per hat size that {@link HatSize} does not know, by
+     * the size as given; null counts those without a size.
+     */
+    public Map<String, Integer> countOtherHatSizes() {
+        return countCodes(staffOtherHatSizes);
+    }
+
+    private static int[] countOrdinals(byte[] column, int valueCount) {
+        int[] counts = new int[valueCount];
+        for (byte ordinal : column) {
+            if (ordinal >= 0) {
+                counts[ordinal]++;
+            }
+        }
+        return counts;
+    }
+
+    // Counts per name code, in order of first use; -1 is skipped
+    private Map<String, Integer> countCodes(int[] column) {
+        int[] counts = new int[names.length];
+        for (int code : column) {
+            if (code >= 0) {
+                counts[code]++;
+            }
+        }
+        Map<String, Integer> byName = new LinkedHashMap<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                byName.put(names[code], counts[code]);
+            }
+        }
+        return byName;
+    }
+
+    private static <T> Collection<T> orEmpty(Collection<T> people) {
+        return people == null ? Collections.emptyList() : people;
+    }
+
+    // Hands out a code per distinct name, null included, in order of first use
+    private static class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int code(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        String[] values() {
+            return values.toArray(new String[0]);
+        }
+    }
+}
@@ -47,12 +47,12 @@ public class Constants {
     public static final Set<String> HAT_SIZES;
 
     static {
-        // Create shirt sizes as a Set.
-        SHIRT_SIZES = Stream.of("XS", "S", "M", "L", "XL", "2XL", "3XL", "4XL")
+        // Create shirt sizes as a Set of their labels.
+        SHIRT_SIZES = Stream.of(ShirtSize.values()).map(ShirtSize::getLabel)
                 .collect(Collectors.toCollection(HashSet::new));
 
-        // Create hat sizes as a Set.
-        HAT_SIZES = Stream.of("S/M", "L", "XL")
+        // Create hat sizes as a Set of their labels.
+        HAT_SIZES = Stream.of(HatSize.values()).map(HatSize::getLabel)
                 .collect(Collectors.toCollection(HashSet::new));
     }
 
@@ -0,0 +1,55 @@
+package conf;
+
+import com.google.gson.annotations.SerializedName;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The hat sizes staff can order. Each is stored and shown by its label,
+ * e.g. "S/M", as the sizes were when they were plain strings.
+ */
+public enum HatSize {
+    @SerializedName("S/M")
+    S_M("S/M", "S", "M", "SMALL", "MEDIUM", "SMALLMEDIUM"),
+    L("L", "LARGE", "LG"),
+    XL("XL", "EXTRALARGE", "XLARGE");
+
+    private static final Map<String, HatSize> BY_SPELLING = new HashMap<>();
+
+    static {
+        for (HatSize size : values()) {
+            for (String spelling : size.spellings) {
+                BY_SPELLING.put(spelling, size);
+            }
+        }
+    }
+
+    private final String label;
+    private final String[] spellings;
+
+    HatSize(String label, String... otherSpellings) {
+        this.label = label;
+        this.spellings = new String[otherSpellings.length + 1];
+        this.spellings[0] = SizeSpelling.normalize(label);
+        System.arraycopy(otherSpellings, 0, this.spellings, 1, otherSpellings.length);
+    }
+
+    /**
+     * Reads a size however it was typed in: "S/M", "s-m", "Medium" and
+     * "small" are all {@link #S_M}.
+     *
+     * @return null for null, blank or unknown sizes
+     */
+    public static HatSize parse(String size) {
+        return size == null ? null : BY_SPELLING.get(SizeSpelling.normalize(size));
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,127 @@
+package conf;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A set whose elements are only loaded the first time they are needed, e.g.
+ * a collection of a {@link Conference} that lives in its own file.
+ * <p>
+ * The set is a view of the collection the loader returns, not a copy: the
+ * loader is asked again on every use, so it should hand back a cached
+ * collection, and the set sees what is added to or removed from it
+ * elsewhere. Elements added or removed through the set go to the adder and
+ * remover, which change the collection and store the change.
+ */
+public class LazySet<E> extends AbstractSet<E> {
+    private final Supplier<? extends Collection<E>> loader;
+    private final Consumer<E> adder;
+    private final Consumer<E> remover;
+    private boolean loaded;
+
+    /**
+     * A view whose changes go to the loaded collection only.
+     */
+    public LazySet(Supplier<? extends Collection<E>> loader) {
+        this(loader, null, null);
+    }
+
+    /**
+     * @param adder   - adds an element to the loaded collection and stores it
+     * @param remover - removes an element from the loaded collection and storage
+     */
+    public LazySet(Supplier<? extends Collection<E>> loader, Consumer<E> adder, Consumer<E> remover) {
+        this.loader = loader;
+        this.adder = adder;
+        this.remover = remover;
+    }
+
+    /**
+     * True if the elements are in memory, i.e. using the set now will not
+     * load them.
+     */
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Iterates over the elements as they are now, so removing through the
+     * iterator can go to the remover.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        Iterator<E> snapshot = new ArrayList<>(elements()).iterator();
+        return new Iterator<E>() {
+            private E current;
+
+            @Override
+            public boolean hasNext() {
+                return snapshot.hasNext();
+            }
+
+            @Override
+            public E next() {
+                current = snapshot.next();
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                if (current == null) {
+                    throw new IllegalStateException();
+                }
+                LazySet.this.remove(current);
+                current = null;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return elements().size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return elements().contains(o);
+    }
+
+    @Override
+    public boolean add(E e) {
+        if (contains(e)) {
+            return false;
+        }
+        if (adder == null) {
+            elements().add(e);
+        } else {
+            adder.accept(e);
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        if (!contains(o)) {
+            return false;
+        }
+        if (remover == null) {
+            elements().remove(o);
+        } else {
+            remover.accept((E) o);
+        }
+        return true;
+    }
+
+    private Collection<E> elements() {
+        Collection<E> elements = loader.get();
+        synchronized (this) {
+            loaded = true;
+        }
+        return elements;
+    }
+}
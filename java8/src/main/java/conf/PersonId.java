@@ -0,0 +1,151 @@
+package conf;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * The uniqueId of an attendee, speaker or vendor/sponsor.
+ * <p>
+ * Ids are random UUIDs, kept as their two halves rather than as the
+ * 36-character string, which takes several times the memory and is slower
+ * to compare and hash. The string form is only made when asked for, e.g. to
+ * be written to a file. Ids that are not a UUID in its usual lower-case form
+ * (older or hand-made data) are kept as the string they are.
+ * <p>
+ * In JSON an id is its string form, also when a record is written by
+ * reflection, so the files look as they did when ids were strings.
+ */
+@JsonAdapter(PersonId.StringForm.class)
+public final class PersonId {
+    private final long mostSignificantBits;
+    private final long leastSignificantBits;
+    // Only set for ids that are not in UUID form
+    private final String text;
+
+    private PersonId(long mostSignificantBits, long leastSignificantBits, String text) {
+        this.mostSignificantBits = mostSignificantBits;
+        this.leastSignificantBits = leastSignificantBits;
+        this.text = text;
+    }
+
+    public static PersonId random() {
+        UUID uuid = UUID.randomUUID();
+        return new PersonId(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), null);
+    }
+
+    /**
+     * @return null for a null id
+     */
+    public static PersonId of(String uniqueId) {
+        if (uniqueId == null) {
+            return null;
+        }
+        if (isUuid(uniqueId)) {
+            return new PersonId(mostSignificantBits(uniqueId), leastSignificantBits(uniqueId), null);
+        }
+        return new PersonId(0, 0, uniqueId);
+    }
+
+    /**
+     * True if the id is held as two longs, false if it is kept as a string.
+     */
+    public boolean isUuid() {
+        return text == null;
+    }
+
+    public long getMostSignificantBits() {
+        return mostSignificantBits;
+    }
+
+    public long getLeastSignificantBits() {
+        return leastSignificantBits;
+    }
+
+    /**
+     * The id exactly as it was given.
+     */
+    @Override
+    public String toString() {
+        return text != null ? text : new UUID(mostSignificantBits, leastSignificantBits).toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PersonId)) {
+            return false;
+        }
+        PersonId other = (PersonId) o;
+        if (text != null || other.text != null) {
+            return text != null && text.equals(other.text);
+        }
+        return mostSignificantBits == other.mostSignificantBits && leastSignificantBits == other.leastSignificantBits;
+    }
+
+    @Override
+    public int hashCode() {
+        if (text != null) {
+            return text.hashCode();
+        }
+        long bits = mostSignificantBits ^ leastSignificantBits;
+        return (int) (bits >> 32) ^ (int) bits;
+    }
+
+    // Only the form UUID.toString() produces, so the string comes back unchanged
+    static boolean isUuid(String id) {
+        if (id.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Both expect an id isUuid accepts
+    static long mostSignificantBits(String uuid) {
+        return hex(uuid, 0, 8) << 32 | hex(uuid, 9, 13) << 16 | hex(uuid, 14, 18);
+    }
+
+    static long leastSignificantBits(String uuid) {
+        return hex(uuid, 19, 23) << 48 | hex(uuid, 24, 36);
+    }
+
+    private static long hex(String s, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            value = value << 4 | Character.digit(s.charAt(i), 16);
+        }
+        return value;
+    }
+
+    static final class StringForm extends TypeAdapter<PersonId> {
+        @Override
+        public void write(JsonWriter out, PersonId id) throws IOException {
+            out.value(id == null ? null : id.toString());
+        }
+
+        @Override
+        public PersonId read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            return of(in.nextString());
+        }
+    }
+}
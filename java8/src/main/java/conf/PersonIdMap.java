@@ -0,0 +1,169 @@
+package conf;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A map from {@link PersonId} to values, laid out for UUID ids: their two
+ * halves sit in parallel {@code long} arrays probed linearly, so there is no
+ * entry or key object per mapping and a lookup by the string form of an id
+ * does not have to build a {@link PersonId} first. The few ids that are not
+ * UUIDs go to an ordinary map. Null values are not allowed.
+ */
+public class PersonIdMap<V> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] mostSignificantBits = new long[INITIAL_CAPACITY];
+    private long[] leastSignificantBits = new long[INITIAL_CAPACITY];
+    // A null value marks an empty slot
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int uuidCount;
+    private final Map<String, V> others = new HashMap<>();
+
+    public int size() {
+        return uuidCount + others.size();
+    }
+
+    /**
+     * @return null if the id is null or not in the map
+     */
+    public V get(PersonId id) {
+        if (id == null) {
+            return null;
+        }
+        if (!id.isUuid()) {
+            return others.get(id.toString());
+        }
+        return getUuid(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    public V get(String uniqueId) {
+        if (uniqueId == null) {
+            return null;
+        }
+        if (!PersonId.isUuid(uniqueId)) {
+            return others.get(uniqueId);
+        }
+        return getUuid(PersonId.mostSignificantBits(uniqueId), PersonId.leastSignificantBits(uniqueId));
+    }
+
+    /**
+     * @return the value the id had before, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(PersonId id, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not allowed");
+        }
+        if (!id.isUuid()) {
+            return others.put(id.toString(), value);
+        }
+        if ((uuidCount + 1) * 4 > values.length * 3) {
+            resize(values.length * 2);
+        }
+        long most = id.getMostSignificantBits();
+        long least = id.getLeastSignificantBits();
+        int slot = find(most, least);
+        V previous = (V) values[slot];
+        if (previous == null) {
+            mostSignificantBits[slot] = most;
+            leastSignificantBits[slot] = least;
+            uuidCount++;
+        }
+        values[slot] = value;
+        return previous;
+    }
+
+    /**
+     * @return the value that was removed, or null
+     */
+    public V remove(PersonId id) {
+        if (id == null) {
+            return null;
+        }
+        if (!id.isUuid()) {
+            return others.remove(id.toString());
+        }
+        return removeUuid(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    public V remove(String uniqueId) {
+        if (uniqueId == null) {
+            return null;
+        }
+        if (!PersonId.isUuid(uniqueId)) {
+            return others.remove(uniqueId);
+        }
+        return removeUuid(PersonId.mostSignificantBits(uniqueId), PersonId.leastSignificantBits(uniqueId));
+    }
+
+    @SuppressWarnings("unchecked")
+    private V getUuid(long most, long least) {
+        return (V) values[find(most, least)];
+    }
+
+    @SuppressWarnings("unchecked")
+    private V removeUuid(long most, long least) {
+        int slot = find(most, least);
+        V previous = (V) values[slot];
+        if (previous != null) {
+            values[slot] = null;
+            uuidCount--;
+            closeGap(slot);
+        }
+        return previous;
+    }
+
+    // The slot holding the id, or the empty slot where it would go
+    private int find(long most, long least) {
+        int mask = values.length - 1;
+        int slot = slotOf(most, least, mask);
+        while (values[slot] != null
+                && (mostSignificantBits[slot] != most || leastSignificantBits[slot] != least)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Moves later entries of the same run back into the freed slot, so no
+    // lookup stops early at it
+    private void closeGap(int gap) {
+        int mask = values.length - 1;
+        int slot = (gap + 1) & mask;
+        while (values[slot] != null) {
+            int home = slotOf(mostSignificantBits[slot], leastSignificantBits[slot], mask);
+            // Move it if its home is not between the gap and where it is now
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                mostSignificantBits[gap] = mostSignificantBits[slot];
+                leastSignificantBits[gap] = leastSignificantBits[slot];
+                values[gap] = values[slot];
+                values[slot] = null;
+                gap = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldMost = mostSignificantBits;
+        long[] oldLeast = leastSignificantBits;
+        Object[] oldValues = values;
+        mostSignificantBits = new long[capacity];
+        leastSignificantBits = new long[capacity];
+        values = new Object[capacity];
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = find(oldMost[i], oldLeast[i]);
+                mostSignificantBits[slot] = oldMost[i];
+                leastSignificantBits[slot] = oldLeast[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int slotOf(long most, long least, int mask) {
+        // Random UUIDs are well mixed already, except for the fixed version and variant bits
+        long hash = (most ^ least) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+}
@@ -0,0 +1,124 @@
+package conf;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of people of one {@link Conference}, e.g. those checked in or those
+ * with a printed badge, kept as one bit per {@link Conference#personNumber}.
+ * A million people fit in about 125 KB, and combining two sets works on 64
+ * people at a time.
+ */
+public class PersonSet implements Iterable<AllowedPerson> {
+    private final Conference conference;
+    private final BitSet members;
+
+    PersonSet(Conference conference) {
+        this(conference, new BitSet());
+    }
+
+    private PersonSet(Conference conference, BitSet members) {
+        this.conference = conference;
+        this.members = members;
+    }
+
+    /**
+     * @return true if the person was not in the set yet
+     */
+    public boolean add(AllowedPerson person) {
+        int number = conference.personNumber(person);
+        boolean added = !members.get(number);
+        members.set(number);
+        return added;
+    }
+
+    public void addAll(Collection<? extends AllowedPerson> people) {
+        for (AllowedPerson person : people) {
+            add(person);
+        }
+    }
+
+    /**
+     * @return true if the person was in the set
+     */
+    public boolean remove(AllowedPerson person) {
+        int number = conference.numberOf(person);
+        boolean removed = number >= 0 && members.get(number);
+        if (removed) {
+            members.clear(number);
+        }
+        return removed;
+    }
+
+    public boolean contains(AllowedPerson person) {
+        int number = conference.numberOf(person);
+        return number >= 0 && members.get(number);
+    }
+
+    public int size() {
+        return members.cardinality();
+    }
+
+    public boolean isEmpty() {
+        return members.isEmpty();
+    }
+
+    /**
+     * @return a new set of the people in either set
+     */
+    public PersonSet union(PersonSet other) {
+        BitSet result = copy(other);
+        result.or(other.members);
+        return new PersonSet(conference, result);
+    }
+
+    /**
+     * @return a new set of the people in both sets
+     */
+    public PersonSet intersection(PersonSet other) {
+        BitSet result = copy(other);
+        result.and(other.members);
+        return new PersonSet(conference, result);
+    }
+
+    /**
+     * @return a new set of the people in this set but not in the other,
+     *         e.g. those eligible minus those who already won
+     */
+    public PersonSet difference(PersonSet other) {
+        BitSet result = copy(other);
+        result.andNot(other.members);
+        return new PersonSet(conference, result);
+    }
+
+    @Override
+    public Iterator<AllowedPerson> iterator() {
+        return new Iterator<AllowedPerson>() {
+            private int next = members.nextSetBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public AllowedPerson next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                AllowedPerson person = conference.getPerson(next);
+                next = members.nextSetBit(next + 1);
+                return person;
+            }
+        };
+    }
+
+    private BitSet copy(PersonSet other) {
+        if (other.conference != conference) {
+            throw new IllegalArgumentException("The sets belong to different conferences");
+        }
+        return (BitSet) members.clone();
+    }
+}
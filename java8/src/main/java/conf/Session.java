@@ -16,11 +16,29 @@ public class Session {
     private final String sessionTitle;
     private final String sessionAbstract;
     private final Speaker mainSpeakerModerator;
+    // Only set while the speaker is not known, see withUnresolvedSpeaker
+    private final String unresolvedSpeakerId;
 
     public Session(String sessionTitle, String sessionAbstract, Speaker mainSpeakerModerator) {
+        this(sessionTitle, sessionAbstract, mainSpeakerModerator, null);
+    }
+
+    private Session(String sessionTitle, String sessionAbstract, Speaker mainSpeakerModerator,
+                    String unresolvedSpeakerId) {
         this.sessionTitle = sessionTitle;
         this.sessionAbstract = sessionAbstract;
         this.mainSpeakerModerator = mainSpeakerModerator;
+        this.unresolvedSpeakerId = unresolvedSpeakerId;
+    }
+
+    /**
+     * A session whose speaker is only known by uniqueId, e.g. one read
+     * before the speakers or after its speaker was deleted. It has no
+     * {@link #getMainSpeakerModerator()}, but keeps the id so saving it
+     * again does not lose the reference.
+     */
+    public static Session withUnresolvedSpeaker(String sessionTitle, String sessionAbstract, String speakerId) {
+        return new Session(sessionTitle, sessionAbstract, null, speakerId);
     }
 
     public String getSessionTitle() {
@@ -35,12 +53,21 @@ public class Session {
         return mainSpeakerModerator;
     }
 
+    /**
+     * The uniqueId of the speaker, also when the speaker itself is not known.
+     */
+    public String getMainSpeakerModeratorId() {
+        return mainSpeakerModerator != null ? mainSpeakerModerator.getUniqueId() : unresolvedSpeakerId;
+    }
+
     @Override
     public String toString() {
         return "\n\n\tSession{" +
                 "sessionTitle='" + sessionTitle + '\'' +
                 ", sessionAbstract='" + sessionAbstract + '\'' +
-                ", mainSpeakerModerator=" + mainSpeakerModerator.lastName + ", " + mainSpeakerModerator.firstName +
+                ", mainSpeakerModerator=" + (mainSpeakerModerator == null
+                        ? unresolvedSpeakerId
+                        : mainSpeakerModerator.lastName + ", " + mainSpeakerModerator.firstName) +
                 '}';
     }
 }
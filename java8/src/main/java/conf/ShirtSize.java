@@ -0,0 +1,62 @@
+package conf;
+
+import com.google.gson.annotations.SerializedName;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The shirt sizes speakers can order. Each is stored and shown by its label,
+ * e.g. "2XL", as the sizes were when they were plain strings.
+ */
+public enum ShirtSize {
+    XS("XS", "EXTRASMALL", "XSMALL"),
+    S("S", "SMALL"),
+    M("M", "MEDIUM", "MED"),
+    L("L", "LARGE", "LG"),
+    XL("XL", "EXTRALARGE", "XLARGE"),
+    @SerializedName("2XL")
+    XXL("2XL", "XXL", "2X", "XXLARGE"),
+    @SerializedName("3XL")
+    XXXL("3XL", "XXXL", "3X", "XXXLARGE"),
+    @SerializedName("4XL")
+    XXXXL("4XL", "XXXXL", "4X", "XXXXLARGE");
+
+    private static final Map<String, ShirtSize> BY_SPELLING = new HashMap<>();
+
+    static {
+        for (ShirtSize size : values()) {
+            for (String spelling : size.spellings) {
+                BY_SPELLING.put(spelling, size);
+            }
+        }
+    }
+
+    private final String label;
+    private final String[] spellings;
+
+    ShirtSize(String label, String... otherSpellings) {
+        this.label = label;
+        this.spellings = new String[otherSpellings.length + 1];
+        this.spellings[0] = SizeSpelling.normalize(label);
+        System.arraycopy(otherSpellings, 0, this.spellings, 1, otherSpellings.length);
+    }
+
+    /**
+     * Reads a size however it was typed in: "L", "l", "Large" and "large"
+     * are all {@link #L}.
+     *
+     * @return null for null, blank or unknown sizes
+     */
+    public static ShirtSize parse(String size) {
+        return size == null ? null : BY_SPELLING.get(SizeSpelling.normalize(size));
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,23 @@
+package conf;
+
+import java.util.Locale;
+
+/**
+ * Shared by the size parsers: sizes are compared in upper case with
+ * anything but letters and digits left out.
+ */
+final class SizeSpelling {
+    private SizeSpelling() {
+    }
+
+    static String normalize(String size) {
+        StringBuilder normalized = new StringBuilder(size.length());
+        for (int i = 0; i < size.length(); i++) {
+            char c = size.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString().toUpperCase(Locale.ROOT);
+    }
+}
@@ -1,25 +1,66 @@
 package conf;
 
-import java.util.UUID;
-
 public class Speaker extends AllowedPerson {
-    private String shirtSize;
-    private final String uniqueId = UUID.randomUUID().toString();
+    private ShirtSize shirtSize;
+    // The size as given when ShirtSize.parse does not know it; null otherwise
+    private String otherShirtSize;
+    private final PersonId uniqueId;
 
     public Speaker(String firstName, String lastName, String shirtSize) {
+        this(firstName, lastName, shirtSize, PersonId.random());
+    }
+
+    /**
+     * Recreates a previously registered speaker, keeping its unique id.
+     */
+    public Speaker(String firstName, String lastName, String shirtSize, String uniqueId) {
+        this(firstName, lastName, shirtSize, PersonId.of(uniqueId));
+    }
+
+    /**
+     * The shirt size is read as by {@link #setShirtSizeLabel}.
+     */
+    public Speaker(String firstName, String lastName, String shirtSize, PersonId uniqueId) {
         super(firstName, lastName);
-        this.shirtSize = shirtSize;
+        setShirtSizeLabel(shirtSize);
+        this.uniqueId = uniqueId;
     }
 
-    public String getShirtSize() {
+    /**
+     * @return null when there is no size or it is not one of {@link ShirtSize}
+     */
+    public ShirtSize getShirtSize() {
         return shirtSize;
     }
 
-    public void setShirtSize(String shirtSize) {
+    public void setShirtSize(ShirtSize shirtSize) {
         this.shirtSize = shirtSize;
+        this.otherShirtSize = null;
+    }
+
+    /**
+     * The label of the shirt size, or the size exactly as it was given when
+     * it is not one of {@link ShirtSize}.
+     */
+    public String getShirtSizeLabel() {
+        return shirtSize != null ? shirtSize.getLabel() : otherShirtSize;
+    }
+
+    /**
+     * Reads the size with {@link ShirtSize#parse}, so e.g. "Large" is taken
+     * as {@link ShirtSize#L}. A size it does not know is kept as given, so
+     * saving the speaker again does not lose it.
+     */
+    public void setShirtSizeLabel(String shirtSize) {
+        this.shirtSize = ShirtSize.parse(shirtSize);
+        this.otherShirtSize = this.shirtSize == null ? shirtSize : null;
     }
 
     public String getUniqueId() {
+        return uniqueId == null ? null : uniqueId.toString();
+    }
+
+    public PersonId getId() {
         return uniqueId;
     }
 
@@ -28,7 +69,7 @@ public class Speaker extends AllowedPerson {
         return "\n\tSpeaker{" +
                 "firstName='" + firstName + '\'' +
                 ", lastName='" + lastName + '\'' +
-                ", shirtSize='" + shirtSize + '\'' +
+                ", shirtSize='" + getShirtSizeLabel() + '\'' +
                 '}';
     }
 }
\ No newline at end of file
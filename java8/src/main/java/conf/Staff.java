@@ -1,19 +1,46 @@
 package conf;
 
 public class Staff extends AllowedPerson {
-    private String hatSize;
+    private HatSize hatSize;
+    // The size as given when HatSize.parse does not know it; null otherwise
+    private String otherHatSize;
 
+    /**
+     * The hat size is read as by {@link #setHatSizeLabel}.
+     */
     public Staff(String firstName, String lastName, String hatSize) {
         super(firstName, lastName);
-        this.hatSize = hatSize;
+        setHatSizeLabel(hatSize);
     }
 
-    public String getHatSize() {
+    /**
+     * @return null when there is no size or it is not one of {@link HatSize}
+     */
+    public HatSize getHatSize() {
         return hatSize;
     }
 
-    public void setHatSize(String hatSize) {
+    public void setHatSize(HatSize hatSize) {
         this.hatSize = hatSize;
+        this.otherHatSize = null;
+    }
+
+    /**
+     * The label of the hat size, or the size exactly as it was given when it
+     * is not one of {@link HatSize}.
+     */
+    public String getHatSizeLabel() {
+        return hatSize != null ? hatSize.getLabel() : otherHatSize;
+    }
+
+    /**
+     * Reads the size with {@link HatSize#parse}, so e.g. "Large" is taken as
+     * {@link HatSize#L}. A size it does not know is kept as given, so saving
+     * the staff member again does not lose it.
+     */
+    public void setHatSizeLabel(String hatSize) {
+        this.hatSize = HatSize.parse(hatSize);
+        this.otherHatSize = this.hatSize == null ? hatSize : null;
     }
 
     @Override
@@ -21,7 +48,7 @@ public class Staff extends AllowedPerson {
         return "\n\tStaff{" +
                 "firstName='" + firstName + '\'' +
                 ", lastName='" + lastName + '\'' +
-                ", hatSize='" + hatSize + '\'' +
+                ", hatSize='" + getHatSizeLabel() + '\'' +
                 '}';
     }
 }
\ No newline at end of file
@@ -1,14 +1,24 @@
 package conf;
 
-import java.util.UUID;
-
 public class VendorSponsor extends AllowedPerson {
     private String boothName;
-    private final String uniqueId = UUID.randomUUID().toString();
+    private final PersonId uniqueId;
 
     public VendorSponsor(String firstName, String lastName, String boothName) {
+        this(firstName, lastName, boothName, PersonId.random());
+    }
+
+    /**
+     * Recreates a previously registered vendor/sponsor, keeping its unique id.
+     */
+    public VendorSponsor(String firstName, String lastName, String boothName, String uniqueId) {
+        this(firstName, lastName, boothName, PersonId.of(uniqueId));
+    }
+
+    public VendorSponsor(String firstName, String lastName, String boothName, PersonId uniqueId) {
         super(firstName, lastName);
         this.boothName = boothName;
+        this.uniqueId = uniqueId;
     }
 
     public String getBoothName() {
@@ -20,6 +30,10 @@ public class VendorSponsor extends AllowedPerson {
     }
 
     public String getUniqueId() {
+        return uniqueId == null ? null : uniqueId.toString();
+    }
+
+    public PersonId getId() {
         return uniqueId;
     }
 
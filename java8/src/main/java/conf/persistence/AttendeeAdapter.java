@@ -0,0 +1,43 @@
+package conf.persistence;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import conf.Attendee;
+import conf.PaymentType;
+import java.io.IOException;
+
+class AttendeeAdapter extends PersonAdapter<Attendee> {
+    private static final String PAYMENT_TYPE = "paymentType";
+
+    @Override
+    void writeFields(JsonWriter out, Attendee attendee) throws IOException {
+        PaymentType paymentType = attendee.getPaymentType();
+        out.name(PAYMENT_TYPE).value(paymentType == null ? null : paymentType.name());
+        out.name(UNIQUE_ID).value(attendee.getUniqueId());
+    }
+
+    @Override
+    boolean readField(JsonReader in, String name, Fields fields) throws IOException {
+        if (PAYMENT_TYPE.equals(name)) {
+            fields.detail = in.nextString();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    Attendee create(Fields fields) {
+        // A null or missing payment type stays null, as with reflection
+        PaymentType paymentType = null;
+        try {
+            if (fields.detail != null) {
+                paymentType = PaymentType.valueOf(fields.detail);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException("Invalid payment type " + fields.detail
+                    + " for attendee " + fields.uniqueId, e);
+        }
+        return new Attendee(fields.firstName, fields.lastName, paymentType, fields.uniqueId);
+    }
+}
@@ -0,0 +1,165 @@
+package conf.persistence;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Takes online backups of the data files. Every write runs through
+ * {@link #writing}, so a backup sees all of a write or none of it; writes
+ * are only held off while the files are hard-linked or opened, not while
+ * they are copied. See {@link BackupFiles}.
+ */
+class BackupBarrier {
+    private static final String STAGING_PREFIX = ".backup-";
+
+    private final FileCommitter committer;
+    // Held shared by every write and exclusively while a backup notes what to copy
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    BackupBarrier(FileCommitter committer) {
+        this.committer = committer;
+    }
+
+    ReadWriteLock getLock() {
+        return lock;
+    }
+
+    void writing(Runnable write) {
+        lock.readLock().lock();
+        try {
+            write.run();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Journals and block checksums are included and index files, which are
+     * rebuilt when missing, are not. With {@link Durability#NONE} files are
+     * rewritten in place, so they are copied in full while writes wait.
+     * <p>
+     * Everything is put in a staging directory inside {@code directory} first
+     * and only moved over the files there once all of it was written, so a
+     * failed backup leaves the earlier one as it was.
+     *
+     * @param whileHeld - if not null, run with the staging directory while
+     *                  writes are held off
+     * @throws IllegalArgumentException if {@code directory} is the data directory
+     */
+    void backup(Path directory, Consumer<Path> whileHeld) {
+        List<BackupFiles.Prefix> prefixes = new ArrayList<>();
+        Path staging = null;
+        try {
+            Files.createDirectories(directory);
+            if (Files.isSameFile(directory, Paths.get("").toAbsolutePath())) {
+                throw new IllegalArgumentException("Cannot back up the data into its own directory " + directory);
+            }
+            staging = Files.createTempDirectory(directory, STAGING_PREFIX);
+            lock.writeLock().lock();
+            try {
+                for (EntityType type : EntityType.values()) {
+                    Path data = Paths.get(type.getFileName());
+                    Path journal = type.getJournalFileName() == null ? null : Paths.get(type.getJournalFileName());
+                    // Rewritten in place and small, so copied in full along with the data
+                    copyIfExists(type.getChecksumFileName() == null ? null : Paths.get(type.getChecksumFileName()),
+                            staging);
+                    if (committer.getDurability() == Durability.NONE) {
+                        copyIfExists(data, staging);
+                        copyIfExists(journal, staging);
+                        continue;
+                    }
+                    if (Files.exists(data)) {
+                        if (journal == null) {
+                            BackupFiles.link(data, staging.resolve(data.getFileName()));
+                        } else {
+                            // Records may be appended to NDJSON data files
+                            prefixes.add(new BackupFiles.Prefix(data, staging.resolve(data.getFileName())));
+                        }
+                    }
+                    if (journal != null && Files.exists(journal)) {
+                        prefixes.add(new BackupFiles.Prefix(journal, staging.resolve(journal.getFileName())));
+                    }
+                }
+                if (whileHeld != null) {
+                    whileHeld.accept(staging);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            for (BackupFiles.Prefix prefix : prefixes) {
+                prefix.copy();
+            }
+            FileCommitter.syncDirectory(staging.resolve(EntityType.CONFERENCE.getFileName()));
+            // Files the data no longer has must not be restored along with the rest
+            for (EntityType type : EntityType.values()) {
+                removeStale(type.getFileName(), staging, directory);
+                removeStale(type.getJournalFileName(), staging, directory);
+                removeStale(type.getChecksumFileName(), staging, directory);
+            }
+            moveInto(staging, directory);
+            FileCommitter.syncDirectory(directory.resolve(EntityType.CONFERENCE.getFileName()));
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to back up data to " + directory, e);
+        } finally {
+            for (BackupFiles.Prefix prefix : prefixes) {
+                prefix.close();
+            }
+            if (staging != null) {
+                deleteTree(staging);
+            }
+        }
+    }
+
+    private static void copyIfExists(Path file, Path directory) throws IOException {
+        if (file != null && Files.exists(file)) {
+            // Keeps the modification time, which the checksums are checked against
+            Files.copy(file, directory.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+
+    private static void removeStale(String fileName, Path staging, Path directory) throws IOException {
+        if (fileName != null && !Files.exists(staging.resolve(fileName))) {
+            Files.deleteIfExists(directory.resolve(fileName));
+        }
+    }
+
+    // Moves each staged file over its namesake, descending into directories
+    private static void moveInto(Path staged, Path target) throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(staged)) {
+            for (Path entry : entries) {
+                Path moved = target.resolve(entry.getFileName().toString());
+                if (Files.isDirectory(entry)) {
+                    Files.createDirectories(moved);
+                    moveInto(entry, moved);
+                } else {
+                    FileCommitter.replace(entry, moved);
+                }
+            }
+        }
+    }
+
+    private static void deleteTree(Path path) {
+        try {
+            if (Files.isDirectory(path)) {
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(path)) {
+                    for (Path entry : entries) {
+                        deleteTree(entry);
+                    }
+                }
+            }
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            StorageErrors.ignored("Failed to remove backup staging file " + path, e);
+        }
+    }
+}
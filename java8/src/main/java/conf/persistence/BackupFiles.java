@@ -0,0 +1,76 @@
+package conf.persistence;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Pieces for taking online backups. Files that are only ever replaced by a
+ * rename are hard-linked into the backup, which costs nothing and is not
+ * affected by later saves. Files that are appended to in place are opened
+ * while writes are held off and their length noted; the bytes up to that
+ * length are copied afterwards, while writes go on, because appends only add
+ * after it and a compaction replaces the file rather than rewriting it.
+ */
+final class BackupFiles {
+    private BackupFiles() {
+    }
+
+    /**
+     * Links {@code source} into the backup, or copies it where the backup is
+     * on another file system.
+     */
+    static void link(Path source, Path target) throws IOException {
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, source);
+        } catch (FileSystemException | UnsupportedOperationException e) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * A file to copy once writes may go on again; open it while they are held off.
+     */
+    static class Prefix {
+        private final FileChannel channel;
+        private final long length;
+        private final FileTime modified;
+        private final Path target;
+
+        Prefix(Path source, Path target) throws IOException {
+            this.channel = FileChannel.open(source, StandardOpenOption.READ);
+            this.length = channel.size();
+            // Block checksums are only trusted for a file of the time and size they were taken at
+            this.modified = Files.getLastModifiedTime(source);
+            this.target = target;
+        }
+
+        void copy() throws IOException {
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                long copied = 0;
+                while (copied < length) {
+                    copied += channel.transferTo(copied, length - copied, out);
+                }
+                out.force(true);
+            } finally {
+                channel.close();
+            }
+            Files.setLastModifiedTime(target, modified);
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                StorageErrors.ignored("Failed to close backup source " + target, e);
+            }
+        }
+    }
+}
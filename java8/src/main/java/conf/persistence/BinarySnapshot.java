@@ -0,0 +1,303 @@
+package conf.persistence;
+
+import conf.*;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact binary snapshot of a whole {@link Conference}, loaded through a
+ * memory-mapped file instead of being parsed as text.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ *   header   magic, version, null-collection flags, string count, offset of
+ *            the records, and the record count of every section
+ *   strings  string table, each entry an int byte length and UTF-8 bytes;
+ *            every distinct string is stored once
+ *   records  fixed-width records referring to strings by table index (-1 for
+ *            null): the conference header, then staff, speakers, attendees,
+ *            vendors/sponsors and sessions
+ * </pre>
+ * Sessions refer to their speaker by position in the speaker section, so a
+ * speaker giving several sessions is one object after loading. Speakers that
+ * only appear on a session follow the conference's own speakers. A session
+ * whose speaker is only known by id stores -2 minus the id's string index. Raffle
+ * winners are not part of the snapshot.
+ */
+public final class BinarySnapshot {
+    static final int MAGIC = 0x594A5342; // "YJSB"
+    static final short VERSION = 1;
+
+    private static final int HEADER_BYTES = 48;
+    private static final int CONFERENCE_RECORD_BYTES = 16;
+    private static final int STAFF_RECORD_BYTES = 12;
+    private static final int SPEAKER_RECORD_BYTES = 16;
+    private static final int ATTENDEE_RECORD_BYTES = 16;
+    private static final int VENDOR_RECORD_BYTES = 16;
+    private static final int SESSION_RECORD_BYTES = 12;
+    private static final int NO_STRING = -1;
+    private static final int NO_YEAR = Integer.MIN_VALUE;
+    private static final int UNRESOLVED_SPEAKER = -2;
+
+    // Bits of the flags field, set when the collection was null
+    private static final int NULL_STAFF = 1;
+    private static final int NULL_SPEAKERS = 1 << 1;
+    private static final int NULL_ATTENDEES = 1 << 2;
+    private static final int NULL_VENDORS = 1 << 3;
+    private static final int NULL_SESSIONS = 1 << 4;
+
+    private BinarySnapshot() {
+    }
+
+    public static void write(Conference conference, Path file) {
+        Map<String, Integer> stringIndex = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        List<Staff> staff = listOf(conference.getStaff());
+        List<Speaker> speakers = listOf(conference.getSpeakers());
+        List<Attendee> attendees = listOf(conference.getAttendees());
+        List<VendorSponsor> vendors = listOf(conference.getVendorSponsors());
+        List<Session> sessions = listOf(conference.getSessions());
+
+        int listedSpeakers = speakers.size();
+        Map<Speaker, Integer> speakerIndex = new IdentityHashMap<>();
+        for (Speaker speaker : speakers) {
+            speakerIndex.put(speaker, speakerIndex.size());
+        }
+        for (Session session : sessions) {
+            Speaker speaker = session.getMainSpeakerModerator();
+            if (speaker != null && !speakerIndex.containsKey(speaker)) {
+                speakerIndex.put(speaker, speakers.size());
+                speakers.add(speaker);
+            }
+        }
+
+        try {
+            // Records are encoded first so that the string table is complete
+            ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+            DataOutputStream records = new DataOutputStream(recordBytes);
+            records.writeInt(ref(conference.getName(), stringIndex, strings));
+            records.writeInt(ref(conference.getNickName(), stringIndex, strings));
+            records.writeInt(conference.getYear() == null ? NO_YEAR : conference.getYear().getValue());
+            records.writeInt(ref(conference.getVenue(), stringIndex, strings));
+            for (Staff member : staff) {
+                records.writeInt(ref(member.getFirstName(), stringIndex, strings));
+                records.writeInt(ref(member.getLastName(), stringIndex, strings));
+                records.writeInt(ref(member.getHatSizeLabel(), stringIndex, strings));
+            }
+            for (Speaker speaker : speakers) {
+                records.writeInt(ref(speaker.getFirstName(), stringIndex, strings));
+                records.writeInt(ref(speaker.getLastName(), stringIndex, strings));
+                records.writeInt(ref(speaker.getShirtSizeLabel(), stringIndex, strings));
+                records.writeInt(ref(speaker.getUniqueId(), stringIndex, strings));
+            }
+            for (Attendee attendee : attendees) {
+                records.writeInt(ref(attendee.getFirstName(), stringIndex, strings));
+                records.writeInt(ref(attendee.getLastName(), stringIndex, strings));
+                records.writeInt(ref(attendee.getUniqueId(), stringIndex, strings));
+                records.writeInt(attendee.getPaymentType() == null ? -1 : attendee.getPaymentType().ordinal());
+            }
+            for (VendorSponsor vendor : vendors) {
+                records.writeInt(ref(vendor.getFirstName(), stringIndex, strings));
+                records.writeInt(ref(vendor.getLastName(), stringIndex, strings));
+                records.writeInt(ref(vendor.getBoothName(), stringIndex, strings));
+                records.writeInt(ref(vendor.getUniqueId(), stringIndex, strings));
+            }
+            for (Session session : sessions) {
+                records.writeInt(ref(session.getSessionTitle(), stringIndex, strings));
+                records.writeInt(ref(session.getSessionAbstract(), stringIndex, strings));
+                Speaker speaker = session.getMainSpeakerModerator();
+                if (speaker != null) {
+                    records.writeInt(speakerIndex.get(speaker));
+                } else if (session.getMainSpeakerModeratorId() != null) {
+                    records.writeInt(UNRESOLVED_SPEAKER - ref(session.getMainSpeakerModeratorId(), stringIndex, strings));
+                } else {
+                    records.writeInt(-1);
+                }
+            }
+
+            int stringBytes = 0;
+            for (byte[] string : strings) {
+                stringBytes += 4 + string.length;
+            }
+            int flags = (conference.getStaff() == null ? NULL_STAFF : 0)
+                    | (conference.getSpeakers() == null ? NULL_SPEAKERS : 0)
+                    | (conference.getAttendees() == null ? NULL_ATTENDEES : 0)
+                    | (conference.getVendorSponsors() == null ? NULL_VENDORS : 0)
+                    | (conference.getSessions() == null ? NULL_SESSIONS : 0);
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeShort(flags);
+                out.writeInt(strings.size());
+                out.writeInt(HEADER_BYTES + stringBytes);
+                out.writeInt(staff.size());
+                out.writeInt(speakers.size());
+                out.writeInt(listedSpeakers);
+                out.writeInt(attendees.size());
+                out.writeInt(vendors.size());
+                out.writeInt(sessions.size());
+                out.writeLong(0L); // reserved
+                for (byte[] string : strings) {
+                    out.writeInt(string.length);
+                    out.write(string);
+                }
+                recordBytes.writeTo(out);
+            }
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to save binary snapshot", e);
+        }
+    }
+
+    public static Conference read(Path file) {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new RuntimeException("Binary snapshot too large to map: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to load binary snapshot", e);
+        }
+
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new RuntimeException("Not a binary conference snapshot: " + file);
+        }
+        if (buffer.getShort(4) != VERSION) {
+            throw new RuntimeException("Unsupported binary snapshot version " + buffer.getShort(4) + ": " + file);
+        }
+        int flags = buffer.getShort(6);
+        int stringCount = buffer.getInt(8);
+        int recordsOffset = buffer.getInt(12);
+        int staffCount = buffer.getInt(16);
+        int speakerCount = buffer.getInt(20);
+        int listedSpeakers = buffer.getInt(24);
+        int attendeeCount = buffer.getInt(28);
+        int vendorCount = buffer.getInt(32);
+        int sessionCount = buffer.getInt(36);
+
+        String[] strings = new String[stringCount];
+        int position = HEADER_BYTES;
+        for (int i = 0; i < stringCount; i++) {
+            int length = buffer.getInt(position);
+            ByteBuffer bytes = buffer.duplicate();
+            bytes.position(position + 4);
+            bytes.limit(position + 4 + length);
+            strings[i] = StandardCharsets.UTF_8.decode(bytes).toString();
+            position += 4 + length;
+        }
+
+        int offset = recordsOffset;
+        int year = buffer.getInt(offset + 8);
+        Conference conference = new Conference(
+                string(strings, buffer.getInt(offset)),
+                string(strings, buffer.getInt(offset + 4)),
+                year == NO_YEAR ? null : Year.of(year),
+                string(strings, buffer.getInt(offset + 12)));
+        offset += CONFERENCE_RECORD_BYTES;
+
+        Set<Staff> staff = new LinkedHashSet<>();
+        for (int i = 0; i < staffCount; i++, offset += STAFF_RECORD_BYTES) {
+            staff.add(new Staff(
+                    string(strings, buffer.getInt(offset)),
+                    string(strings, buffer.getInt(offset + 4)),
+                    string(strings, buffer.getInt(offset + 8))));
+        }
+
+        Speaker[] speakers = new Speaker[speakerCount];
+        Set<Speaker> listed = new LinkedHashSet<>();
+        for (int i = 0; i < speakerCount; i++, offset += SPEAKER_RECORD_BYTES) {
+            speakers[i] = new Speaker(
+                    string(strings, buffer.getInt(offset)),
+                    string(strings, buffer.getInt(offset + 4)),
+                    string(strings, buffer.getInt(offset + 8)),
+                    string(strings, buffer.getInt(offset + 12)));
+            if (i < listedSpeakers) {
+                listed.add(speakers[i]);
+            }
+        }
+
+        PaymentType[] paymentTypes = PaymentType.values();
+        Set<Attendee> attendees = new LinkedHashSet<>();
+        for (int i = 0; i < attendeeCount; i++, offset += ATTENDEE_RECORD_BYTES) {
+            attendees.add(new Attendee(
+                    string(strings, buffer.getInt(offset)),
+                    string(strings, buffer.getInt(offset + 4)),
+                    paymentType(paymentTypes, buffer.getInt(offset + 12)),
+                    string(strings, buffer.getInt(offset + 8))));
+        }
+
+        Set<VendorSponsor> vendors = new LinkedHashSet<>();
+        for (int i = 0; i < vendorCount; i++, offset += VENDOR_RECORD_BYTES) {
+            vendors.add(new VendorSponsor(
+                    string(strings, buffer.getInt(offset)),
+                    string(strings, buffer.getInt(offset + 4)),
+                    string(strings, buffer.getInt(offset + 8)),
+                    string(strings, buffer.getInt(offset + 12))));
+        }
+
+        Set<Session> sessions = new LinkedHashSet<>();
+        for (int i = 0; i < sessionCount; i++, offset += SESSION_RECORD_BYTES) {
+            int speaker = buffer.getInt(offset + 8);
+            String title = string(strings, buffer.getInt(offset));
+            String sessionAbstract = string(strings, buffer.getInt(offset + 4));
+            if (speaker <= UNRESOLVED_SPEAKER) {
+                sessions.add(Session.withUnresolvedSpeaker(title, sessionAbstract,
+                        strings[UNRESOLVED_SPEAKER - speaker]));
+            } else {
+                sessions.add(new Session(title, sessionAbstract, speaker < 0 ? null : speakers[speaker]));
+            }
+        }
+
+        conference.setStaff((flags & NULL_STAFF) != 0 ? null : staff);
+        conference.setSpeakers((flags & NULL_SPEAKERS) != 0 ? null : listed);
+        conference.setAttendees((flags & NULL_ATTENDEES) != 0 ? null : attendees);
+        conference.setVendorSponsors((flags & NULL_VENDORS) != 0 ? null : vendors);
+        conference.setSessions((flags & NULL_SESSIONS) != 0 ? null : sessions);
+        return conference;
+    }
+
+    private static int ref(String value, Map<String, Integer> stringIndex, List<byte[]> strings) {
+        if (value == null) {
+            return NO_STRING;
+        }
+        Integer index = stringIndex.get(value);
+        if (index == null) {
+            index = strings.size();
+            stringIndex.put(value, index);
+            strings.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return index;
+    }
+
+    private static PaymentType paymentType(PaymentType[] paymentTypes, int ordinal) {
+        return ordinal < 0 ? null : paymentTypes[ordinal];
+    }
+
+    private static String string(String[] strings, int index) {
+        return index == NO_STRING ? null : strings[index];
+    }
+
+    private static <T> List<T> listOf(Collection<T> items) {
+        return items == null ? new ArrayList<>() : new ArrayList<>(items);
+    }
+}
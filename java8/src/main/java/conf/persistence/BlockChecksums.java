@@ -0,0 +1,181 @@
+package conf.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sidecar file with a CRC-32C for every block of an entity data file. Blocks
+ * are about {@link #BLOCK_SIZE} bytes and always end between two records, so
+ * when the data file is damaged the records of every block that still
+ * matches its checksum can be trusted and only the others are lost.
+ * <p>
+ * Like {@link RecordIndex}, the checksums remember the size and modification
+ * time of the data file they describe and are ignored once it has changed
+ * some other way.
+ */
+class BlockChecksums {
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final int MAGIC = 0x594A5343; // "YJSC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 28;
+    private static final int ENTRY_SIZE = 16;
+
+    private final Path checksumFile;
+    private final Path dataFile;
+    private final String label;
+
+    BlockChecksums(Path checksumFile, Path dataFile, String label) {
+        this.checksumFile = checksumFile;
+        this.dataFile = dataFile;
+        this.label = label;
+    }
+
+    /**
+     * Replaces the checksums; called right after the data file has been
+     * written and put in place.
+     *
+     * @param blocks - {offset, length, crc} of each block, in file order
+     */
+    public synchronized void write(List<long[]> blocks) {
+        try {
+            long size = Files.size(dataFile);
+            long modified = Files.getLastModifiedTime(dataFile).toMillis();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(checksumFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(size);
+                out.writeLong(modified);
+                out.writeInt(blocks.size());
+                for (long[] block : blocks) {
+                    out.writeLong(block[0]);
+                    out.writeInt((int) block[1]);
+                    out.writeInt((int) block[2]);
+                }
+            }
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to save " + label + " checksums", e);
+        }
+    }
+
+    /**
+     * Adds a block for bytes just appended at the end of the data file. Does
+     * nothing unless the checksums described the file as it was before.
+     */
+    public synchronized void append(long offset, byte[] bytes, int length) {
+        try (FileChannel channel = FileChannel.open(checksumFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getLong() != offset) {
+                return;
+            }
+            int count = header.getInt(24);
+            ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+            entry.putLong(offset).putInt(length).putInt(Crc32c.of(bytes, 0, length)).flip();
+            writeFully(channel, entry, HEADER_SIZE + (long) count * ENTRY_SIZE);
+            ByteBuffer update = ByteBuffer.allocate(20);
+            update.putLong(Files.size(dataFile)).putLong(Files.getLastModifiedTime(dataFile).toMillis())
+                    .putInt(count + 1).flip();
+            writeFully(channel, update, 8);
+        } catch (NoSuchFileException e) {
+            // Nothing to extend
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to save " + label + " checksums", e);
+        }
+    }
+
+    /**
+     * @return {offset, length, crc} of each block, or null if there are no
+     *         checksums for the data file as it is now
+     */
+    public synchronized List<long[]> read() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checksumFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            long size = in.readLong();
+            long modified = in.readLong();
+            if (size != Files.size(dataFile) || modified != Files.getLastModifiedTime(dataFile).toMillis()) {
+                return null;
+            }
+            int count = in.readInt();
+            List<long[]> blocks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                blocks.add(new long[]{in.readLong(), in.readInt(), in.readInt()});
+            }
+            return blocks;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            // A damaged checksum file is as good as none
+            StorageErrors.warning("Ignoring unreadable " + label + " checksums: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Checks the data file against its checksums, block by block.
+     *
+     * @return the offset of the first block that no longer matches, or -1
+     *         if they all do or there are no checksums to check against
+     */
+    public synchronized long firstDamagedBlock() {
+        List<long[]> blocks = read();
+        if (blocks == null) {
+            return -1;
+        }
+        try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            byte[] bytes = new byte[BLOCK_SIZE];
+            for (long[] block : blocks) {
+                int length = (int) block[1];
+                if (bytes.length < length) {
+                    bytes = new byte[length];
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+                readFully(channel, buffer, block[0]);
+                if (Crc32c.of(bytes, 0, length) != (int) block[2]) {
+                    return block[0];
+                }
+            }
+            return -1;
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to check " + label + " data", e);
+        }
+    }
+
+    public synchronized void delete() {
+        try {
+            Files.deleteIfExists(checksumFile);
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to delete " + label + " checksums", e);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Truncated checksum file");
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
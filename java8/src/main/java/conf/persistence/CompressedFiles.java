@@ -0,0 +1,48 @@
+package conf.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens data files for reading, decompressing them on the fly when they start
+ * with the GZIP magic bytes.
+ */
+final class CompressedFiles {
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private CompressedFiles() {
+    }
+
+    static InputStream open(Path file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+        try {
+            if (startsWithMagic(in)) {
+                return new GZIPInputStream(in, BUFFER_SIZE);
+            }
+            return in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    static boolean isCompressed(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 2)) {
+            return startsWithMagic(in);
+        }
+    }
+
+    // Peeks at the first two bytes without consuming them
+    private static boolean startsWithMagic(InputStream in) throws IOException {
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        // The magic number is stored low byte first
+        return first == (GZIPInputStream.GZIP_MAGIC & 0xff) && second == (GZIPInputStream.GZIP_MAGIC >> 8);
+    }
+}
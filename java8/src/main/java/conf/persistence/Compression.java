@@ -0,0 +1,16 @@
+package conf.persistence;
+
+/**
+ * Whether the data files are written compressed. Loading recognizes
+ * compressed files by their magic bytes whatever is configured here.
+ */
+public enum Compression {
+    NONE,
+    /**
+     * Files are streamed through GZIP. Text such as session abstracts
+     * compresses well, but records can then no longer be read individually
+     * through the index or appended as NDJSON lines, so those fall back to
+     * scanning the file and to the journal.
+     */
+    GZIP
+}
@@ -0,0 +1,367 @@
+package conf.persistence;
+
+import conf.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * In-memory cache of everything the storage backend holds, shared by all
+ * panels of the application.
+ * <p>
+ * Each entity type is read from disk the first time it is asked for. After
+ * that every caller gets the same list (and the same record instances) back,
+ * and edits are made to that list before it is saved. The files are only read
+ * again when something other than this repository's storage backend has
+ * changed them, which is detected from their modification stamp.
+ */
+public class ConferenceRepository {
+    private final StorageBackend storage;
+    private final Map<EntityType, Object> cache = new EnumMap<>(EntityType.class);
+    // Updated from the writer thread, so not guarded by this object's lock
+    private final Map<EntityType, Long> stamps = new ConcurrentHashMap<>();
+    private final List<EntityChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
+    public ConferenceRepository(JsonPersistenceManager persistenceManager) {
+        this(new JsonStorageBackend(persistenceManager));
+    }
+
+    public ConferenceRepository(StorageBackend storage) {
+        this.storage = storage;
+        // Our own writes must not look like outside changes
+        storage.addWriteListener(this::refreshStamp);
+    }
+
+    public StorageBackend getStorage() {
+        return storage;
+    }
+
+    /**
+     * Collections the conference file does not hold are filled with
+     * {@link LazySet}s over this repository's lists, so the conference
+     * header can be shown without reading any other file.
+     */
+    public Conference getConference() {
+        return cached(EntityType.CONFERENCE, () -> {
+            Conference conference = storage.loadConference();
+            if (conference != null) {
+                attachCollections(conference);
+            }
+            return conference;
+        });
+    }
+
+    public void saveConference(Conference conference) {
+        synchronized (this) {
+            cache.put(EntityType.CONFERENCE, conference);
+        }
+        storage.saveConference(conference);
+    }
+
+    public List<Speaker> getSpeakers() {
+        return cached(EntityType.SPEAKERS, storage.speakers()::loadAll);
+    }
+
+    public List<Attendee> getAttendees() {
+        return cached(EntityType.ATTENDEES, storage.attendees()::loadAll);
+    }
+
+    /**
+     * Sessions point at the same {@link Speaker} instances as
+     * {@link #getSpeakers()}. Speakers only found on a session (older files
+     * stored them inline) are added to the speakers so they are not lost.
+     * A session naming a speaker id that is not among the speakers keeps it
+     * as an unresolved reference.
+     */
+    public List<Session> getSessions() {
+        List<Speaker> speakers = getSpeakers();
+        return cached(EntityType.SESSIONS, () -> {
+            List<Session> sessions = storage.loadSessions(speakers);
+            adoptSessionSpeakers(sessions, speakers);
+            return sessions;
+        });
+    }
+
+    /**
+     * Deletes a speaker from the cached list and from storage. Refused with
+     * an {@link IllegalStateException} while a session still refers to the
+     * speaker, so no session is left pointing at a speaker that is gone.
+     */
+    public void removeSpeaker(Speaker speaker) {
+        List<Session> sessions = getSessions();
+        synchronized (this) {
+            for (Session session : sessions) {
+                if (speaker.getUniqueId().equals(session.getMainSpeakerModeratorId())) {
+                    throw new IllegalStateException(speaker.getFirstName() + " " + speaker.getLastName()
+                            + " still presents \"" + session.getSessionTitle() + "\"");
+                }
+            }
+            getSpeakers().remove(speaker);
+        }
+        storage.speakers().remove(speaker.getUniqueId());
+    }
+
+    public List<Staff> getStaff() {
+        return cached(EntityType.STAFF, storage.staff()::loadAll);
+    }
+
+    public List<VendorSponsor> getVendors() {
+        return cached(EntityType.VENDORS, storage.vendors()::loadAll);
+    }
+
+    /**
+     * Reads all the entity files at once with
+     * {@link StorageBackend#loadAll()}, so the lists are already cached
+     * when they are first asked for. Does nothing without conference data.
+     */
+    public synchronized void preload() {
+        Conference conference = storage.loadAll();
+        if (conference == null) {
+            return;
+        }
+        List<Speaker> speakers = new ArrayList<>(conference.getSpeakers());
+        List<Session> sessions = new ArrayList<>(conference.getSessions());
+        adoptSessionSpeakers(sessions, speakers);
+        // The conference itself is left out: its copy now carries all the collections
+        preloaded(EntityType.SPEAKERS, speakers);
+        preloaded(EntityType.ATTENDEES, new ArrayList<>(conference.getAttendees()));
+        preloaded(EntityType.SESSIONS, sessions);
+        preloaded(EntityType.STAFF, new ArrayList<>(conference.getStaff()));
+        preloaded(EntityType.VENDORS, new ArrayList<>(conference.getVendorSponsors()));
+    }
+
+    public void addChangeListener(EntityChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Reads the file of a speaker, attendee or vendor list that is cached and
+     * compares it with the cached records by uniqueId. Nothing is modified
+     * yet; pass the result to {@link #applyChanges}. Returns null when the
+     * type is not cached, has no uniqueId, or its files are unchanged since
+     * they were last read or written through this repository.
+     */
+    public EntityChanges<?> detectChanges(EntityType entityType) {
+        if (entityType.getJournalFileName() == null) {
+            return null;
+        }
+        List<Object> cachedRecords;
+        Long cachedStamp;
+        long stamp = storage.modificationStamp(entityType);
+        synchronized (this) {
+            cachedStamp = stamps.get(entityType);
+            if (!cache.containsKey(entityType) || cachedStamp == null || cachedStamp == stamp) {
+                return null;
+            }
+            cachedRecords = new ArrayList<>((List<?>) cache.get(entityType));
+        }
+        return diff(entityType, cachedRecords, load(entityType), stamp, cachedStamp);
+    }
+
+    /**
+     * Brings the cached list up to date with changes found by
+     * {@link #detectChanges} and tells the listeners. Changed records are
+     * updated in place, so sessions keep pointing at the same speakers.
+     * Listeners are not called when nothing changed.
+     */
+    public void applyChanges(EntityChanges<?> changes) {
+        synchronized (this) {
+            @SuppressWarnings("unchecked")
+            List<Object> records = (List<Object>) cache.get(changes.getEntityType());
+            if (records == null) {
+                return;
+            }
+            Set<String> removed = new HashSet<>();
+            for (Object record : changes.getRemoved()) {
+                removed.add(KeyedRecords.idOf(record));
+            }
+            records.removeIf(record -> removed.contains(KeyedRecords.idOf(record)));
+            for (int i = 0; i < changes.getChanged().size(); i++) {
+                KeyedRecords.copyInto(changes.changedContents.get(i), changes.getChanged().get(i));
+            }
+            records.addAll(changes.getAdded());
+            // A write made since detectChanges has already stored a newer stamp
+            stamps.replace(changes.getEntityType(), changes.detectedAt, changes.stamp);
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        for (EntityChangeListener listener : changeListeners) {
+            listener.entitiesChanged(changes);
+        }
+    }
+
+    /**
+     * Drops the cached copy so the next access reads the files again.
+     */
+    public synchronized void invalidate(EntityType entityType) {
+        cache.remove(entityType);
+        stamps.remove(entityType);
+    }
+
+    public synchronized void invalidateAll() {
+        cache.clear();
+        stamps.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized <T> T cached(EntityType entityType, Supplier<T> loader) {
+        long stamp = storage.modificationStamp(entityType);
+        Long loadedStamp = stamps.get(entityType);
+        if (!cache.containsKey(entityType) || loadedStamp == null || loadedStamp != stamp) {
+            T loaded = loader.get();
+            Object existing = cache.get(entityType);
+            if (existing instanceof List && loaded instanceof List) {
+                // Callers may still hold the cached list, so it is brought up to date instead of replaced
+                refill(entityType, (List<Object>) existing, (List<Object>) loaded);
+            } else {
+                cache.put(entityType, loaded);
+            }
+            // Read again: the loader may have flushed pending writes first
+            stamps.put(entityType, storage.modificationStamp(entityType));
+        }
+        return (T) cache.get(entityType);
+    }
+
+    // Gives the cached list the loaded contents. Records with a uniqueId keep
+    // their instance when still there, so sessions keep pointing at the same
+    // speakers, as with applyChanges.
+    private static void refill(EntityType entityType, List<Object> records, List<Object> loaded) {
+        List<Object> updated = loaded;
+        if (entityType.getJournalFileName() != null) {
+            Map<String, Object> cachedById = new LinkedHashMap<>();
+            for (Object record : records) {
+                cachedById.put(KeyedRecords.idOf(record), record);
+            }
+            updated = new ArrayList<>(loaded.size());
+            for (Object record : loaded) {
+                Object cached = cachedById.get(KeyedRecords.idOf(record));
+                if (cached == null) {
+                    updated.add(record);
+                } else {
+                    KeyedRecords.copyInto(record, cached);
+                    updated.add(cached);
+                }
+            }
+        }
+        records.clear();
+        records.addAll(updated);
+    }
+
+    // Edits made through the conference's sets are stored the way the panels store theirs
+    private void attachCollections(Conference conference) {
+        if (conference.getSpeakers() == null) {
+            conference.setSpeakers(new LazySet<>(this::getSpeakers,
+                    speaker -> added(getSpeakers(), speaker, storage.speakers()), this::removeSpeaker));
+        }
+        if (conference.getAttendees() == null) {
+            conference.setAttendees(new LazySet<>(this::getAttendees,
+                    attendee -> added(getAttendees(), attendee, storage.attendees()),
+                    attendee -> removed(getAttendees(), attendee, storage.attendees())));
+        }
+        if (conference.getSessions() == null) {
+            conference.setSessions(new LazySet<>(this::getSessions,
+                    session -> changed(getSessions(), sessions -> sessions.add(session), storage.sessions()),
+                    session -> changed(getSessions(), sessions -> sessions.remove(session), storage.sessions())));
+        }
+        if (conference.getStaff() == null) {
+            conference.setStaff(new LazySet<>(this::getStaff,
+                    member -> changed(getStaff(), staff -> staff.add(member), storage.staff()),
+                    member -> changed(getStaff(), staff -> staff.remove(member), storage.staff())));
+        }
+        if (conference.getVendorSponsors() == null) {
+            conference.setVendorSponsors(new LazySet<>(this::getVendors,
+                    vendor -> added(getVendors(), vendor, storage.vendors()),
+                    vendor -> removed(getVendors(), vendor, storage.vendors())));
+        }
+    }
+
+    private <T> void added(List<T> records, T record, KeyedEntityRepository<T> store) {
+        synchronized (this) {
+            records.add(record);
+        }
+        store.put(record);
+    }
+
+    private <T> void removed(List<T> records, T record, KeyedEntityRepository<T> store) {
+        synchronized (this) {
+            records.remove(record);
+        }
+        store.remove(KeyedRecords.idOf(record));
+    }
+
+    // Records without a uniqueId are stored as a whole list
+    private <T> void changed(List<T> records, Consumer<List<T>> change, EntityRepository<T> store) {
+        List<T> saved;
+        synchronized (this) {
+            change.accept(records);
+            saved = new ArrayList<>(records);
+        }
+        store.saveAll(saved);
+    }
+
+    private void preloaded(EntityType entityType, Object loaded) {
+        cache.put(entityType, loaded);
+        stamps.put(entityType, storage.modificationStamp(entityType));
+    }
+
+    private void adoptSessionSpeakers(List<Session> sessions, List<Speaker> speakers) {
+        Set<Speaker> known = Collections.newSetFromMap(new IdentityHashMap<>());
+        known.addAll(speakers);
+        for (Session session : sessions) {
+            Speaker speaker = session.getMainSpeakerModerator();
+            if (speaker != null && known.add(speaker)) {
+                speakers.add(speaker);
+                storage.speakers().put(speaker);
+            }
+        }
+    }
+
+    private List<Object> load(EntityType entityType) {
+        switch (entityType) {
+            case SPEAKERS:
+                return new ArrayList<>(storage.speakers().loadAll());
+            case ATTENDEES:
+                return new ArrayList<>(storage.attendees().loadAll());
+            default:
+                return new ArrayList<>(storage.vendors().loadAll());
+        }
+    }
+
+    private static <T> EntityChanges<T> diff(EntityType entityType, List<T> cachedRecords, List<T> loaded, long stamp,
+                                             long detectedAt) {
+        Map<String, T> cachedById = new LinkedHashMap<>();
+        for (T record : cachedRecords) {
+            cachedById.put(KeyedRecords.idOf(record), record);
+        }
+        List<T> added = new ArrayList<>();
+        List<T> changed = new ArrayList<>();
+        List<T> changedContents = new ArrayList<>();
+        for (T record : loaded) {
+            T cached = cachedById.remove(KeyedRecords.idOf(record));
+            if (cached == null) {
+                added.add(record);
+            } else if (!KeyedRecords.sameContent(cached, record)) {
+                changed.add(cached);
+                changedContents.add(record);
+            }
+        }
+        // Whatever was not matched is gone from the file
+        List<T> removed = new ArrayList<>(cachedById.values());
+        return new EntityChanges<>(entityType, added, changed, changedContents, removed, stamp, detectedAt);
+    }
+
+    private void refreshStamp(EntityType entityType) {
+        stamps.computeIfPresent(entityType, (type, stamp) -> storage.modificationStamp(type));
+    }
+}
@@ -0,0 +1,72 @@
+package conf.persistence;
+
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C (Castagnoli), the checksum used for the blocks of the data files.
+ * Java 8 only ships the plain CRC-32 of {@link java.util.zip.CRC32}, so this
+ * is the usual table-driven version, processing eight bytes per step
+ * ("slicing-by-8").
+ */
+final class Crc32c implements Checksum {
+    // Reflected form of the Castagnoli polynomial 0x1EDC6F41
+    private static final int POLYNOMIAL = 0x82F63B78;
+    private static final int[][] TABLES = new int[8][256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+            }
+            TABLES[0][i] = crc;
+        }
+        for (int i = 0; i < 256; i++) {
+            for (int t = 1; t < 8; t++) {
+                TABLES[t][i] = (TABLES[t - 1][i] >>> 8) ^ TABLES[0][TABLES[t - 1][i] & 0xFF];
+            }
+        }
+    }
+
+    private int crc = 0xFFFFFFFF;
+
+    static int of(byte[] bytes, int offset, int length) {
+        Crc32c checksum = new Crc32c();
+        checksum.update(bytes, offset, length);
+        return (int) checksum.getValue();
+    }
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLES[0][(crc ^ b) & 0xFF];
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        int c = crc;
+        int i = offset;
+        int end = offset + length;
+        for (; end - i >= 8; i += 8) {
+            int low = c ^ ((bytes[i] & 0xFF) | (bytes[i + 1] & 0xFF) << 8
+                    | (bytes[i + 2] & 0xFF) << 16 | (bytes[i + 3] & 0xFF) << 24);
+            c = TABLES[7][low & 0xFF] ^ TABLES[6][(low >>> 8) & 0xFF]
+                    ^ TABLES[5][(low >>> 16) & 0xFF] ^ TABLES[4][low >>> 24]
+                    ^ TABLES[3][bytes[i + 4] & 0xFF] ^ TABLES[2][bytes[i + 5] & 0xFF]
+                    ^ TABLES[1][bytes[i + 6] & 0xFF] ^ TABLES[0][bytes[i + 7] & 0xFF];
+        }
+        for (; i < end; i++) {
+            c = (c >>> 8) ^ TABLES[0][(c ^ bytes[i]) & 0xFF];
+        }
+        crc = c;
+    }
+
+    @Override
+    public long getValue() {
+        return ~crc & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+}
@@ -0,0 +1,30 @@
+package conf.persistence;
+
+/**
+ * Thrown when the data file of an entity type fails its checksums or no
+ * longer parses. The file is left as it is and writes of the type are
+ * refused until the user either restores it (e.g. from a backup) or calls
+ * {@link JsonPersistenceManager#acceptRecovery(EntityType)} to keep the
+ * records that could still be read.
+ */
+public class DamagedDataException extends RuntimeException {
+    private final EntityType entityType;
+    private final int recoverable;
+
+    DamagedDataException(EntityType entityType, int recoverable, String message, Throwable cause) {
+        super(message, cause);
+        this.entityType = entityType;
+        this.recoverable = recoverable;
+    }
+
+    public EntityType getEntityType() {
+        return entityType;
+    }
+
+    /**
+     * How many records {@link JsonPersistenceManager#acceptRecovery(EntityType)} would keep.
+     */
+    public int getRecoverable() {
+        return recoverable;
+    }
+}
@@ -0,0 +1,138 @@
+package conf.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the directory of the data files for changes made by other writers
+ * (another instance of the application, an import script) and brings the
+ * cached speakers, attendees and vendors of a {@link ConferenceRepository} up
+ * to date record by record.
+ * <p>
+ * Files are read and compared on the watcher's own thread; the cached lists
+ * are updated and the repository's {@link EntityChangeListener}s called on
+ * the given executor, e.g. {@code SwingUtilities::invokeLater}, so that code
+ * reading the lists on that thread never sees them half updated. Other entity
+ * types have no uniqueId to compare by and are simply reloaded by the
+ * repository the next time they are asked for.
+ * <p>
+ * Attendees kept in shard files (see {@link JsonStorageBackend}) live in a
+ * directory of their own; it is watched as well when given, and any change
+ * in it counts as a change to the attendees.
+ */
+public class DataFileWatcher implements Closeable {
+    // Changes arriving this close together are handled as one
+    private static final long SETTLE_MILLIS = 100;
+
+    private final ConferenceRepository repository;
+    private final Executor executor;
+    private final Path directory;
+    private final WatchService watchService;
+    private final WatchKey attendeeKey;
+    private final Thread thread;
+
+    public DataFileWatcher(ConferenceRepository repository, Executor executor) {
+        this(repository, executor, null);
+    }
+
+    /**
+     * @param attendeeDirectory - the directory of the attendee shards, or null
+     *                          if the attendees are in the data directory
+     */
+    public DataFileWatcher(ConferenceRepository repository, Executor executor, Path attendeeDirectory) {
+        this.repository = repository;
+        this.executor = executor;
+        this.directory = Paths.get(EntityType.ATTENDEES.getFileName()).toAbsolutePath().getParent();
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            register(directory);
+            this.attendeeKey = attendeeDirectory == null ? null : register(attendeeDirectory);
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to watch " + directory, e);
+        }
+        this.thread = new Thread(this::run, "persistence-watcher");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            StorageErrors.ignored("Failed to stop watching data files", e);
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Set<EntityType> touched = EnumSet.noneOf(EntityType.class);
+                WatchKey key = watchService.take();
+                while (key != null) {
+                    collect(key, touched);
+                    key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                for (EntityType entityType : touched) {
+                    refresh(entityType);
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Closed
+        }
+    }
+
+    // Saves rename a new file into place, which shows up as a create
+    private WatchKey register(Path watched) throws IOException {
+        return watched.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    private void collect(WatchKey key, Set<EntityType> touched) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost, so look at everything
+                touched.addAll(EnumSet.allOf(EntityType.class));
+                continue;
+            }
+            if (key.equals(attendeeKey)) {
+                touched.add(EntityType.ATTENDEES);
+                continue;
+            }
+            String name = event.context().toString();
+            for (EntityType entityType : EntityType.values()) {
+                if (name.equals(entityType.getFileName()) || name.equals(entityType.getJournalFileName())) {
+                    touched.add(entityType);
+                }
+            }
+        }
+        key.reset();
+    }
+
+    private void refresh(EntityType entityType) {
+        try {
+            EntityChanges<?> changes = repository.detectChanges(entityType);
+            if (changes != null) {
+                executor.execute(() -> repository.applyChanges(changes));
+            }
+        } catch (RuntimeException e) {
+            // Possibly caught mid-write; the next event will bring it up to date
+            StorageErrors.warning("Failed to reload " + entityType.name().toLowerCase() + ": " + e.getMessage());
+        }
+    }
+}
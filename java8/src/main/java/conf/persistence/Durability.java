@@ -0,0 +1,26 @@
+package conf.persistence;
+
+/**
+ * How hard a save tries to survive a crash, from fastest to safest per save.
+ */
+public enum Durability {
+    /** Files are overwritten in place; a crash mid-save can leave them truncated. */
+    NONE,
+    /**
+     * Files are written to a temporary file that is then renamed over the old
+     * one, so after a crash either the old or the new contents are there.
+     * Nothing is forced to disk, so the newest saves can still be lost.
+     */
+    ATOMIC,
+    /**
+     * Like {@link #ATOMIC}, but every save and journal append is forced to
+     * disk before it returns.
+     */
+    FSYNC,
+    /**
+     * Like {@link #FSYNC}, but saves and appends that arrive while a force is
+     * running wait for it and are then forced together, so concurrent writers
+     * share one round of disk syncs instead of queueing for one each.
+     */
+    GROUP_COMMIT
+}
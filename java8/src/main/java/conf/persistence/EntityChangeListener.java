@@ -0,0 +1,10 @@
+package conf.persistence;
+
+/**
+ * Told about records that another writer added, changed or removed, once the
+ * cached lists of the {@link ConferenceRepository} have been updated.
+ */
+@FunctionalInterface
+public interface EntityChangeListener {
+    void entitiesChanged(EntityChanges<?> changes);
+}
@@ -0,0 +1,60 @@
+package conf.persistence;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What changed in the records of one entity type between the cached copy and
+ * the file, as found by {@link ConferenceRepository#detectChanges}. Changed
+ * records are the cached instances, updated in place once the changes have
+ * been applied, so references held elsewhere stay valid.
+ */
+public class EntityChanges<T> {
+    private final EntityType entityType;
+    private final List<T> added;
+    private final List<T> changed;
+    private final List<T> removed;
+    // The file stamp the changes were read at
+    final long stamp;
+    // The repository's stamp when they were read
+    final long detectedAt;
+    // New contents for each changed record, in the order of 'changed'
+    final List<T> changedContents;
+
+    EntityChanges(EntityType entityType, List<T> added, List<T> changed, List<T> changedContents,
+                  List<T> removed, long stamp, long detectedAt) {
+        this.entityType = entityType;
+        this.added = added;
+        this.changed = changed;
+        this.changedContents = changedContents;
+        this.removed = removed;
+        this.stamp = stamp;
+        this.detectedAt = detectedAt;
+    }
+
+    public EntityType getEntityType() {
+        return entityType;
+    }
+
+    public List<T> getAdded() {
+        return Collections.unmodifiableList(added);
+    }
+
+    public List<T> getChanged() {
+        return Collections.unmodifiableList(changed);
+    }
+
+    public List<T> getRemoved() {
+        return Collections.unmodifiableList(removed);
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return entityType + ": " + added.size() + " added, " + changed.size() + " changed, "
+                + removed.size() + " removed";
+    }
+}
@@ -0,0 +1,347 @@
+package conf.persistence;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Append-only change log that sits next to an entity snapshot file.
+ * <p>
+ * Every mutation is written as one small JSON line ({@code put} with the full
+ * record, or {@code remove} with just the unique id), so an edit costs the same
+ * no matter how many records the snapshot holds. Readers see the snapshot with
+ * the journal applied on top. Once the journal reaches the compaction threshold
+ * its contents are folded into a fresh snapshot and the log starts over.
+ * <p>
+ * The latest entry per id is kept in memory once the journal has been read,
+ * so a lookup does not read the file again unless something else changed it.
+ */
+class EntityJournal<T> {
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 500;
+
+    private static final String PUT = "put";
+    private static final String REMOVE = "remove";
+
+    private final Path journalFile;
+    private final TypeAdapter<T> adapter;
+    private final Function<T, String> idOf;
+    private final Supplier<Stream<T>> snapshotReader;
+    private final Consumer<List<T>> snapshotWriter;
+    private final int compactionThreshold;
+    private final FileCommitter committer;
+    private final String label;
+    // Number of records in the journal file, counted whenever it is read
+    private int recordCount;
+    // Latest JSON value per id in first-seen order, a null value marking a
+    // removal; null until the journal is read. Kept encoded so callers always
+    // get records of their own.
+    private Map<String, String> pending;
+    // Size and modification time of the journal file when 'pending' was last
+    // brought up to date, to notice writes by anyone else
+    private long knownSize = -1;
+    private long knownModified = -1;
+
+    EntityJournal(Path journalFile, TypeAdapter<T> adapter, Function<T, String> idOf,
+                  Supplier<Stream<T>> snapshotReader, Consumer<List<T>> snapshotWriter,
+                  int compactionThreshold, FileCommitter committer, String label) {
+        this.journalFile = journalFile;
+        this.adapter = adapter;
+        this.idOf = idOf;
+        this.snapshotReader = snapshotReader;
+        this.snapshotWriter = snapshotWriter;
+        this.compactionThreshold = compactionThreshold;
+        this.committer = committer;
+        this.label = label;
+    }
+
+    public synchronized void put(T entity) {
+        append(PUT, idOf.apply(entity), entity);
+    }
+
+    public synchronized void remove(String id) {
+        append(REMOVE, id, null);
+    }
+
+    /**
+     * Applies the pending journal records to a stream of snapshot records:
+     * removed ids are dropped, re-put ids are replaced in place and ids that
+     * only exist in the journal follow the snapshot.
+     */
+    public synchronized Stream<T> overlay(Stream<T> snapshot) {
+        Map<String, T> pending = decodePending();
+        if (pending.isEmpty()) {
+            return snapshot;
+        }
+        Set<String> seen = new HashSet<>();
+        Stream<T> updated = snapshot
+                .filter(entity -> !pending.containsKey(idOf.apply(entity)) || pending.get(idOf.apply(entity)) != null)
+                .map(entity -> {
+                    String id = idOf.apply(entity);
+                    seen.add(id);
+                    return pending.containsKey(id) ? pending.get(id) : entity;
+                });
+        // Built lazily so that 'seen' is complete by the time it is consulted
+        Stream<T> added = StreamSupport.stream(() -> pending.entrySet().stream()
+                .filter(entry -> entry.getValue() != null && !seen.contains(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .spliterator(), Spliterator.ORDERED, false);
+        return Stream.concat(updated, added);
+    }
+
+    /**
+     * Returns the journaled record for the id, null if the journal removed it,
+     * or what {@code snapshotLookup} finds if the journal does not mention it.
+     */
+    public synchronized T find(String id, Function<String, T> snapshotLookup) {
+        Map<String, String> pending = readPending();
+        if (pending.containsKey(id)) {
+            String value = pending.get(id);
+            return value == null ? null : decode(value);
+        }
+        return snapshotLookup.apply(id);
+    }
+
+    public synchronized boolean mentions(String id) {
+        return readPending().containsKey(id);
+    }
+
+    /**
+     * Folds the journal into a new snapshot and truncates it.
+     */
+    public synchronized void compact() {
+        if (!Files.exists(journalFile)) {
+            return;
+        }
+        List<T> current;
+        try (Stream<T> records = overlay(snapshotReader.get())) {
+            current = records.collect(Collectors.toCollection(ArrayList::new));
+        }
+        snapshotWriter.accept(current);
+        reset();
+    }
+
+    /**
+     * Discards the journal; called once a full snapshot has been written.
+     */
+    public synchronized void reset() {
+        try {
+            Files.deleteIfExists(journalFile);
+            recordCount = 0;
+            pending = new LinkedHashMap<>();
+            noteFileState();
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to reset " + label + " journal", e);
+        }
+    }
+
+    private void append(String op, String id, T entity) {
+        try {
+            String value = entity == null ? null : encode(entity);
+            // Read first, so the journal is known in full before it grows
+            Map<String, String> current = readPending();
+            int existing = recordCount;
+            try (Writer out = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                out.write(line(op, id, value));
+            }
+            committer.sync(journalFile);
+            recordCount = existing + 1;
+            current.put(id, PUT.equals(op) ? value : null);
+            noteFileState();
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to journal " + label + " change", e);
+        }
+        if (recordCount >= compactionThreshold) {
+            compact();
+        }
+    }
+
+    private Map<String, T> decodePending() {
+        Map<String, T> decoded = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : readPending().entrySet()) {
+            decoded.put(entry.getKey(), entry.getValue() == null ? null : decode(entry.getValue()));
+        }
+        return decoded;
+    }
+
+    // The pending entries, read from the file only the first time or when the
+    // file is not as this journal last left it
+    private Map<String, String> readPending() {
+        if (pending != null && fileUnchanged()) {
+            return pending;
+        }
+        Map<String, String> loaded = new LinkedHashMap<>();
+        int lines = 0;
+        boolean torn = false;
+        if (Files.exists(journalFile)) {
+            try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        readRecord(line, loaded);
+                        lines++;
+                    } catch (IOException | JsonParseException | IllegalStateException e) {
+                        // Only the last line can be partial (a crash mid-append); stop there
+                        StorageErrors.warning("Ignoring damaged " + label + " journal record: " + e.getMessage());
+                        torn = true;
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                throw StorageErrors.failure("Failed to load " + label + " journal", e);
+            }
+        }
+        recordCount = lines;
+        if (torn) {
+            // Rewrite what was readable so later appends don't follow a partial line
+            rewrite(loaded);
+        }
+        pending = loaded;
+        noteFileState();
+        return loaded;
+    }
+
+    private void readRecord(String line, Map<String, String> pending) throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(line));
+        String op = null;
+        String id = null;
+        T value = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("op".equals(name)) {
+                op = reader.nextString();
+            } else if ("id".equals(name)) {
+                id = reader.nextString();
+            } else if ("value".equals(name)) {
+                value = adapter.read(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (id == null || !(PUT.equals(op) || REMOVE.equals(op))) {
+            throw new IllegalStateException("Unknown journal record: " + line);
+        }
+        // Re-inserting keeps the first-seen position for ids that were re-added
+        pending.put(id, PUT.equals(op) ? encode(value) : null);
+    }
+
+    // Writes the readable records to a new file and swaps it in, so a crash
+    // part way through leaves the old journal rather than a shorter one
+    private void rewrite(Map<String, String> records) {
+        Path directory = journalFile.toAbsolutePath().getParent();
+        Path written = null;
+        try {
+            written = Files.createTempFile(directory, journalFile.getFileName() + ".", ".tmp");
+            try (Writer out = Files.newBufferedWriter(written, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, String> entry : records.entrySet()) {
+                    out.write(line(entry.getValue() == null ? REMOVE : PUT, entry.getKey(), entry.getValue()));
+                }
+            }
+            committer.sync(written);
+            FileCommitter.replace(written, journalFile);
+            written = null;
+            recordCount = records.size();
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to repair " + label + " journal", e);
+        } finally {
+            if (written != null) {
+                committer.abort(written, journalFile);
+            }
+        }
+    }
+
+    private static String line(String op, String id, String value) throws IOException {
+        StringWriter line = new StringWriter();
+        JsonWriter writer = new JsonWriter(line);
+        writer.setSerializeNulls(false);
+        writer.beginObject();
+        writer.name("op").value(op);
+        writer.name("id").value(id);
+        if (value != null) {
+            writer.name("value").jsonValue(value);
+        }
+        writer.endObject();
+        writer.flush();
+        line.write('\n');
+        return line.toString();
+    }
+
+    private String encode(T entity) {
+        StringWriter json = new StringWriter();
+        try {
+            JsonWriter writer = new JsonWriter(json);
+            writer.setSerializeNulls(false);
+            adapter.write(writer, entity);
+            writer.flush();
+        } catch (IOException e) {
+            // Writing to a string does not fail
+            throw new IllegalStateException(e);
+        }
+        return json.toString();
+    }
+
+    private T decode(String json) {
+        try {
+            return adapter.read(new JsonReader(new StringReader(json)));
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to load " + label + " journal", e);
+        }
+    }
+
+    private boolean fileUnchanged() {
+        try {
+            if (!Files.exists(journalFile)) {
+                return knownSize == -1;
+            }
+            BasicFileAttributes attributes = Files.readAttributes(journalFile, BasicFileAttributes.class);
+            return attributes.size() == knownSize && attributes.lastModifiedTime().toMillis() == knownModified;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void noteFileState() {
+        try {
+            if (Files.exists(journalFile)) {
+                BasicFileAttributes attributes = Files.readAttributes(journalFile, BasicFileAttributes.class);
+                knownSize = attributes.size();
+                knownModified = attributes.lastModifiedTime().toMillis();
+                return;
+            }
+        } catch (IOException e) {
+            // Read the file again next time
+            pending = null;
+        }
+        knownSize = -1;
+        knownModified = -1;
+    }
+}
@@ -0,0 +1,13 @@
+package conf.persistence;
+
+import java.util.List;
+
+/**
+ * Storage for all the records of one entity type, read and written as a
+ * whole list in the order given.
+ */
+public interface EntityRepository<T> {
+    List<T> loadAll();
+
+    void saveAll(List<T> records);
+}
@@ -0,0 +1,44 @@
+package conf.persistence;
+
+/**
+ * The kinds of data the persistence layer stores, one file each. Types whose
+ * records carry a uniqueId also have a journal of single-record changes and an
+ * index of where each record sits in the data file. Every list of records has
+ * block checksums to recover from damage with.
+ */
+public enum EntityType {
+    CONFERENCE("conference_data.json", null, null, null),
+    SPEAKERS("speakers_data.json", "speakers_data.journal", "speakers_data.idx", "speakers_data.crc"),
+    ATTENDEES("attendees_data.json", "attendees_data.journal", "attendees_data.idx", "attendees_data.crc"),
+    SESSIONS("sessions_data.json", null, null, "sessions_data.crc"),
+    STAFF("staff_data.json", null, null, "staff_data.crc"),
+    VENDORS("vendors_data.json", "vendors_data.journal", "vendors_data.idx", "vendors_data.crc");
+
+    private final String fileName;
+    private final String journalFileName;
+    private final String indexFileName;
+    private final String checksumFileName;
+
+    EntityType(String fileName, String journalFileName, String indexFileName, String checksumFileName) {
+        this.fileName = fileName;
+        this.journalFileName = journalFileName;
+        this.indexFileName = indexFileName;
+        this.checksumFileName = checksumFileName;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getJournalFileName() {
+        return journalFileName;
+    }
+
+    public String getIndexFileName() {
+        return indexFileName;
+    }
+
+    public String getChecksumFileName() {
+        return checksumFileName;
+    }
+}
@@ -0,0 +1,187 @@
+package conf.persistence;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Carries out a {@link Durability} policy for the files the persistence
+ * manager writes.
+ * <p>
+ * A save writes to the path returned by {@link #begin}, then calls
+ * {@link #commit} (or {@link #abort} if writing failed). An append to an
+ * existing file calls {@link #sync} once the bytes are written.
+ */
+class FileCommitter {
+    private final Durability durability;
+    // Group commit: writes waiting for the next round, and whether one is running
+    private final Object groupLock = new Object();
+    private List<Pending> queued = new ArrayList<>();
+    private boolean committing;
+
+    FileCommitter(Durability durability) {
+        this.durability = durability;
+    }
+
+    Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * @return the file to write the new contents of {@code target} to
+     */
+    Path begin(Path target) throws IOException {
+        if (durability == Durability.NONE) {
+            return target;
+        }
+        Path directory = target.toAbsolutePath().getParent();
+        return Files.createTempFile(directory, target.getFileName() + ".", ".tmp");
+    }
+
+    /**
+     * Puts the written file in place of {@code target}, forcing it to disk
+     * first if the policy asks for that.
+     */
+    void commit(Path written, Path target) throws IOException {
+        switch (durability) {
+            case NONE:
+                return;
+            case ATOMIC:
+                replace(written, target);
+                return;
+            case FSYNC:
+                force(written);
+                replace(written, target);
+                syncDirectory(target);
+                return;
+            default:
+                groupCommit(new Pending(written, target));
+        }
+    }
+
+    void abort(Path written, Path target) {
+        if (!written.equals(target)) {
+            try {
+                Files.deleteIfExists(written);
+            } catch (IOException e) {
+                StorageErrors.ignored("Failed to delete unfinished " + written, e);
+            }
+        }
+    }
+
+    /**
+     * Forces a file written in place (an append, or a file that is renamed
+     * later) to disk, if the policy asks for that.
+     */
+    void sync(Path file) throws IOException {
+        if (durability == Durability.FSYNC) {
+            force(file);
+        } else if (durability == Durability.GROUP_COMMIT) {
+            groupCommit(new Pending(file, null));
+        }
+    }
+
+    // The first caller to find no round running commits everything queued so
+    // far; later callers wait and are either taken along by a round that
+    // starts after they queued, or run the next round themselves.
+    private void groupCommit(Pending pending) throws IOException {
+        List<Pending> batch;
+        synchronized (groupLock) {
+            queued.add(pending);
+            while (committing && !pending.done) {
+                try {
+                    groupLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for group commit", e);
+                }
+            }
+            if (pending.done) {
+                pending.rethrow();
+                return;
+            }
+            committing = true;
+            batch = queued;
+            queued = new ArrayList<>();
+        }
+
+        IOException failure = null;
+        try {
+            Set<Path> directories = new LinkedHashSet<>();
+            for (Pending each : batch) {
+                force(each.written);
+            }
+            for (Pending each : batch) {
+                if (each.target != null) {
+                    replace(each.written, each.target);
+                    directories.add(each.target);
+                }
+            }
+            for (Path target : directories) {
+                syncDirectory(target);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+
+        synchronized (groupLock) {
+            for (Pending each : batch) {
+                each.done = true;
+                each.failure = failure;
+            }
+            committing = false;
+            groupLock.notifyAll();
+        }
+        pending.rethrow();
+    }
+
+    private static void force(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    static void replace(Path written, Path target) throws IOException {
+        try {
+            Files.move(written, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(written, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Makes the rename itself durable; not every platform can open a directory
+    static void syncDirectory(Path target) {
+        Path directory = target.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Best effort only
+        }
+    }
+
+    private static class Pending {
+        final Path written;
+        final Path target;
+        boolean done;
+        IOException failure;
+
+        Pending(Path written, Path target) {
+            this.written = written;
+            this.target = target;
+        }
+
+        void rethrow() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
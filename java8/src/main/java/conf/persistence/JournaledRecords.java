@@ -0,0 +1,104 @@
+package conf.persistence;
+
+import com.google.gson.TypeAdapter;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The files of one entity type whose records carry a uniqueId: the snapshot,
+ * the {@link EntityJournal} of single-record edits on top of it and the
+ * {@link RecordIndex} for reading one record without the others.
+ */
+class JournaledRecords<T> {
+    private final EntityType type;
+    private final TypeAdapter<T> adapter;
+    private final Function<T, String> idOf;
+    private final RecordFiles files;
+    private final String label;
+    private final RecordIndex index;
+    private final EntityJournal<T> journal;
+
+    JournaledRecords(EntityType type, TypeAdapter<T> adapter, Function<T, String> idOf, RecordFiles files,
+                     FileCommitter committer) {
+        this.type = type;
+        this.adapter = adapter;
+        this.idOf = idOf;
+        this.files = files;
+        this.label = type.name().toLowerCase();
+        this.index = new RecordIndex(Paths.get(type.getIndexFileName()), Paths.get(type.getFileName()), label);
+        this.journal = new EntityJournal<>(Paths.get(type.getJournalFileName()), adapter, idOf,
+                this::streamSnapshot, this::writeSnapshot,
+                EntityJournal.DEFAULT_COMPACTION_THRESHOLD, committer, label);
+    }
+
+    TypeAdapter<T> getAdapter() {
+        return adapter;
+    }
+
+    Function<T, String> getIdOf() {
+        return idOf;
+    }
+
+    RecordIndex getIndex() {
+        return index;
+    }
+
+    String getLabel() {
+        return label;
+    }
+
+    /**
+     * The snapshot records with the journal's changes applied.
+     */
+    List<T> withChanges(List<T> snapshot) {
+        try (Stream<T> records = journal.overlay(snapshot.stream())) {
+            return records.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    Stream<T> stream() {
+        return journal.overlay(streamSnapshot());
+    }
+
+    T find(String uniqueId) {
+        return journal.find(uniqueId, id -> files.find(type.getFileName(), index, adapter, idOf, id, label));
+    }
+
+    void put(T record) {
+        if (!files.appendLine(type.getFileName(), record, idOf.apply(record), adapter, journal, index, label)) {
+            journal.put(record);
+        }
+    }
+
+    void remove(String uniqueId) {
+        journal.remove(uniqueId);
+    }
+
+    /**
+     * Folds the journal into the snapshot. Should the journal outlive the
+     * new snapshot in a crash, replaying it again changes nothing, as the
+     * snapshot already holds the outcome of every record in it.
+     */
+    void compact() {
+        journal.compact();
+    }
+
+    /**
+     * Empties the journal once a new snapshot has been put in place by other means.
+     */
+    void reset() {
+        journal.reset();
+    }
+
+    private Stream<T> streamSnapshot() {
+        return files.stream(type.getFileName(), adapter, label);
+    }
+
+    private void writeSnapshot(List<T> records) {
+        files.write(type.getFileName(), records, adapter, idOf, index, label);
+    }
+}
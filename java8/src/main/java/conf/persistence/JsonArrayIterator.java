@@ -0,0 +1,92 @@
+package conf.persistence;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks the elements of a top-level JSON array one record at a time, so that
+ * only the element currently being read is held in memory. A document that is
+ * just {@code null} (what the save methods write for a null list) yields no
+ * elements. In lines mode the records follow each other at the top level
+ * instead, as in NDJSON.
+ */
+class JsonArrayIterator<T> implements Iterator<T>, Closeable {
+    private final JsonReader reader;
+    private final TypeAdapter<T> adapter;
+    private final String label;
+    private final boolean lines;
+    private boolean finished;
+
+    JsonArrayIterator(JsonReader reader, TypeAdapter<T> adapter, String label) {
+        this(reader, adapter, label, false);
+    }
+
+    JsonArrayIterator(JsonReader reader, TypeAdapter<T> adapter, String label, boolean lines) {
+        this.reader = reader;
+        this.adapter = adapter;
+        this.label = label;
+        this.lines = lines;
+        if (lines) {
+            reader.setLenient(true);
+            return;
+        }
+        try {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                finished = true;
+            } else {
+                reader.beginArray();
+            }
+        } catch (IOException e) {
+            close();
+            throw new RuntimeException("Failed to load " + label + " data", e);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (finished) {
+            return false;
+        }
+        try {
+            if (lines) {
+                finished = reader.peek() == JsonToken.END_DOCUMENT;
+                return !finished;
+            }
+            if (reader.hasNext()) {
+                return true;
+            }
+            reader.endArray();
+            finished = true;
+            return false;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load " + label + " data", e);
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return adapter.read(reader);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load " + label + " data", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            StorageErrors.ignored("Failed to close " + label + " data", e);
+        }
+    }
+}
@@ -2,26 +2,99 @@ package conf.persistence;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
 import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 import conf.*;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.time.Year;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Keeps the conference and each of its collections in a JSON file of its own.
+ * <p>
+ * How the files are laid out is left to {@link RecordFiles}; the journals and
+ * indexes of speakers, attendees and vendors to their {@link JournaledRecords};
+ * units of work to {@link UnitOfWorkManifest} and backups to
+ * {@link BackupBarrier}. Problems are reported through {@link StorageErrors}.
+ */
 public class JsonPersistenceManager {
-    private static final String DATA_FILE = "conference_data.json";
-    private static final String SPEAKERS_FILE = "speakers_data.json";
-    private static final String ATTENDEES_FILE = "attendees_data.json";
-    private static final String SESSIONS_FILE = "sessions_data.json";
-    private static final String STAFF_FILE = "staff_data.json";
-    private static final String VENDORS_FILE = "vendors_data.json";
+    private static final String DATA_FILE = EntityType.CONFERENCE.getFileName();
+    private static final String SESSIONS_FILE = EntityType.SESSIONS.getFileName();
+    private static final String STAFF_FILE = EntityType.STAFF.getFileName();
+    private static final String MIGRATED_SUFFIX = ".migrated";
     private final Gson gson;
+    private final FileCommitter committer;
+    private final RecordFiles files;
+    private final RecordRecovery recovery;
+    private final BackupBarrier barrier;
+    private final UnitOfWorkManifest manifest;
+    private final List<Consumer<EntityType>> writeListeners = new CopyOnWriteArrayList<>();
+    // Speakers, attendees and vendors carry a uniqueId, so single edits can be journaled
+    private final JournaledRecords<Speaker> speakers;
+    private final JournaledRecords<Attendee> attendees;
+    private final JournaledRecords<VendorSponsor> vendors;
     private Conference conference;
 
     public JsonPersistenceManager() {
+        this(new StorageSettings());
+    }
+
+    public JsonPersistenceManager(StorageSettings settings) {
+        this.committer = new FileCommitter(settings.getDurability());
+        this.gson = createGson(settings.isPrettyPrinting());
+        this.files = new RecordFiles(gson, settings.getFormat(), settings.getCompression(), committer);
+        this.recovery = new RecordRecovery(gson, files);
+        this.barrier = new BackupBarrier(committer);
+        this.speakers = new JournaledRecords<>(EntityType.SPEAKERS, gson.getAdapter(Speaker.class),
+                Speaker::getUniqueId, files, committer);
+        this.attendees = new JournaledRecords<>(EntityType.ATTENDEES, gson.getAdapter(Attendee.class),
+                Attendee::getUniqueId, files, committer);
+        this.vendors = new JournaledRecords<>(EntityType.VENDORS, gson.getAdapter(VendorSponsor.class),
+                VendorSponsor::getUniqueId, files, committer);
+        // The new file holds everything the journal had
+        this.manifest = new UnitOfWorkManifest(gson, committer, type -> {
+            JournaledRecords<?> records = journaled(type);
+            if (records != null) {
+                records.reset();
+            }
+        });
+        manifest.recover();
+    }
+
+    FileCommitter getCommitter() {
+        return committer;
+    }
+
+    // Held shared by every write and exclusively while a backup notes what to copy
+    ReadWriteLock getBackupLock() {
+        return barrier.getLock();
+    }
+
+    Gson getGson() {
+        return gson;
+    }
+
+    // Shared with the other storage backends, so every backend writes the same JSON for a record
+    static Gson createGson(boolean prettyPrinting) {
         GsonBuilder gsonBuilder = new GsonBuilder();
         // Register type adapter for Year class
         gsonBuilder.registerTypeAdapter(Year.class, new TypeAdapter<Year>() {
@@ -35,17 +108,115 @@ public class JsonPersistenceManager {
                 return Year.of(in.nextInt());
             }
         });
-        this.gson = gsonBuilder.setPrettyPrinting().create();
+        // Hand-written adapters for the record types, so no field is read reflectively
+        gsonBuilder.registerTypeAdapter(Speaker.class, new SpeakerAdapter());
+        gsonBuilder.registerTypeAdapter(Attendee.class, new AttendeeAdapter());
+        gsonBuilder.registerTypeAdapter(Staff.class, new StaffAdapter());
+        gsonBuilder.registerTypeAdapter(VendorSponsor.class, new VendorSponsorAdapter());
+        // Each collection has a file of its own; a lazy one is left out of the conference file
+        // rather than loaded just to be written there
+        gsonBuilder.registerTypeAdapterFactory(new TypeAdapterFactory() {
+            @Override
+            public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+                if (!Set.class.isAssignableFrom(type.getRawType())) {
+                    return null;
+                }
+                TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+                return new TypeAdapter<T>() {
+                    @Override
+                    public void write(JsonWriter out, T value) throws IOException {
+                        if (value instanceof LazySet) {
+                            out.nullValue();
+                        } else {
+                            delegate.write(out, value);
+                        }
+                    }
+
+                    @Override
+                    public T read(JsonReader in) throws IOException {
+                        return delegate.read(in);
+                    }
+                };
+            }
+        });
+        if (prettyPrinting) {
+            gsonBuilder.setPrettyPrinting();
+        }
+        return gsonBuilder.create();
     }
 
     public void saveConference(Conference conference) {
-        try {
-            String json = gson.toJson(conference);
-            Files.write(Paths.get(DATA_FILE), json.getBytes());
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to save conference data", e);
+        saveConference(writer -> gson.getAdapter(Conference.class).write(writer, conference));
+    }
+
+    /**
+     * The conference as {@link #saveConferenceSnapshot} writes it, so it
+     * can be written later without the caller's changes in between showing.
+     */
+    JsonElement conferenceSnapshot(Conference conference) {
+        return gson.toJsonTree(conference, Conference.class);
+    }
+
+    void saveConferenceSnapshot(JsonElement snapshot) {
+        saveConference(writer -> gson.toJson(snapshot, writer));
+    }
+
+    /**
+     * The records as they would be written, for the same reason as
+     * {@link #conferenceSnapshot}; {@link #fromSnapshot} turns them back into
+     * records of their own. Sessions keep only the id of their speaker.
+     */
+    <T> List<JsonElement> recordsSnapshot(EntityType entityType, List<T> records) {
+        if (records == null) {
+            return null;
+        }
+        TypeAdapter<T> adapter = recordAdapter(entityType);
+        List<JsonElement> snapshot = new ArrayList<>(records.size());
+        for (T record : records) {
+            snapshot.add(adapter.toJsonTree(record));
+        }
+        return snapshot;
+    }
+
+    <T> JsonElement recordSnapshot(EntityType entityType, T record) {
+        return this.<T>recordAdapter(entityType).toJsonTree(record);
+    }
+
+    <T> List<T> fromSnapshot(EntityType entityType, List<JsonElement> snapshot) {
+        if (snapshot == null) {
+            return null;
+        }
+        TypeAdapter<T> adapter = recordAdapter(entityType);
+        List<T> records = new ArrayList<>(snapshot.size());
+        for (JsonElement record : snapshot) {
+            records.add(adapter.fromJsonTree(record));
         }
+        return records;
+    }
+
+    <T> T fromSnapshot(EntityType entityType, JsonElement record) {
+        return this.<T>recordAdapter(entityType).fromJsonTree(record);
+    }
+
+    private void saveConference(RecordFiles.DocumentWriter document) {
+        barrier.writing(() -> {
+            Path target = Paths.get(DATA_FILE);
+            Path written = null;
+            boolean committed = false;
+            try {
+                written = committer.begin(target);
+                files.writeDocumentTo(written, document);
+                committer.commit(written, target);
+                committed = true;
+                written(EntityType.CONFERENCE);
+            } catch (IOException e) {
+                throw StorageErrors.failure("Failed to save conference data", e);
+            } finally {
+                if (!committed && written != null) {
+                    committer.abort(written, target);
+                }
+            }
+        });
     }
 
     public Conference loadConference() {
@@ -53,131 +224,518 @@ public class JsonPersistenceManager {
             if (!Files.exists(Paths.get(DATA_FILE))) {
                 return null;
             }
-            String json = new String(Files.readAllBytes(Paths.get(DATA_FILE)));
-            return gson.fromJson(json, Conference.class);
+            try (Reader reader = new InputStreamReader(CompressedFiles.open(Paths.get(DATA_FILE)), StandardCharsets.UTF_8)) {
+                return gson.fromJson(reader, Conference.class);
+            }
         } catch (IOException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to load conference data", e);
+            throw StorageErrors.failure("Failed to load conference data", e);
         }
     }
 
-    public void saveSpeakers(List<Speaker> speakers) {
+    /**
+     * Reads every data file at the same time, on a pool with a thread per file
+     * (or per core, if there are fewer), and assembles them into one
+     * {@link Conference}.
+     *
+     * @return null when there is no conference data, like {@link #loadConference()}
+     */
+    public Conference loadAll() {
+        return loadAll((entityType, nanos) -> { });
+    }
+
+    public Conference loadAll(ObjLongConsumer<EntityType> timings) {
+        return loadAll(timings, this::loadAttendees);
+    }
+
+    /**
+     * Loads everything as {@link #loadAll()} does, taking the attendees from
+     * {@code attendeeLoader} instead of the attendee file, e.g. when they are
+     * kept elsewhere.
+     */
+    Conference loadAll(ObjLongConsumer<EntityType> timings, Supplier<List<Attendee>> attendeeLoader) {
+        int threads = Math.min(EntityType.values().length, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "persistence-load");
+            thread.setDaemon(true);
+            return thread;
+        });
         try {
-            String json = gson.toJson(speakers);
-            Files.write(Paths.get(SPEAKERS_FILE), json.getBytes());
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to save speakers data", e);
+            return loadAll(executor, timings, attendeeLoader);
+        } finally {
+            executor.shutdown();
         }
     }
 
-    public List<Speaker> loadSpeakers() {
+    /**
+     * @param timings - told, on the loading thread, how many nanoseconds
+     *                reading and parsing each file took
+     */
+    public Conference loadAll(Executor executor, ObjLongConsumer<EntityType> timings) {
+        return loadAll(executor, timings, this::loadAttendees);
+    }
+
+    Conference loadAll(Executor executor, ObjLongConsumer<EntityType> timings,
+                       Supplier<List<Attendee>> attendeeLoader) {
+        CompletableFuture<Conference> conference = loadAsync(EntityType.CONFERENCE, this::loadConference, executor, timings);
+        CompletableFuture<List<Speaker>> speakers = loadAsync(EntityType.SPEAKERS, this::loadSpeakers, executor, timings);
+        CompletableFuture<List<Attendee>> attendees = loadAsync(EntityType.ATTENDEES, attendeeLoader, executor, timings);
+        // Parsed alongside the speakers and pointed at them once both are done
+        CompletableFuture<List<Session>> sessions = loadAsync(EntityType.SESSIONS, this::loadUnlinkedSessions, executor, timings);
+        CompletableFuture<List<Staff>> staff = loadAsync(EntityType.STAFF, this::loadStaff, executor, timings);
+        CompletableFuture<List<VendorSponsor>> vendors = loadAsync(EntityType.VENDORS, this::loadVendors, executor, timings);
         try {
-            if (!Files.exists(Paths.get(SPEAKERS_FILE))) {
-                return new ArrayList<>();
+            CompletableFuture.allOf(conference, speakers, attendees, sessions, staff, vendors).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
-            String json = new String(Files.readAllBytes(Paths.get(SPEAKERS_FILE)));
-            Speaker[] speakersArray = gson.fromJson(json, Speaker[].class);
-            return new ArrayList<>(Arrays.asList(speakersArray));
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to load speakers data", e);
+            throw new RuntimeException("Failed to load conference data", e.getCause());
+        }
+
+        Conference loaded = conference.join();
+        if (loaded == null) {
+            return null;
         }
+        Map<String, Speaker> speakersById = new HashMap<>();
+        for (Speaker speaker : speakers.join()) {
+            speakersById.put(speaker.getUniqueId(), speaker);
+        }
+        Set<Session> linkedSessions = new LinkedHashSet<>();
+        for (Session session : sessions.join()) {
+            linkedSessions.add(SessionAdapter.relink(session, speakersById));
+        }
+        loaded.setSpeakers(new LinkedHashSet<>(speakers.join()));
+        loaded.setAttendees(new LinkedHashSet<>(attendees.join()));
+        loaded.setSessions(linkedSessions);
+        loaded.setStaff(new LinkedHashSet<>(staff.join()));
+        loaded.setVendorSponsors(new LinkedHashSet<>(vendors.join()));
+        return loaded;
+    }
+
+    public void saveSpeakers(List<Speaker> speakers) {
+        commitSnapshot(EntityType.SPEAKERS, speakers);
+    }
+
+    public List<Speaker> loadSpeakers() {
+        return speakers.withChanges(readAll(EntityType.SPEAKERS, speakers));
+    }
+
+    public Stream<Speaker> streamSpeakers() {
+        return speakers.stream();
+    }
+
+    /**
+     * Reads the one speaker with the given id without loading the others.
+     *
+     * @return null if there is no such speaker
+     */
+    public Speaker findSpeaker(String uniqueId) {
+        return speakers.find(uniqueId);
+    }
+
+    public void appendSpeaker(Speaker speaker) {
+        save(EntityType.SPEAKERS, () -> speakers.put(speaker));
+    }
+
+    public void appendSpeakerRemoval(String uniqueId) {
+        save(EntityType.SPEAKERS, () -> speakers.remove(uniqueId));
     }
 
     public void saveAttendees(List<Attendee> attendees) {
-        try {
-            String json = gson.toJson(attendees);
-            Files.write(Paths.get(ATTENDEES_FILE), json.getBytes());
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to save attendees data", e);
-        }
+        commitSnapshot(EntityType.ATTENDEES, attendees);
     }
 
     public List<Attendee> loadAttendees() {
-        try {
-            if (!Files.exists(Paths.get(ATTENDEES_FILE))) {
-                return new ArrayList<>();
-            }
-            String json = new String(Files.readAllBytes(Paths.get(ATTENDEES_FILE)));
-            Attendee[] attendeesArray = gson.fromJson(json, Attendee[].class);
-            return new ArrayList<>(Arrays.asList(attendeesArray));
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to load attendees data", e);
-        }
+        return attendees.withChanges(readAll(EntityType.ATTENDEES, attendees));
+    }
+
+    public Stream<Attendee> streamAttendees() {
+        return attendees.stream();
+    }
+
+    /**
+     * Reads the one attendee with the given id, e.g. to reprint a badge,
+     * without loading the others.
+     *
+     * @return null if there is no such attendee
+     */
+    public Attendee findAttendee(String uniqueId) {
+        return attendees.find(uniqueId);
+    }
+
+    public void appendAttendee(Attendee attendee) {
+        save(EntityType.ATTENDEES, () -> attendees.put(attendee));
     }
 
+    public void appendAttendeeRemoval(String uniqueId) {
+        save(EntityType.ATTENDEES, () -> attendees.remove(uniqueId));
+    }
+
+    /**
+     * Sessions are stored with the uniqueId of their speaker only; the
+     * speakers themselves belong in the speakers file.
+     */
     public void saveSessions(List<Session> sessions) {
-        try {
-            String json = gson.toJson(sessions);
-            Files.write(Paths.get(SESSIONS_FILE), json.getBytes());
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to save sessions data", e);
-        }
+        save(EntityType.SESSIONS, () ->
+                files.write(SESSIONS_FILE, sessions, sessionAdapter(new HashMap<>()), null, null, "sessions"));
     }
 
     public List<Session> loadSessions() {
-        try {
-            if (!Files.exists(Paths.get(SESSIONS_FILE))) {
-                return new ArrayList<>();
-            }
-            String json = new String(Files.readAllBytes(Paths.get(SESSIONS_FILE)));
-            Session[] sessionsArray = gson.fromJson(json, Session[].class);
-            return new ArrayList<>(Arrays.asList(sessionsArray));
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to load sessions data", e);
+        return loadSessions(loadSpeakers());
+    }
+
+    /**
+     * Loads the sessions, pointing each at the matching instance of the given
+     * speakers.
+     */
+    public List<Session> loadSessions(Collection<Speaker> speakers) {
+        Map<String, Speaker> speakersById = new HashMap<>();
+        for (Speaker speaker : speakers) {
+            speakersById.put(speaker.getUniqueId(), speaker);
         }
+        return readAll(EntityType.SESSIONS, sessionAdapter(speakersById), null, "sessions");
     }
 
-    public void saveStaff(List<Staff> staff) {
-        try {
-            String json = gson.toJson(staff);
-            Files.write(Paths.get(STAFF_FILE), json.getBytes());
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to save staff data", e);
+    public Stream<Session> streamSessions() {
+        return streamSessions(loadSpeakers());
+    }
+
+    public Stream<Session> streamSessions(Collection<Speaker> speakers) {
+        Map<String, Speaker> speakersById = new HashMap<>();
+        for (Speaker speaker : speakers) {
+            speakersById.put(speaker.getUniqueId(), speaker);
         }
+        return files.stream(SESSIONS_FILE, sessionAdapter(speakersById), "sessions");
+    }
+
+    public void saveStaff(List<Staff> staff) {
+        save(EntityType.STAFF, () -> files.write(STAFF_FILE, staff, gson.getAdapter(Staff.class), null, null, "staff"));
     }
 
     public List<Staff> loadStaff() {
-        try {
-            if (!Files.exists(Paths.get(STAFF_FILE))) {
-                return new ArrayList<>();
+        return readAll(EntityType.STAFF, gson.getAdapter(Staff.class), null, "staff");
+    }
+
+    public Stream<Staff> streamStaff() {
+        return files.stream(STAFF_FILE, gson.getAdapter(Staff.class), "staff");
+    }
+
+    public void saveVendors(List<VendorSponsor> vendors) {
+        commitSnapshot(EntityType.VENDORS, vendors);
+    }
+
+    public List<VendorSponsor> loadVendors() {
+        return vendors.withChanges(readAll(EntityType.VENDORS, vendors));
+    }
+
+    public Stream<VendorSponsor> streamVendors() {
+        return vendors.stream();
+    }
+
+    /**
+     * Reads the one vendor or sponsor with the given id without loading the
+     * others.
+     *
+     * @return null if there is no such vendor
+     */
+    public VendorSponsor findVendor(String uniqueId) {
+        return vendors.find(uniqueId);
+    }
+
+    public void appendVendor(VendorSponsor vendor) {
+        save(EntityType.VENDORS, () -> vendors.put(vendor));
+    }
+
+    public void appendVendorRemoval(String uniqueId) {
+        save(EntityType.VENDORS, () -> vendors.remove(uniqueId));
+    }
+
+    public UnitOfWork beginUnitOfWork() {
+        return new UnitOfWork(this);
+    }
+
+    /**
+     * Lists the files of the unit of work in a pending manifest, then writes
+     * the new contents of every changed type next to its file. Once they are
+     * all on disk, the manifest is renamed to its final name: that is the
+     * commit point. The new files are then renamed over the old ones and the
+     * manifest is removed. If that is interrupted, the next manager to start
+     * finishes the renames from the manifest; if it never got as far as the
+     * commit point, the files the pending manifest lists are deleted and the
+     * old contents stay.
+     */
+    void commit(UnitOfWork work) {
+        commit(work.getChangedTypes(), work::getChange);
+    }
+
+    private void commit(Set<EntityType> types, Function<EntityType, Object> changes) {
+        barrier.writing(() -> {
+            if (types.isEmpty()) {
+                return;
             }
-            String json = new String(Files.readAllBytes(Paths.get(STAFF_FILE)));
-            Staff[] staffArray = gson.fromJson(json, Staff[].class);
-            return new ArrayList<>(Arrays.asList(staffArray));
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to load staff data", e);
+            for (EntityType type : types) {
+                recovery.checkWritable(type);
+            }
+            String id = UUID.randomUUID().toString();
+            Map<EntityType, Path> pending = new EnumMap<>(EntityType.class);
+            for (EntityType type : types) {
+                pending.put(type, UnitOfWorkManifest.pendingFile(type, id));
+            }
+            Map<EntityType, RecordFiles.WrittenRecords> results = new EnumMap<>(EntityType.class);
+            try (UnitOfWorkManifest.Claim claim = manifest.claim(id, pending)) {
+                for (EntityType type : types) {
+                    Path file = pending.get(type);
+                    results.put(type, writePending(type, changes.apply(type), file));
+                    committer.sync(file);
+                }
+                claim.commit();
+                claim.apply();
+            } catch (IOException e) {
+                throw StorageErrors.failure("Failed to commit unit of work", e);
+            }
+            for (EntityType type : types) {
+                RecordFiles.WrittenRecords result = results.get(type);
+                if (result != null) {
+                    JournaledRecords<?> records = journaled(type);
+                    files.written(type, records == null ? null : records.getIndex(), result);
+                }
+                written(type);
+            }
+        });
+    }
+
+    /**
+     * Folds any pending journal records into the snapshot files.
+     */
+    public void compactJournals() {
+        barrier.writing(() -> {
+            for (EntityType type : EnumSet.of(EntityType.SPEAKERS, EntityType.ATTENDEES, EntityType.VENDORS)) {
+                // A damaged snapshot keeps its journal until the user deals with it
+                if (!recovery.isDamaged(type)) {
+                    journaled(type).compact();
+                    written(type);
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets aside the damaged file of the type that a load reported with a
+     * {@link DamagedDataException} and writes the records that could still be
+     * read in its place, so the type can be saved again. Changes in the
+     * journal still apply on top.
+     *
+     * @throws IllegalStateException if no damage was reported for the type
+     */
+    public void acceptRecovery(EntityType entityType) {
+        barrier.writing(() -> {
+            recovery.accept(entityType);
+            written(entityType);
+        });
+    }
+
+    /**
+     * Renames the data file and journal of the type with a {@code .migrated}
+     * suffix once its records are kept elsewhere, so that loads no longer
+     * read them; the old records stay on disk for the user. Does nothing if
+     * there are no such files.
+     */
+    void archive(EntityType entityType) {
+        save(entityType, () -> {
+            try {
+                for (String name : Arrays.asList(entityType.getFileName(), entityType.getJournalFileName())) {
+                    if (name != null && Files.exists(Paths.get(name))) {
+                        FileCommitter.replace(Paths.get(name), Paths.get(name + MIGRATED_SUFFIX));
+                    }
+                }
+            } catch (IOException e) {
+                throw StorageErrors.failure("Failed to archive " + entityType.name().toLowerCase() + " data", e);
+            }
+            JournaledRecords<?> records = journaled(entityType);
+            if (records != null) {
+                records.reset();
+                records.getIndex().delete();
+            }
+            BlockChecksums checksums = files.checksumsOf(entityType);
+            if (checksums != null) {
+                checksums.delete();
+            }
+        });
+    }
+
+    /**
+     * Registers a callback that runs after this manager has written the files
+     * of an entity type, so caches can tell their own writes from outside ones.
+     */
+    public void addWriteListener(Consumer<EntityType> listener) {
+        writeListeners.add(listener);
+    }
+
+    /**
+     * Copies the data files into {@code directory} as they are at one moment,
+     * while saves and appends go on; see {@link BackupBarrier}.
+     */
+    public void backup(Path directory) {
+        backup(directory, null);
+    }
+
+    /**
+     * Backs up as {@link #backup(Path)} does, handing {@code whileHeld} (if
+     * not null) the staging directory while writes are held off, for files
+     * kept outside this manager that writes hold {@link #getBackupLock()} for.
+     */
+    void backup(Path directory, Consumer<Path> whileHeld) {
+        barrier.backup(directory, whileHeld);
+    }
+
+    /**
+     * Folds the journals into the snapshot files, so the next start reads
+     * each type from one file; subclasses that queue writes finish them first.
+     */
+    public void close() {
+        compactJournals();
+    }
+
+    /**
+     * A value that changes whenever the files backing the entity type change
+     * (snapshot and journal modification time and size); 0 if none exist.
+     */
+    public long modificationStamp(EntityType entityType) {
+        long stamp = fileStamp(Paths.get(entityType.getFileName()));
+        if (entityType.getJournalFileName() != null) {
+            stamp = 31 * stamp + fileStamp(Paths.get(entityType.getJournalFileName()));
         }
+        return stamp;
     }
 
-    public void saveVendors(List<VendorSponsor> vendors) {
+    static long fileStamp(Path path) {
         try {
-            String json = gson.toJson(vendors);
-            Files.write(Paths.get(VENDORS_FILE), json.getBytes());
+            return 31 * Files.getLastModifiedTime(path).toMillis() + Files.size(path);
+        } catch (NoSuchFileException e) {
+            return 0;
         } catch (IOException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to save vendors data", e);
+            throw StorageErrors.failure("Failed to read file attributes of " + path, e);
         }
     }
 
-    public List<VendorSponsor> loadVendors() {
-        try {
-            if (!Files.exists(Paths.get(VENDORS_FILE))) {
-                return new ArrayList<>();
+    // A whole new snapshot of a journaled type goes through the manifest like
+    // a unit of work, so the journal is emptied at the same commit point: were
+    // the old journal still there after a crash, it would be replayed over the
+    // newer snapshot
+    private void commitSnapshot(EntityType entityType, List<?> records) {
+        commit(EnumSet.of(entityType), type -> records);
+    }
+
+    // Runs a write while holding off backups, then tells the write listeners
+    private void save(EntityType entityType, Runnable write) {
+        barrier.writing(() -> {
+            recovery.checkWritable(entityType);
+            write.run();
+            written(entityType);
+        });
+    }
+
+    private void written(EntityType entityType) {
+        for (Consumer<EntityType> listener : writeListeners) {
+            listener.accept(entityType);
+        }
+    }
+
+    private List<Session> loadUnlinkedSessions() {
+        TypeAdapter<Session> adapter = new SessionAdapter(gson.getAdapter(Speaker.class), new HashMap<>(), false);
+        return readAll(EntityType.SESSIONS, adapter, null, "sessions");
+    }
+
+    private <T> List<T> readAll(EntityType type, JournaledRecords<T> records) {
+        return readAll(type, records.getAdapter(), records.getIdOf(), records.getLabel());
+    }
+
+    // Reads the snapshot of a type after checking it against its checksums.
+    // A damaged file is left as it is until the user restores it or accepts
+    // what could be recovered; other failures are not taken for damage.
+    private <T> List<T> readAll(EntityType type, TypeAdapter<T> adapter, Function<T, String> idOf, String label) {
+        JournaledRecords<?> journaled = journaled(type);
+        RecordIndex index = journaled == null ? null : journaled.getIndex();
+        Consumer<List<T>> rewrite = recovered ->
+                files.write(type.getFileName(), recovered, adapter, idOf, index, label);
+        BlockChecksums checksums = files.checksumsOf(type);
+        long damaged = checksums == null ? -1 : checksums.firstDamagedBlock();
+        if (damaged >= 0) {
+            throw recovery.recover(type, adapter, label,
+                    new IOException("The " + label + " block at " + damaged + " does not match its checksum"), rewrite);
+        }
+        List<T> loaded;
+        try (Stream<T> records = files.stream(type.getFileName(), adapter, label)) {
+            loaded = records.collect(Collectors.toCollection(ArrayList::new));
+        } catch (RuntimeException e) {
+            if (!RecordRecovery.isParseFailure(e)) {
+                throw e;
             }
-            String json = new String(Files.readAllBytes(Paths.get(VENDORS_FILE)));
-            VendorSponsor[] vendorsArray = gson.fromJson(json, VendorSponsor[].class);
-            return new ArrayList<>(Arrays.asList(vendorsArray));
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to load vendors data", e);
+            throw recovery.recover(type, adapter, label, e, rewrite);
+        }
+        recovery.repaired(type);
+        return loaded;
+    }
+
+    private static <T> CompletableFuture<T> loadAsync(EntityType entityType, Supplier<T> loader,
+                                                      Executor executor, ObjLongConsumer<EntityType> timings) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            T loaded = loader.get();
+            timings.accept(entityType, System.nanoTime() - start);
+            return loaded;
+        }, executor);
+    }
+
+    private TypeAdapter<Session> sessionAdapter(Map<String, Speaker> speakersById) {
+        return new SessionAdapter(gson.getAdapter(Speaker.class), speakersById);
+    }
+
+    @SuppressWarnings("unchecked")
+    private RecordFiles.WrittenRecords writePending(EntityType type, Object change, Path file) throws IOException {
+        switch (type) {
+            case CONFERENCE:
+                files.writeDocumentTo(file, writer -> gson.getAdapter(Conference.class).write(writer, (Conference) change));
+                return null;
+            case SPEAKERS:
+                return files.writeTo(file, (List<Speaker>) change, speakers.getAdapter(), Speaker::getUniqueId, true);
+            case ATTENDEES:
+                return files.writeTo(file, (List<Attendee>) change, attendees.getAdapter(), Attendee::getUniqueId, true);
+            case SESSIONS:
+                return files.writeTo(file, (List<Session>) change, sessionAdapter(new HashMap<>()), null, false);
+            case STAFF:
+                return files.writeTo(file, (List<Staff>) change, gson.getAdapter(Staff.class), null, false);
+            default:
+                return files.writeTo(file, (List<VendorSponsor>) change, vendors.getAdapter(),
+                        VendorSponsor::getUniqueId, true);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> TypeAdapter<T> recordAdapter(EntityType type) {
+        switch (type) {
+            case SESSIONS:
+                // Read back without the speakers: the id is all that is written
+                return (TypeAdapter<T>) new SessionAdapter(gson.getAdapter(Speaker.class), new HashMap<>(), false);
+            case STAFF:
+                return (TypeAdapter<T>) gson.getAdapter(Staff.class);
+            case CONFERENCE:
+                throw new IllegalArgumentException("The conference is not a list of records");
+            default:
+                return (TypeAdapter<T>) journaled(type).getAdapter();
+        }
+    }
+
+    private JournaledRecords<?> journaled(EntityType type) {
+        switch (type) {
+            case SPEAKERS:
+                return speakers;
+            case ATTENDEES:
+                return attendees;
+            case VENDORS:
+                return vendors;
+            default:
+                return null;
         }
     }
 }
@@ -0,0 +1,233 @@
+package conf.persistence;
+
+import conf.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The JSON data files of a {@link JsonPersistenceManager} as a
+ * {@link StorageBackend}. Single records go through the manager's journals;
+ * range scans read the whole file, as the files are not sorted by uniqueId.
+ * <p>
+ * Attendees can instead be split over a directory of shard files (see
+ * {@link ShardedRecords}), for registrations too many to rewrite as one file.
+ */
+public class JsonStorageBackend implements StorageBackend {
+    private final JsonPersistenceManager persistenceManager;
+    private final KeyedEntityRepository<Speaker> speakers;
+    private final KeyedEntityRepository<Attendee> attendees;
+    private final ShardedRecords<Attendee> attendeeShards;
+    private final List<Consumer<EntityType>> writeListeners = new CopyOnWriteArrayList<>();
+    private final KeyedEntityRepository<VendorSponsor> vendors;
+    private final EntityRepository<Staff> staff;
+    private final EntityRepository<Session> sessions;
+
+    public JsonStorageBackend(JsonPersistenceManager persistenceManager) {
+        this(persistenceManager, null, 0);
+    }
+
+    /**
+     * Keeps the attendees in {@code shardCount} files in the given directory
+     * rather than in the manager's attendee file. The first time, attendees
+     * already in that file are moved into the shards, and the file and its
+     * journal are then renamed with a {@code .migrated} suffix.
+     */
+    public JsonStorageBackend(JsonPersistenceManager persistenceManager, Path attendeeDirectory, int shardCount) {
+        this.persistenceManager = persistenceManager;
+        persistenceManager.addWriteListener(this::written);
+        this.speakers = new KeyedFileRecords<>(persistenceManager::loadSpeakers, persistenceManager::saveSpeakers,
+                persistenceManager::findSpeaker, persistenceManager::appendSpeaker,
+                persistenceManager::appendSpeakerRemoval, Speaker::getUniqueId);
+        if (attendeeDirectory == null) {
+            this.attendeeShards = null;
+            this.attendees = new KeyedFileRecords<>(persistenceManager::loadAttendees,
+                    persistenceManager::saveAttendees, persistenceManager::findAttendee,
+                    persistenceManager::appendAttendee, persistenceManager::appendAttendeeRemoval,
+                    Attendee::getUniqueId);
+        } else {
+            this.attendeeShards = new ShardedRecords<>(attendeeDirectory, shardCount, "attendees",
+                    persistenceManager.getGson(), persistenceManager.getGson().getAdapter(Attendee.class),
+                    Attendee::getUniqueId, persistenceManager.getCommitter(), persistenceManager.getBackupLock(),
+                    () -> written(EntityType.ATTENDEES));
+            this.attendees = attendeeShards;
+            if (attendeeShards.isEmpty()) {
+                List<Attendee> existing = persistenceManager.loadAttendees();
+                if (!existing.isEmpty()) {
+                    attendeeShards.saveAll(existing);
+                }
+                // The shards hold them now, so loads need not read the old file
+                persistenceManager.archive(EntityType.ATTENDEES);
+            }
+        }
+        this.vendors = new KeyedFileRecords<>(persistenceManager::loadVendors, persistenceManager::saveVendors,
+                persistenceManager::findVendor, persistenceManager::appendVendor,
+                persistenceManager::appendVendorRemoval, VendorSponsor::getUniqueId);
+        this.staff = new FileRecords<>(persistenceManager::loadStaff, persistenceManager::saveStaff);
+        this.sessions = new FileRecords<>(persistenceManager::loadSessions, persistenceManager::saveSessions);
+    }
+
+    public JsonPersistenceManager getPersistenceManager() {
+        return persistenceManager;
+    }
+
+    @Override
+    public Conference loadConference() {
+        return persistenceManager.loadConference();
+    }
+
+    @Override
+    public void saveConference(Conference conference) {
+        persistenceManager.saveConference(conference);
+    }
+
+    @Override
+    public KeyedEntityRepository<Speaker> speakers() {
+        return speakers;
+    }
+
+    @Override
+    public KeyedEntityRepository<Attendee> attendees() {
+        return attendees;
+    }
+
+    @Override
+    public KeyedEntityRepository<VendorSponsor> vendors() {
+        return vendors;
+    }
+
+    @Override
+    public EntityRepository<Staff> staff() {
+        return staff;
+    }
+
+    @Override
+    public EntityRepository<Session> sessions() {
+        return sessions;
+    }
+
+    @Override
+    public List<Session> loadSessions(Collection<Speaker> speakers) {
+        return persistenceManager.loadSessions(speakers);
+    }
+
+    // Reads the files in parallel, the attendee shards alongside the others
+    @Override
+    public Conference loadAll() {
+        if (attendeeShards == null) {
+            return persistenceManager.loadAll();
+        }
+        return persistenceManager.loadAll((entityType, nanos) -> { }, attendeeShards::loadAll);
+    }
+
+    @Override
+    public long modificationStamp(EntityType entityType) {
+        if (entityType == EntityType.ATTENDEES && attendeeShards != null) {
+            return attendeeShards.modificationStamp();
+        }
+        return persistenceManager.modificationStamp(entityType);
+    }
+
+    @Override
+    public void addWriteListener(Consumer<EntityType> listener) {
+        writeListeners.add(listener);
+    }
+
+    /**
+     * Sharded attendees go into a directory of the same name inside
+     * {@code directory}. They are linked while the manager holds off writes,
+     * so the backup is of one moment for them and the manager's files alike.
+     */
+    @Override
+    public void backup(Path directory) {
+        if (attendeeShards == null) {
+            persistenceManager.backup(directory);
+        } else {
+            persistenceManager.backup(directory,
+                    staging -> attendeeShards.backup(staging.resolve(attendeeShards.getDirectory().getFileName())));
+        }
+    }
+
+    @Override
+    public void close() {
+        persistenceManager.close();
+    }
+
+    private void written(EntityType entityType) {
+        for (Consumer<EntityType> listener : writeListeners) {
+            listener.accept(entityType);
+        }
+    }
+
+    private static class FileRecords<T> implements EntityRepository<T> {
+        private final Supplier<List<T>> loader;
+        private final Consumer<List<T>> saver;
+
+        FileRecords(Supplier<List<T>> loader, Consumer<List<T>> saver) {
+            this.loader = loader;
+            this.saver = saver;
+        }
+
+        @Override
+        public List<T> loadAll() {
+            return loader.get();
+        }
+
+        @Override
+        public void saveAll(List<T> records) {
+            saver.accept(records);
+        }
+    }
+
+    private static class KeyedFileRecords<T> extends FileRecords<T> implements KeyedEntityRepository<T> {
+        private final Function<String, T> finder;
+        private final Consumer<T> appender;
+        private final Consumer<String> remover;
+        private final Function<T, String> idOf;
+
+        KeyedFileRecords(Supplier<List<T>> loader, Consumer<List<T>> saver, Function<String, T> finder,
+                   Consumer<T> appender, Consumer<String> remover, Function<T, String> idOf) {
+            super(loader, saver);
+            this.finder = finder;
+            this.appender = appender;
+            this.remover = remover;
+            this.idOf = idOf;
+        }
+
+        @Override
+        public T find(String uniqueId) {
+            return finder.apply(uniqueId);
+        }
+
+        @Override
+        public List<T> scan(String fromId, String toId) {
+            List<T> records = new ArrayList<>();
+            for (T record : loadAll()) {
+                String id = idOf.apply(record);
+                if ((fromId == null || id.compareTo(fromId) >= 0) && (toId == null || id.compareTo(toId) < 0)) {
+                    records.add(record);
+                }
+            }
+            records.sort(Comparator.comparing(idOf));
+            return records;
+        }
+
+        // Each operation is its own journal record, so a failure part way leaves the earlier ones written
+        @Override
+        public void write(WriteBatch<T> batch) {
+            for (WriteBatch.Operation<T> operation : batch.getOperations()) {
+                if (operation.record != null) {
+                    appender.accept(operation.record);
+                } else {
+                    remover.accept(operation.removedId);
+                }
+            }
+        }
+    }
+}
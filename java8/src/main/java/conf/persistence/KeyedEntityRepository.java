@@ -0,0 +1,34 @@
+package conf.persistence;
+
+import java.util.List;
+
+/**
+ * Storage for a record type with a uniqueId, which can also be read and
+ * written one record at a time.
+ */
+public interface KeyedEntityRepository<T> extends EntityRepository<T> {
+    /**
+     * @return null if there is no record with that uniqueId
+     */
+    T find(String uniqueId);
+
+    /**
+     * The records whose uniqueId is at least {@code fromId} and less than
+     * {@code toId}, ordered by uniqueId. Either bound may be null for no limit.
+     */
+    List<T> scan(String fromId, String toId);
+
+    default void put(T record) {
+        write(new WriteBatch<T>().put(record));
+    }
+
+    default void remove(String uniqueId) {
+        write(new WriteBatch<T>().remove(uniqueId));
+    }
+
+    /**
+     * Applies the puts and removals of the batch in order. Backends that can
+     * write them all or none do so.
+     */
+    void write(WriteBatch<T> batch);
+}
@@ -0,0 +1,70 @@
+package conf.persistence;
+
+import conf.Attendee;
+import conf.Speaker;
+import conf.VendorSponsor;
+import java.util.Objects;
+
+/**
+ * Field-by-field helpers for the record types that carry a uniqueId. The
+ * records themselves compare by identity, which the rest of the application
+ * relies on.
+ */
+final class KeyedRecords {
+    private KeyedRecords() {
+    }
+
+    static String idOf(Object record) {
+        if (record instanceof Speaker) {
+            return ((Speaker) record).getUniqueId();
+        }
+        if (record instanceof Attendee) {
+            return ((Attendee) record).getUniqueId();
+        }
+        return ((VendorSponsor) record).getUniqueId();
+    }
+
+    static boolean sameContent(Object a, Object b) {
+        if (a instanceof Speaker) {
+            Speaker x = (Speaker) a;
+            Speaker y = (Speaker) b;
+            return Objects.equals(x.getFirstName(), y.getFirstName())
+                    && Objects.equals(x.getLastName(), y.getLastName())
+                    && Objects.equals(x.getShirtSizeLabel(), y.getShirtSizeLabel());
+        }
+        if (a instanceof Attendee) {
+            Attendee x = (Attendee) a;
+            Attendee y = (Attendee) b;
+            return Objects.equals(x.getFirstName(), y.getFirstName())
+                    && Objects.equals(x.getLastName(), y.getLastName())
+                    && x.getPaymentType() == y.getPaymentType();
+        }
+        VendorSponsor x = (VendorSponsor) a;
+        VendorSponsor y = (VendorSponsor) b;
+        return Objects.equals(x.getFirstName(), y.getFirstName())
+                && Objects.equals(x.getLastName(), y.getLastName())
+                && Objects.equals(x.getBoothName(), y.getBoothName());
+    }
+
+    static void copyInto(Object from, Object to) {
+        if (from instanceof Speaker) {
+            Speaker source = (Speaker) from;
+            Speaker target = (Speaker) to;
+            target.setFirstName(source.getFirstName());
+            target.setLastName(source.getLastName());
+            target.setShirtSizeLabel(source.getShirtSizeLabel());
+        } else if (from instanceof Attendee) {
+            Attendee source = (Attendee) from;
+            Attendee target = (Attendee) to;
+            target.setFirstName(source.getFirstName());
+            target.setLastName(source.getLastName());
+            target.setPaymentType(source.getPaymentType());
+        } else {
+            VendorSponsor source = (VendorSponsor) from;
+            VendorSponsor target = (VendorSponsor) to;
+            target.setFirstName(source.getFirstName());
+            target.setLastName(source.getLastName());
+            target.setBoothName(source.getBoothName());
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package conf.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of key/value writes with an in-memory table of where the
+ * latest value of every key is, kept sorted for range scans.
+ * <p>
+ * The file starts with a magic number and version, followed by batches:
+ * payload length (int), CRC32 of the payload (int) and the payload, which is
+ * a count of operations and, for each, a kind byte, the key (UTF) and, for a
+ * put, the value length (int) and bytes. A batch is only applied when all of
+ * it is on disk with a matching checksum, so a write cut short by a crash is
+ * dropped as a whole when the log is opened again.
+ * <p>
+ * Overwritten and removed values stay in the file until it is compacted,
+ * which happens by itself once they take up more room than the live ones.
+ */
+class LogStore implements Closeable {
+    private static final int MAGIC = 0x594A4C47;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int BATCH_HEADER_SIZE = 8;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    // Not worth rewriting the log for less dead data than this
+    private static final long COMPACT_THRESHOLD = 1024 * 1024;
+    private static final int COMPACT_BATCH_SIZE = 1000;
+
+    private final Path file;
+    private final boolean sync;
+    private final String label;
+    private final TreeMap<String, Location> keys = new TreeMap<>();
+    private FileChannel channel;
+    private long liveBytes;
+    private long deadBytes;
+    private long version;
+
+    LogStore(Path file, boolean sync, String label) {
+        this.file = file;
+        this.sync = sync;
+        this.label = label;
+        try {
+            open();
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to open " + label + " log", e);
+        }
+    }
+
+    synchronized byte[] get(String key) {
+        Location location = keys.get(key);
+        if (location == null) {
+            return null;
+        }
+        try {
+            return read(location);
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to read " + label + " log", e);
+        }
+    }
+
+    /**
+     * Values of the keys from {@code fromKey} (inclusive) to {@code toKey}
+     * (exclusive) in key order; null bounds are open.
+     */
+    synchronized List<byte[]> scan(String fromKey, String toKey) {
+        Map<String, Location> range = keys;
+        if (fromKey != null && toKey != null) {
+            range = keys.subMap(fromKey, true, toKey, false);
+        } else if (fromKey != null) {
+            range = keys.tailMap(fromKey, true);
+        } else if (toKey != null) {
+            range = keys.headMap(toKey, false);
+        }
+        List<byte[]> values = new ArrayList<>(range.size());
+        try {
+            for (Location location : range.values()) {
+                values.add(read(location));
+            }
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to read " + label + " log", e);
+        }
+        return values;
+    }
+
+    /**
+     * Appends the writes as one batch. A null value removes the key.
+     */
+    synchronized void write(Map<String, byte[]> writes) {
+        if (writes.isEmpty()) {
+            return;
+        }
+        try {
+            append(writes);
+            version++;
+            if (deadBytes > COMPACT_THRESHOLD && deadBytes > liveBytes) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to write " + label + " log", e);
+        }
+    }
+
+    /**
+     * Makes the given entries the whole contents of the store, in one batch.
+     */
+    synchronized void replaceAll(Map<String, byte[]> entries) {
+        Map<String, byte[]> writes = new LinkedHashMap<>();
+        for (String key : keys.keySet()) {
+            if (!entries.containsKey(key)) {
+                writes.put(key, null);
+            }
+        }
+        writes.putAll(entries);
+        write(writes);
+    }
+
+    /**
+     * Counts the writes made through this store; the log is not shared.
+     */
+    synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Notes the log as it is now, to be copied into {@code target}. Batches
+     * are only ever appended after that length, and compaction puts a new
+     * file in place, so the copy can be made while writes go on.
+     */
+    synchronized BackupFiles.Prefix backup(Path target) throws IOException {
+        return new BackupFiles.Prefix(file, target.resolve(file.getFileName()));
+    }
+
+    /**
+     * Rewrites the log with only the latest value of every key.
+     */
+    synchronized void compact() throws IOException {
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        // Left over from a compaction that did not finish
+        Files.deleteIfExists(compacted);
+        try (LogStore target = new LogStore(compacted, false, label)) {
+            Map<String, byte[]> batch = new LinkedHashMap<>();
+            for (Map.Entry<String, Location> entry : keys.entrySet()) {
+                batch.put(entry.getKey(), read(entry.getValue()));
+                if (batch.size() == COMPACT_BATCH_SIZE) {
+                    target.append(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                target.append(batch);
+            }
+            target.channel.force(true);
+        }
+        channel.close();
+        FileCommitter.replace(compacted, file);
+        FileCommitter.syncDirectory(file);
+        keys.clear();
+        liveBytes = 0;
+        deadBytes = 0;
+        open();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            StorageErrors.ignored("Failed to close " + label + " log", e);
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            writeFully(header, 0);
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            channel.close();
+            throw new IOException(file + " is not a log store of a known version");
+        }
+        recover();
+    }
+
+    // Replays the batches into the key table, dropping a torn one at the end
+    private void recover() throws IOException {
+        long position = HEADER_SIZE;
+        long size = channel.size();
+        ByteBuffer batchHeader = ByteBuffer.allocate(BATCH_HEADER_SIZE);
+        while (position + BATCH_HEADER_SIZE <= size) {
+            batchHeader.clear();
+            readFully(batchHeader, position);
+            batchHeader.flip();
+            int length = batchHeader.getInt();
+            int checksum = batchHeader.getInt();
+            if (length < 0 || position + BATCH_HEADER_SIZE + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + BATCH_HEADER_SIZE);
+            if (checksum != checksum(payload.array(), length)) {
+                break;
+            }
+            apply(payload.array(), position + BATCH_HEADER_SIZE);
+            position += BATCH_HEADER_SIZE + length;
+        }
+        if (position < size) {
+            StorageErrors.warning("Dropping " + (size - position) + " bytes of incomplete writes from the "
+                    + label + " log");
+            channel.truncate(position);
+        }
+    }
+
+    private void append(Map<String, byte[]> writes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(writes.size());
+        for (Map.Entry<String, byte[]> write : writes.entrySet()) {
+            out.writeByte(write.getValue() == null ? REMOVE : PUT);
+            out.writeUTF(write.getKey());
+            if (write.getValue() != null) {
+                out.writeInt(write.getValue().length);
+                out.write(write.getValue());
+            }
+        }
+        out.flush();
+        byte[] payload = bytes.toByteArray();
+        long position = channel.size();
+        ByteBuffer batch = ByteBuffer.allocate(BATCH_HEADER_SIZE + payload.length);
+        batch.putInt(payload.length).putInt(checksum(payload, payload.length)).put(payload);
+        batch.flip();
+        writeFully(batch, position);
+        if (sync) {
+            channel.force(false);
+        }
+        // Only now that the batch is on disk do the keys point into it
+        apply(payload, position + BATCH_HEADER_SIZE);
+    }
+
+    private void apply(byte[] payload, long payloadPosition) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        try {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                byte kind = in.readByte();
+                String key = in.readUTF();
+                Location previous;
+                if (kind == PUT) {
+                    int length = in.readInt();
+                    long offset = payloadPosition + payload.length - in.available();
+                    in.skipBytes(length);
+                    previous = keys.put(key, new Location(offset, length));
+                    liveBytes += length;
+                } else {
+                    previous = keys.remove(key);
+                }
+                if (previous != null) {
+                    liveBytes -= previous.length;
+                    deadBytes += previous.length;
+                }
+            }
+        } catch (EOFException e) {
+            throw new IOException("Corrupt batch in the " + label + " log", e);
+        }
+    }
+
+    private byte[] read(Location location) throws IOException {
+        ByteBuffer value = ByteBuffer.allocate(location.length);
+        readFully(value, location.offset);
+        return value.array();
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of the " + label + " log");
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static class Location {
+        final long offset;
+        final int length;
+
+        Location(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package conf.persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import conf.*;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Keeps every entity type in its own {@link LogStore} in a directory, with
+ * records written as the same JSON as the data files.
+ * <p>
+ * Speakers, attendees and vendors are keyed by uniqueId, so a single edit
+ * appends just that record, and a read by uniqueId or a range scan only reads
+ * the records asked for; {@code loadAll()} returns them in uniqueId order.
+ * Staff and sessions have no key of their own and are stored under their
+ * position in the list, which {@code saveAll} replaces in one batch.
+ * <p>
+ * The directory is locked while open, so only one process uses it at a time.
+ */
+public class LogStructuredBackend implements StorageBackend {
+    private static final String LOCK_FILE = "LOCK";
+    private static final String CONFERENCE_KEY = "conference";
+
+    private final Gson gson;
+    private final Path directory;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final Map<EntityType, LogStore> stores = new EnumMap<>(EntityType.class);
+    private final List<Consumer<EntityType>> writeListeners = new CopyOnWriteArrayList<>();
+    // Held shared by writes and exclusively while a backup notes the log lengths
+    private final ReadWriteLock backupLock = new ReentrantReadWriteLock();
+    private final KeyedEntityRepository<Speaker> speakers;
+    private final KeyedEntityRepository<Attendee> attendees;
+    private final KeyedEntityRepository<VendorSponsor> vendors;
+    private final EntityRepository<Staff> staff;
+    private final EntityRepository<Session> sessions;
+
+    public LogStructuredBackend(Path directory) {
+        this(directory, Durability.ATOMIC);
+    }
+
+    /**
+     * @param durability - FSYNC and GROUP_COMMIT force every batch to disk
+     *                   before returning; a batch is all-or-nothing either way
+     */
+    public LogStructuredBackend(Path directory, Durability durability) {
+        this.gson = JsonPersistenceManager.createGson(false);
+        this.directory = directory;
+        boolean sync = durability == Durability.FSYNC || durability == Durability.GROUP_COMMIT;
+        try {
+            Files.createDirectories(directory);
+            lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+            lock = tryLock(lockChannel);
+            if (lock == null) {
+                lockChannel.close();
+                throw new IllegalStateException(directory + " is already in use");
+            }
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to open " + directory, e);
+        }
+        for (EntityType entityType : EntityType.values()) {
+            String label = entityType.name().toLowerCase();
+            stores.put(entityType, new LogStore(directory.resolve(label + ".log"), sync, label));
+        }
+        this.speakers = new KeyedLog<>(EntityType.SPEAKERS, gson.getAdapter(Speaker.class), Speaker::getUniqueId);
+        this.attendees = new KeyedLog<>(EntityType.ATTENDEES, gson.getAdapter(Attendee.class), Attendee::getUniqueId);
+        this.vendors = new KeyedLog<>(EntityType.VENDORS, gson.getAdapter(VendorSponsor.class),
+                VendorSponsor::getUniqueId);
+        this.staff = new ListLog<>(EntityType.STAFF, gson.getAdapter(Staff.class));
+        // Only writes go through this adapter, and they need no speakers
+        this.sessions = new ListLog<Session>(EntityType.SESSIONS,
+                new SessionAdapter(gson.getAdapter(Speaker.class), new HashMap<>())) {
+            @Override
+            public List<Session> loadAll() {
+                return loadSessions(speakers.loadAll());
+            }
+        };
+    }
+
+    @Override
+    public Conference loadConference() {
+        byte[] value = stores.get(EntityType.CONFERENCE).get(CONFERENCE_KEY);
+        return value == null ? null : gson.fromJson(new String(value, StandardCharsets.UTF_8), Conference.class);
+    }
+
+    @Override
+    public void saveConference(Conference conference) {
+        Map<String, byte[]> writes = new HashMap<>();
+        if (conference == null) {
+            writes.put(CONFERENCE_KEY, null);
+        } else {
+            // The collections are stored by their own logs; the rest of the
+            // header, the raffle winners included, is kept as the JSON backend keeps it
+            Conference details = new Conference(conference.getName(), conference.getNickName(),
+                    conference.getYear(), conference.getVenue());
+            details.setWinner1(conference.getWinner1());
+            details.setWinner2(conference.getWinner2());
+            details.setWinner3(conference.getWinner3());
+            writes.put(CONFERENCE_KEY, gson.toJson(details).getBytes(StandardCharsets.UTF_8));
+        }
+        write(EntityType.CONFERENCE, writes);
+    }
+
+    @Override
+    public KeyedEntityRepository<Speaker> speakers() {
+        return speakers;
+    }
+
+    @Override
+    public KeyedEntityRepository<Attendee> attendees() {
+        return attendees;
+    }
+
+    @Override
+    public KeyedEntityRepository<VendorSponsor> vendors() {
+        return vendors;
+    }
+
+    @Override
+    public EntityRepository<Staff> staff() {
+        return staff;
+    }
+
+    @Override
+    public EntityRepository<Session> sessions() {
+        return sessions;
+    }
+
+    @Override
+    public List<Session> loadSessions(Collection<Speaker> speakers) {
+        Map<String, Speaker> speakersById = new HashMap<>();
+        for (Speaker speaker : speakers) {
+            speakersById.put(speaker.getUniqueId(), speaker);
+        }
+        return decodeAll(stores.get(EntityType.SESSIONS).scan(null, null),
+                new SessionAdapter(gson.getAdapter(Speaker.class), speakersById), "sessions");
+    }
+
+    @Override
+    public long modificationStamp(EntityType entityType) {
+        return stores.get(entityType).version();
+    }
+
+    @Override
+    public void addWriteListener(Consumer<EntityType> listener) {
+        writeListeners.add(listener);
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code directory} is the one this backend uses
+     */
+    @Override
+    public void backup(Path directory) {
+        List<BackupFiles.Prefix> prefixes = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            // Copying a log onto itself would truncate it
+            if (Files.isSameFile(directory, this.directory)) {
+                throw new IllegalArgumentException("Cannot back up the data into its own directory " + directory);
+            }
+            backupLock.writeLock().lock();
+            try {
+                for (LogStore store : stores.values()) {
+                    prefixes.add(store.backup(directory));
+                }
+            } finally {
+                backupLock.writeLock().unlock();
+            }
+            for (BackupFiles.Prefix prefix : prefixes) {
+                prefix.copy();
+            }
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to back up to " + directory, e);
+        } finally {
+            for (BackupFiles.Prefix prefix : prefixes) {
+                prefix.close();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (LogStore store : stores.values()) {
+            store.close();
+        }
+        try {
+            lock.release();
+            lockChannel.close();
+        } catch (IOException e) {
+            StorageErrors.ignored("Failed to release the data directory lock", e);
+        }
+    }
+
+    // Null when another process, or another backend in this one, holds the lock
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    private void write(EntityType entityType, Map<String, byte[]> writes) {
+        backupLock.readLock().lock();
+        try {
+            stores.get(entityType).write(writes);
+        } finally {
+            backupLock.readLock().unlock();
+        }
+        written(entityType);
+    }
+
+    private void replaceAll(EntityType entityType, Map<String, byte[]> entries) {
+        backupLock.readLock().lock();
+        try {
+            stores.get(entityType).replaceAll(entries);
+        } finally {
+            backupLock.readLock().unlock();
+        }
+        written(entityType);
+    }
+
+    private void written(EntityType entityType) {
+        for (Consumer<EntityType> listener : writeListeners) {
+            listener.accept(entityType);
+        }
+    }
+
+    private static <T> byte[] encode(T record, TypeAdapter<T> adapter) {
+        return adapter.toJson(record).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static <T> T decode(byte[] value, TypeAdapter<T> adapter, String label) {
+        try {
+            return adapter.fromJson(new String(value, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to load " + label + " data", e);
+        }
+    }
+
+    private static <T> List<T> decodeAll(List<byte[]> values, TypeAdapter<T> adapter, String label) {
+        List<T> records = new ArrayList<>(values.size());
+        for (byte[] value : values) {
+            records.add(decode(value, adapter, label));
+        }
+        return records;
+    }
+
+    private class ListLog<T> implements EntityRepository<T> {
+        final EntityType entityType;
+        final TypeAdapter<T> adapter;
+
+        ListLog(EntityType entityType, TypeAdapter<T> adapter) {
+            this.entityType = entityType;
+            this.adapter = adapter;
+        }
+
+        @Override
+        public List<T> loadAll() {
+            return decodeAll(stores.get(entityType).scan(null, null), adapter, entityType.name().toLowerCase());
+        }
+
+        @Override
+        public void saveAll(List<T> records) {
+            Map<String, byte[]> entries = new LinkedHashMap<>();
+            for (int i = 0; i < records.size(); i++) {
+                // Zero-padded so key order is list order
+                entries.put(String.format("%010d", i), encode(records.get(i), adapter));
+            }
+            replaceAll(entityType, entries);
+        }
+    }
+
+    private class KeyedLog<T> extends ListLog<T> implements KeyedEntityRepository<T> {
+        private final Function<T, String> idOf;
+
+        KeyedLog(EntityType entityType, TypeAdapter<T> adapter, Function<T, String> idOf) {
+            super(entityType, adapter);
+            this.idOf = idOf;
+        }
+
+        @Override
+        public T find(String uniqueId) {
+            byte[] value = stores.get(entityType).get(uniqueId);
+            return value == null ? null : decode(value, adapter, entityType.name().toLowerCase());
+        }
+
+        @Override
+        public List<T> scan(String fromId, String toId) {
+            return decodeAll(stores.get(entityType).scan(fromId, toId), adapter, entityType.name().toLowerCase());
+        }
+
+        @Override
+        public void saveAll(List<T> records) {
+            Map<String, byte[]> entries = new LinkedHashMap<>();
+            for (T record : records) {
+                entries.put(idOf.apply(record), encode(record, adapter));
+            }
+            replaceAll(entityType, entries);
+        }
+
+        @Override
+        public void write(WriteBatch<T> batch) {
+            // The last operation on a uniqueId is the one that counts
+            Map<String, byte[]> writes = new LinkedHashMap<>();
+            for (WriteBatch.Operation<T> operation : batch.getOperations()) {
+                if (operation.record != null) {
+                    writes.put(idOf.apply(operation.record), encode(operation.record, adapter));
+                } else {
+                    writes.put(operation.removedId, null);
+                }
+            }
+            LogStructuredBackend.this.write(entityType, writes);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package conf.persistence;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parses an NDJSON file on the common fork-join pool. The mapped file is
+ * split in halves at line boundaries until the pieces are small, every piece
+ * is parsed on its own, and the results are joined back in file order.
+ */
+class NdjsonReader {
+    // Below this a piece is parsed instead of split further
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    private NdjsonReader() {
+    }
+
+    static <T> List<T> readAll(Path file, TypeAdapter<T> adapter, String label) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to map");
+            }
+            long complete = completeLength(channel);
+            if (complete < size) {
+                // Only the last line can be partial (a crash mid-append); leave it out
+                StorageErrors.warning("Ignoring partial last " + label + " record in " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, complete);
+            return ForkJoinPool.commonPool().invoke(new ParseTask<>(buffer, 0, (int) complete, adapter, label));
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to load " + label + " data", e);
+        }
+    }
+
+    /**
+     * The length of the file up to and including its last line break, i.e.
+     * without a trailing partial line.
+     */
+    static long completeLength(FileChannel channel) throws IOException {
+        long end = channel.size();
+        ByteBuffer block = ByteBuffer.allocate(4096);
+        while (end > 0) {
+            long start = Math.max(0, end - block.capacity());
+            block.clear().limit((int) (end - start));
+            channel.read(block, start);
+            for (int i = block.position() - 1; i >= 0; i--) {
+                byte b = block.get(i);
+                if (b == '\n') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    private static class ParseTask<T> extends RecursiveTask<List<T>> {
+        private final ByteBuffer buffer;
+        private final int from;
+        private final int to;
+        private final TypeAdapter<T> adapter;
+        private final String label;
+
+        ParseTask(ByteBuffer buffer, int from, int to, TypeAdapter<T> adapter, String label) {
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.adapter = adapter;
+            this.label = label;
+        }
+
+        @Override
+        protected List<T> compute() {
+            if (to - from > CHUNK_BYTES) {
+                int split = lineStartAfter(from + (to - from) / 2);
+                if (split < to) {
+                    ParseTask<T> first = new ParseTask<>(buffer, from, split, adapter, label);
+                    first.fork();
+                    List<T> second = new ParseTask<>(buffer, split, to, adapter, label).compute();
+                    List<T> records = first.join();
+                    records.addAll(second);
+                    return records;
+                }
+            }
+            return parse();
+        }
+
+        private int lineStartAfter(int position) {
+            while (position < to && buffer.get(position) != '\n') {
+                position++;
+            }
+            return Math.min(position + 1, to);
+        }
+
+        private List<T> parse() {
+            ByteBuffer piece = buffer.duplicate();
+            piece.limit(to).position(from);
+            CharBuffer text = StandardCharsets.UTF_8.decode(piece);
+            List<T> records = new ArrayList<>();
+            // Lenient so that one reader can take the records one after the other
+            JsonReader reader = new JsonReader(new CharArrayReader(text.array(), text.arrayOffset(), text.limit()));
+            reader.setLenient(true);
+            try {
+                while (reader.peek() != JsonToken.END_DOCUMENT) {
+                    records.add(adapter.read(reader));
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to load " + label + " data", e);
+            }
+            return records;
+        }
+    }
+}
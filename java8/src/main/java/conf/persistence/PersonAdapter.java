@@ -0,0 +1,85 @@
+package conf.persistence;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import conf.AllowedPerson;
+import java.io.IOException;
+
+/**
+ * Base for the hand-written adapters of the {@link AllowedPerson} types. They
+ * read and write each field directly instead of leaving it to Gson's
+ * reflection, and keep the field names and order Gson used, so files written
+ * either way can be read by both.
+ */
+abstract class PersonAdapter<T extends AllowedPerson> extends TypeAdapter<T> {
+    static final String FIRST_NAME = "firstName";
+    static final String LAST_NAME = "lastName";
+    static final String UNIQUE_ID = "uniqueId";
+
+    @Override
+    public void write(JsonWriter out, T person) throws IOException {
+        if (person == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        writeFields(out, person);
+        // Nulls are dropped unless the writer serializes nulls, as with reflection
+        out.name(FIRST_NAME).value(person.getFirstName());
+        out.name(LAST_NAME).value(person.getLastName());
+        out.endObject();
+    }
+
+    @Override
+    public T read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Fields fields = new Fields();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+            } else if (FIRST_NAME.equals(name)) {
+                fields.firstName = in.nextString();
+            } else if (LAST_NAME.equals(name)) {
+                fields.lastName = in.nextString();
+            } else if (UNIQUE_ID.equals(name)) {
+                fields.uniqueId = in.nextString();
+            } else if (!readField(in, name, fields)) {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return create(fields);
+    }
+
+    /**
+     * Writes the fields of the subclass, which come before the inherited names.
+     */
+    abstract void writeFields(JsonWriter out, T person) throws IOException;
+
+    /**
+     * Reads the non-null value of a field of the subclass into {@code fields}.
+     *
+     * @return false if the field is not known, so its value gets skipped
+     */
+    abstract boolean readField(JsonReader in, String name, Fields fields) throws IOException;
+
+    abstract T create(Fields fields);
+
+    /**
+     * The values read so far; {@code detail} holds the one field each type
+     * adds (shirt size, payment type, hat size or booth name).
+     */
+    static final class Fields {
+        String firstName;
+        String lastName;
+        String uniqueId;
+        String detail;
+    }
+}
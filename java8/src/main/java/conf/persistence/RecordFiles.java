@@ -0,0 +1,382 @@
+package conf.persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * How the data files of a {@link JsonPersistenceManager} are laid out:
+ * reading and writing them in the configured {@link StorageFormat} and
+ * {@link Compression}, keeping their block checksums and indexes in step,
+ * and appending single NDJSON lines.
+ */
+class RecordFiles {
+    private final Gson gson;
+    private final StorageFormat format;
+    private final Compression compression;
+    private final FileCommitter committer;
+    private final Map<EntityType, BlockChecksums> checksums = newChecksums();
+
+    RecordFiles(Gson gson, StorageFormat format, Compression compression, FileCommitter committer) {
+        this.gson = gson;
+        this.format = format;
+        this.compression = compression;
+        this.committer = committer;
+    }
+
+    BlockChecksums checksumsOf(EntityType type) {
+        return checksums.get(type);
+    }
+
+    // Reads an array element by element instead of materializing the whole
+    // document; the returned stream must be closed to release the file. NDJSON
+    // files are parsed in parallel up front instead.
+    <T> Stream<T> stream(String fileName, TypeAdapter<T> adapter, String label) {
+        Path path = Paths.get(fileName);
+        if (!Files.exists(path)) {
+            return Stream.empty();
+        }
+        JsonArrayIterator<T> iterator;
+        try {
+            boolean lines = StorageFormat.detect(path) == StorageFormat.NDJSON;
+            boolean compressed = CompressedFiles.isCompressed(path);
+            if (lines && !compressed) {
+                return NdjsonReader.readAll(path, adapter, label).stream();
+            }
+            // Compressed files can't be split up, so they are always read in one pass
+            Reader reader = new InputStreamReader(CompressedFiles.open(path), StandardCharsets.UTF_8);
+            iterator = new JsonArrayIterator<>(gson.newJsonReader(reader), adapter, label, lines);
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to load " + label + " data", e);
+        }
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .onClose(iterator::close);
+    }
+
+    /**
+     * Replaces the file with the records, then brings its index (if any) and
+     * checksums up to date.
+     */
+    <T> void write(String fileName, List<T> items, TypeAdapter<T> adapter,
+                   Function<T, String> idOf, RecordIndex index, String label) {
+        Path target = Paths.get(fileName);
+        Path written = null;
+        boolean committed = false;
+        try {
+            written = committer.begin(target);
+            WrittenRecords result = writeTo(written, items, adapter, idOf, index != null);
+            committer.commit(written, target);
+            committed = true;
+            updateIndex(index, result.locations);
+            updateChecksums(checksumsOf(fileName), result.blocks);
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to save " + label + " data", e);
+        } finally {
+            if (!committed && written != null) {
+                committer.abort(written, target);
+            }
+        }
+    }
+
+    // Streams the records straight to disk, so no intermediate String or
+    // byte[] copy of the document is built. If asked to, it notes the byte
+    // range of every record for the index: the JsonWriter is flushed around
+    // each record so the counted bytes line up with it. That only empties the
+    // encoder into the buffered stream below, it does not write to the file.
+    // The same flushes let checksum blocks end between records.
+    <T> WrittenRecords writeTo(Path file, List<T> items, TypeAdapter<T> adapter,
+                               Function<T, String> idOf, boolean index) throws IOException {
+        // Offsets into compressed data would be of no use for positional reads
+        // or for telling which records a damaged block held
+        boolean checksummed = items != null && compression == Compression.NONE;
+        boolean indexed = index && checksummed;
+        Map<String, long[]> locations = new HashMap<>();
+        CountingOutputStream counter = new CountingOutputStream(
+                new BufferedOutputStream(openOutput(file), CompressedFiles.BUFFER_SIZE), checksummed);
+        Writer out = new OutputStreamWriter(counter, StandardCharsets.UTF_8);
+        boolean lines = format == StorageFormat.NDJSON;
+        try (JsonWriter writer = lines ? newLineWriter(out) : gson.newJsonWriter(out)) {
+            if (items == null) {
+                writer.nullValue();
+            } else {
+                if (!lines) {
+                    writer.beginArray();
+                }
+                for (T item : items) {
+                    long start = 0;
+                    if (checksummed) {
+                        writer.flush();
+                        start = counter.count;
+                        counter.recordBoundary();
+                    }
+                    adapter.write(writer, item);
+                    if (indexed && item != null) {
+                        writer.flush();
+                        locations.putIfAbsent(idOf.apply(item), new long[]{start, counter.count - start});
+                    }
+                    if (lines) {
+                        out.write('\n');
+                    }
+                }
+                if (!lines) {
+                    writer.endArray();
+                }
+            }
+        }
+        return new WrittenRecords(indexed ? locations : null, checksummed ? counter.finishBlocks() : null);
+    }
+
+    /**
+     * Writes a single JSON document, such as the conference, to the file.
+     */
+    void writeDocumentTo(Path file, DocumentWriter document) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(openOutput(file), StandardCharsets.UTF_8));
+        try (JsonWriter jsonWriter = gson.newJsonWriter(writer)) {
+            document.write(jsonWriter);
+        }
+    }
+
+    /**
+     * Brings the index and checksums of a type up to date with a file written
+     * by {@link #writeTo} that has since been put in place.
+     */
+    void written(EntityType type, RecordIndex index, WrittenRecords result) {
+        updateIndex(index, result.locations);
+        updateChecksums(checksums.get(type), result.blocks);
+    }
+
+    // In NDJSON mode a record the data file and journal have not seen yet is
+    // added as one more line instead of going to the journal. Returns false
+    // when that does not apply and the caller should journal the record.
+    <T> boolean appendLine(String fileName, T record, String uniqueId, TypeAdapter<T> adapter,
+                           EntityJournal<T> journal, RecordIndex index, String label) {
+        Path path = Paths.get(fileName);
+        try {
+            if (format != StorageFormat.NDJSON || !Files.exists(path) || CompressedFiles.isCompressed(path)
+                    || StorageFormat.detect(path) != StorageFormat.NDJSON
+                    || journal.mentions(uniqueId) || index.contains(uniqueId)) {
+                return false;
+            }
+        } catch (RecordIndex.StaleIndexException e) {
+            return false;
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to save " + label + " data", e);
+        }
+        long end;
+        byte[] appended;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // A partial line left by a crash is not cut off here: a backup may be
+            // copying the file up to its old length. The record is journalled
+            // instead, and the next full save drops the partial line.
+            end = NdjsonReader.completeLength(channel);
+            if (end < channel.size()) {
+                return false;
+            }
+            StringWriter line = new StringWriter();
+            adapter.write(newLineWriter(line), record);
+            line.write('\n');
+            appended = line.toString().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.wrap(appended);
+            long position = end;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to save " + label + " data", e);
+        }
+        // Synced once the channel is closed, like a fully written file
+        try {
+            committer.sync(path);
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to save " + label + " data", e);
+        }
+        index.append(uniqueId, end, appended.length - 1);
+        checksumsOf(fileName).append(end, appended, appended.length);
+        return true;
+    }
+
+    // Looks the record up through the index, or by scanning the file when the
+    // index is missing or out of date
+    <T> T find(String fileName, RecordIndex index, TypeAdapter<T> adapter,
+               Function<T, String> idOf, String uniqueId, String label) {
+        try {
+            String json = index.read(uniqueId);
+            return json == null ? null : adapter.read(gson.newJsonReader(new StringReader(json)));
+        } catch (RecordIndex.StaleIndexException e) {
+            try (Stream<T> records = stream(fileName, adapter, label)) {
+                return records.filter(record -> record != null && uniqueId.equals(idOf.apply(record)))
+                        .findFirst().orElse(null);
+            }
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to load " + label + " data", e);
+        }
+    }
+
+    // Writes records compactly one after the other, as NDJSON lines need
+    private JsonWriter newLineWriter(Writer out) {
+        JsonWriter writer = new JsonWriter(out);
+        writer.setLenient(true);
+        writer.setSerializeNulls(false);
+        return writer;
+    }
+
+    private OutputStream openOutput(Path file) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        if (compression == Compression.GZIP) {
+            return new GZIPOutputStream(out, CompressedFiles.BUFFER_SIZE);
+        }
+        return out;
+    }
+
+    private BlockChecksums checksumsOf(String fileName) {
+        for (Map.Entry<EntityType, BlockChecksums> entry : checksums.entrySet()) {
+            if (entry.getKey().getFileName().equals(fileName)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static Map<EntityType, BlockChecksums> newChecksums() {
+        Map<EntityType, BlockChecksums> checksums = new EnumMap<>(EntityType.class);
+        for (EntityType type : EntityType.values()) {
+            if (type.getChecksumFileName() != null) {
+                checksums.put(type, new BlockChecksums(Paths.get(type.getChecksumFileName()),
+                        Paths.get(type.getFileName()), type.name().toLowerCase()));
+            }
+        }
+        return checksums;
+    }
+
+    private static void updateChecksums(BlockChecksums checksums, List<long[]> blocks) {
+        if (checksums == null) {
+            return;
+        }
+        if (blocks == null) {
+            checksums.delete();
+        } else {
+            checksums.write(blocks);
+        }
+    }
+
+    private static void updateIndex(RecordIndex index, Map<String, long[]> locations) {
+        if (index == null) {
+            return;
+        }
+        if (locations == null) {
+            index.delete();
+        } else {
+            index.write(locations);
+        }
+    }
+
+    // Writes a document from whatever holds it, e.g. the conference itself or a snapshot of it
+    interface DocumentWriter {
+        void write(JsonWriter writer) throws IOException;
+    }
+
+    /**
+     * The index locations and checksum blocks of a written data file; either
+     * is null when the file should have none.
+     */
+    static class WrittenRecords {
+        final Map<String, long[]> locations;
+        final List<long[]> blocks;
+
+        WrittenRecords(Map<String, long[]> locations, List<long[]> blocks) {
+            this.locations = locations;
+            this.blocks = blocks;
+        }
+    }
+
+    /**
+     * Counts the bytes written through it and, if asked to, checksums them in
+     * blocks of about {@link BlockChecksums#BLOCK_SIZE} that end where a
+     * record starts. Flushing stops here, so flushing the writer above does
+     * not reach the file on every record.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+        private final Crc32c crc;
+        private final List<long[]> blocks = new ArrayList<>();
+        private long blockStart;
+
+        CountingOutputStream(OutputStream out, boolean checksummed) {
+            super(out);
+            this.crc = checksummed ? new Crc32c() : null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (crc != null) {
+                crc.update(b);
+            }
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (crc != null) {
+                crc.update(b, off, len);
+            }
+            count += len;
+        }
+
+        // Called with everything before the next record written
+        void recordBoundary() {
+            if (count - blockStart >= BlockChecksums.BLOCK_SIZE) {
+                endBlock();
+            }
+        }
+
+        List<long[]> finishBlocks() {
+            if (count > blockStart) {
+                endBlock();
+            }
+            return blocks;
+        }
+
+        private void endBlock() {
+            blocks.add(new long[]{blockStart, count - blockStart, (int) crc.getValue()});
+            crc.reset();
+            blockStart = count;
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package conf.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sidecar file that maps the uniqueId of every record in an entity data file
+ * to the byte range the record occupies, so a single record can be read with
+ * one positional read instead of parsing the whole file.
+ * <p>
+ * The index remembers the size and modification time the data file had when
+ * it was written. If the data file has changed since (edited by hand, or
+ * written by something that does not keep the index), the index is ignored
+ * until the next save writes a new one.
+ */
+class RecordIndex {
+    private static final int MAGIC = 0x594A5349; // "YJSI"
+    private static final int VERSION = 1;
+
+    private final Path indexFile;
+    private final Path dataFile;
+    private final String label;
+    // Kept in memory after the first lookup, together with the data file state it describes
+    private Map<String, long[]> locations;
+    private long dataSize = -1;
+    private long dataModified = -1;
+
+    RecordIndex(Path indexFile, Path dataFile, String label) {
+        this.indexFile = indexFile;
+        this.dataFile = dataFile;
+        this.label = label;
+    }
+
+    /**
+     * Replaces the index; called right after the data file has been written
+     * and closed.
+     *
+     * @param locations - uniqueId to {offset, length} in the data file
+     */
+    public synchronized void write(Map<String, long[]> locations) {
+        try {
+            long size = Files.size(dataFile);
+            long modified = Files.getLastModifiedTime(dataFile).toMillis();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(size);
+                out.writeLong(modified);
+                out.writeInt(locations.size());
+                for (Map.Entry<String, long[]> entry : locations.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue()[0]);
+                    out.writeInt((int) entry.getValue()[1]);
+                }
+            }
+            this.locations = locations;
+            this.dataSize = size;
+            this.dataModified = modified;
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to save " + label + " index", e);
+        }
+    }
+
+    /**
+     * Adds the location of a record that was just appended at the end of the
+     * data file. Does nothing unless the index described the data file as it
+     * was before the append; lookups then scan until the next save.
+     */
+    public synchronized void append(String uniqueId, long offset, long length) {
+        if (locations == null || dataSize != offset) {
+            return;
+        }
+        try {
+            long size = Files.size(dataFile);
+            long modified = Files.getLastModifiedTime(dataFile).toMillis();
+            ByteArrayOutputStream entry = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(entry)) {
+                out.writeUTF(uniqueId);
+                out.writeLong(offset);
+                out.writeInt((int) length);
+            }
+            try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.WRITE)) {
+                writeFully(channel, ByteBuffer.wrap(entry.toByteArray()), channel.size());
+                // Header fields after magic and version: data size, data time, count
+                ByteBuffer header = ByteBuffer.allocate(20);
+                header.putLong(size).putLong(modified).putInt(locations.size() + 1).flip();
+                writeFully(channel, header, 8);
+            }
+            locations.put(uniqueId, new long[]{offset, length});
+            dataSize = size;
+            dataModified = modified;
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to save " + label + " index", e);
+        }
+    }
+
+    public synchronized boolean contains(String uniqueId) throws StaleIndexException {
+        return current().containsKey(uniqueId);
+    }
+
+    public synchronized void delete() {
+        try {
+            Files.deleteIfExists(indexFile);
+            locations = null;
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to delete " + label + " index", e);
+        }
+    }
+
+    /**
+     * Reads the JSON text of one record, or returns null when the index does
+     * not list the id.
+     *
+     * @throws StaleIndexException if there is no index for the current data file
+     */
+    public synchronized String read(String uniqueId) throws StaleIndexException {
+        long[] location = current().get(uniqueId);
+        if (location == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) location[1]);
+        try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            long position = location[0];
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new StaleIndexException();
+                }
+                position += read;
+            }
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to load " + label + " data", e);
+        }
+        buffer.flip();
+        String text = StandardCharsets.UTF_8.decode(buffer).toString();
+        // The range starts where the previous record ended, so it can begin with a comma
+        int start = text.indexOf('{');
+        if (start < 0) {
+            throw new StaleIndexException();
+        }
+        return text.substring(start);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private Map<String, long[]> current() throws StaleIndexException {
+        long size;
+        long modified;
+        try {
+            size = Files.size(dataFile);
+            modified = Files.getLastModifiedTime(dataFile).toMillis();
+        } catch (NoSuchFileException e) {
+            throw new StaleIndexException();
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to read file attributes of " + dataFile, e);
+        }
+        if (locations == null || size != dataSize || modified != dataModified) {
+            load();
+            if (size != dataSize || modified != dataModified) {
+                throw new StaleIndexException();
+            }
+        }
+        return locations;
+    }
+
+    private void load() throws StaleIndexException {
+        locations = null;
+        if (!Files.exists(indexFile)) {
+            throw new StaleIndexException();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new StaleIndexException();
+            }
+            dataSize = in.readLong();
+            dataModified = in.readLong();
+            int count = in.readInt();
+            Map<String, long[]> loaded = new HashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                String id = in.readUTF();
+                long offset = in.readLong();
+                int length = in.readInt();
+                loaded.put(id, new long[]{offset, length});
+            }
+            locations = loaded;
+        } catch (IOException e) {
+            // A damaged index is only a missed shortcut
+            StorageErrors.warning("Ignoring unreadable " + label + " index: " + e.getMessage());
+            throw new StaleIndexException();
+        }
+    }
+
+    /**
+     * There is no usable index; the caller has to scan the data file.
+     */
+    static class StaleIndexException extends Exception {
+        StaleIndexException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package conf.persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.MalformedJsonException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Gets back what it can of a data file that fails its checksums or no
+ * longer parses.
+ * <p>
+ * Keeps the records of every block that still matches its checksum, plus
+ * any appended after the last one, and drops the rest. Without checksums
+ * the records up to the first one that can't be parsed are kept. Nothing is
+ * written on its own: the damaged file stays where it is, writes of the type
+ * are refused, and only once the user accepts the recovery is the file moved
+ * aside to a {@code .quarantine-<time>} file and a snapshot of what was
+ * recovered written in its place. The journal is left alone, so its changes
+ * still apply on top.
+ */
+class RecordRecovery {
+    private final Gson gson;
+    private final RecordFiles files;
+    private final Map<EntityType, Runnable> accepts = new EnumMap<>(EntityType.class);
+
+    RecordRecovery(Gson gson, RecordFiles files) {
+        this.gson = gson;
+        this.files = files;
+    }
+
+    /**
+     * True if reading failed because the file itself is damaged, as opposed
+     * to e.g. a value the adapters do not know.
+     */
+    static boolean isParseFailure(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof JsonParseException || cause instanceof MalformedJsonException
+                    || cause instanceof EOFException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Works out what can be recovered from the damaged file and refuses
+     * writes of the type until {@link #accept} or {@link #repaired} is called.
+     *
+     * @param failure - what was wrong with the file
+     * @param rewrite - writes the recovered records in place of the file
+     * @return the exception for the caller to throw, telling how many records could be kept
+     */
+    synchronized <T> DamagedDataException recover(EntityType type, TypeAdapter<T> adapter, String label,
+                                     Exception failure, Consumer<List<T>> rewrite) {
+        Path path = Paths.get(type.getFileName());
+        List<T> recovered = new ArrayList<>();
+        try {
+            if (!CompressedFiles.isCompressed(path)) {
+                byte[] bytes = Files.readAllBytes(path);
+                List<long[]> blocks = files.checksumsOf(type).read();
+                if (blocks == null) {
+                    salvage(bytes, 0, bytes.length, adapter, recovered);
+                } else {
+                    long end = 0;
+                    for (long[] block : blocks) {
+                        int offset = (int) block[0];
+                        int length = (int) block[1];
+                        end = block[0] + block[1];
+                        if (end <= bytes.length && Crc32c.of(bytes, offset, length) == (int) block[2]) {
+                            salvage(bytes, offset, offset + length, adapter, recovered);
+                        } else {
+                            StorageErrors.warning("Damaged block of " + path + " at " + offset);
+                        }
+                    }
+                    if (end < bytes.length) {
+                        salvage(bytes, (int) end, bytes.length, adapter, recovered);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to recover " + label + " data", e);
+        }
+        accepts.put(type, () -> rewrite.accept(recovered));
+        String message = "The " + label + " data in " + path + " is damaged; " + recovered.size()
+                + " records can be recovered. Restore the file from a backup, or accept the recovery"
+                + " to set it aside and keep those records";
+        StorageErrors.warning(message);
+        return new DamagedDataException(type, recovered.size(), message, failure);
+    }
+
+    /**
+     * @throws IllegalStateException if the file of the type was found damaged
+     *                               and the user has not dealt with it yet
+     */
+    synchronized void checkWritable(EntityType type) {
+        if (accepts.containsKey(type)) {
+            throw new IllegalStateException("The " + type.name().toLowerCase()
+                    + " data is damaged; restore it or accept the recovery before saving");
+        }
+    }
+
+    synchronized boolean isDamaged(EntityType type) {
+        return accepts.containsKey(type);
+    }
+
+    /**
+     * Moves the damaged file aside and writes what was recovered in its place.
+     *
+     * @throws IllegalStateException if the type has nothing waiting to be recovered
+     */
+    synchronized void accept(EntityType type) {
+        Runnable rewrite = accepts.get(type);
+        if (rewrite == null) {
+            throw new IllegalStateException("Nothing to recover for " + type.name().toLowerCase());
+        }
+        Path path = Paths.get(type.getFileName());
+        Path quarantine = Paths.get(type.getFileName() + ".quarantine-" + System.currentTimeMillis());
+        try {
+            Files.move(path, quarantine);
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to set aside damaged " + type.name().toLowerCase() + " data", e);
+        }
+        StorageErrors.warning("The damaged file is kept as " + quarantine);
+        files.checksumsOf(type).delete();
+        rewrite.run();
+        accepts.remove(type);
+    }
+
+    /**
+     * Called when the file of the type has been read without trouble, e.g.
+     * after the user restored it, so writes are allowed again.
+     */
+    synchronized void repaired(EntityType type) {
+        accepts.remove(type);
+    }
+
+    // Parses each top-level JSON object in bytes[from, to), skipping the array
+    // brackets, commas and line breaks around them. Returns true if all of
+    // them parsed; stops at the first one that does not.
+    private <T> boolean salvage(byte[] bytes, int from, int to, TypeAdapter<T> adapter, List<T> records) {
+        int depth = 0;
+        int start = -1;
+        boolean inString = false;
+        for (int i = from; i < to; i++) {
+            byte b = bytes[i];
+            if (inString) {
+                if (b == '\\') {
+                    i++;
+                } else if (b == '"') {
+                    inString = false;
+                }
+            } else if (b == '"') {
+                inString = true;
+            } else if (b == '{') {
+                if (depth++ == 0) {
+                    start = i;
+                }
+            } else if (b == '}' && depth > 0 && --depth == 0) {
+                String json = new String(bytes, start, i + 1 - start, StandardCharsets.UTF_8);
+                try {
+                    records.add(adapter.read(gson.newJsonReader(new StringReader(json))));
+                } catch (IOException | RuntimeException e) {
+                    return false;
+                }
+            }
+        }
+        return depth == 0;
+    }
+}
@@ -0,0 +1,10 @@
+package conf.persistence;
+
+/**
+ * Notified when a save that was deferred by {@link WriteBehindPersistenceManager}
+ * fails on the background writer thread.
+ */
+@FunctionalInterface
+public interface SaveFailureListener {
+    void saveFailed(EntityType entityType, RuntimeException failure);
+}
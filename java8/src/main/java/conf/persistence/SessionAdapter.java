@@ -0,0 +1,132 @@
+package conf.persistence;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import conf.Session;
+import conf.Speaker;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes a {@link Session} with only the uniqueId of its speaker and resolves
+ * that id against a shared speaker table when reading, so every session of a
+ * speaker points at the same {@link Speaker} instance.
+ * <p>
+ * Files written before speakers were referenced by id carry the whole speaker
+ * inline; those are still read, and are matched to the table by uniqueId too.
+ * An id the table does not hold is kept as an unresolved reference (see
+ * {@link Session#withUnresolvedSpeaker}); no speaker is made up for it.
+ */
+class SessionAdapter extends TypeAdapter<Session> {
+    private static final String TITLE = "sessionTitle";
+    private static final String ABSTRACT = "sessionAbstract";
+    private static final String SPEAKER_ID = "mainSpeakerModeratorId";
+    private static final String INLINE_SPEAKER = "mainSpeakerModerator";
+
+    private final TypeAdapter<Speaker> speakerAdapter;
+    private final Map<String, Speaker> speakersById;
+    private final boolean warnUnknown;
+
+    SessionAdapter(TypeAdapter<Speaker> speakerAdapter, Map<String, Speaker> speakersById) {
+        this(speakerAdapter, speakersById, true);
+    }
+
+    /**
+     * @param warnUnknown - false when the speakers are not known yet and the
+     *                    sessions will be passed to {@link #relink} later
+     */
+    SessionAdapter(TypeAdapter<Speaker> speakerAdapter, Map<String, Speaker> speakersById, boolean warnUnknown) {
+        this.speakerAdapter = speakerAdapter;
+        this.speakersById = speakersById;
+        this.warnUnknown = warnUnknown;
+    }
+
+    /**
+     * Points a session read before its speakers were known at the matching
+     * speaker instance.
+     */
+    static Session relink(Session session, Map<String, Speaker> speakersById) {
+        String speakerId = session.getMainSpeakerModeratorId();
+        if (speakerId == null) {
+            return session;
+        }
+        Speaker known = speakersById.get(speakerId);
+        if (known == null || known == session.getMainSpeakerModerator()) {
+            return session;
+        }
+        return new Session(session.getSessionTitle(), session.getSessionAbstract(), known);
+    }
+
+    @Override
+    public void write(JsonWriter out, Session session) throws IOException {
+        if (session == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name(TITLE).value(session.getSessionTitle());
+        out.name(ABSTRACT).value(session.getSessionAbstract());
+        String speakerId = session.getMainSpeakerModeratorId();
+        if (speakerId != null) {
+            out.name(SPEAKER_ID).value(speakerId);
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Session read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String title = null;
+        String sessionAbstract = null;
+        Speaker speaker = null;
+        String speakerId = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+            } else if (TITLE.equals(name)) {
+                title = in.nextString();
+            } else if (ABSTRACT.equals(name)) {
+                sessionAbstract = in.nextString();
+            } else if (SPEAKER_ID.equals(name)) {
+                speakerId = in.nextString();
+                speaker = resolve(speakerId);
+            } else if (INLINE_SPEAKER.equals(name)) {
+                speaker = intern(speakerAdapter.read(in));
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        if (speaker == null && speakerId != null) {
+            return Session.withUnresolvedSpeaker(title, sessionAbstract, speakerId);
+        }
+        return new Session(title, sessionAbstract, speaker);
+    }
+
+    private Speaker resolve(String uniqueId) {
+        Speaker speaker = speakersById.get(uniqueId);
+        if (speaker == null && warnUnknown) {
+            StorageErrors.warning("Session refers to unknown speaker " + uniqueId);
+        }
+        return speaker;
+    }
+
+    private Speaker intern(Speaker speaker) {
+        if (speaker == null || speaker.getUniqueId() == null) {
+            return speaker;
+        }
+        Speaker known = speakersById.get(speaker.getUniqueId());
+        if (known != null) {
+            return known;
+        }
+        speakersById.put(speaker.getUniqueId(), speaker);
+        return speaker;
+    }
+}
@@ -0,0 +1,353 @@
+package conf.persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the records of one type in a directory of JSON array files, each
+ * holding the records whose uniqueId hashes to it.
+ * <p>
+ * A single put or removal reads and rewrites only the shard of that uniqueId,
+ * and saving the whole list skips shards whose contents did not change, so
+ * the cost of a save follows the size of a shard rather than of all the
+ * records. Shards are read and written in parallel, and writes to different
+ * shards do not wait for each other.
+ * <p>
+ * The number of shards is fixed when the directory is created and read back
+ * from it afterwards, since it decides which file a uniqueId lives in.
+ */
+class ShardedRecords<T> implements KeyedEntityRepository<T> {
+    private static final String SHARD_COUNT_FILE = "shards";
+
+    private final Path directory;
+    private final String label;
+    private final Gson gson;
+    private final TypeAdapter<T> adapter;
+    private final Function<T, String> idOf;
+    private final FileCommitter committer;
+    private final Runnable onWrite;
+    private final int shardCount;
+    // Guards each shard file and its checksum
+    private final Object[] shardLocks;
+    // Checksum and file stamp of what was last written to each shard, to tell unchanged ones
+    private final long[] writtenChecksums;
+    private final long[] writtenStamps;
+    // Held shared by writes and exclusively while a backup links the shards; the
+    // persistence manager's, so one backup covers its files and the shards alike
+    private final ReadWriteLock backupLock;
+
+    /**
+     * @param shardCount - used when the directory is new
+     * @param backupLock - held shared by every write
+     * @param onWrite    - run after every write
+     */
+    ShardedRecords(Path directory, int shardCount, String label, Gson gson, TypeAdapter<T> adapter,
+                   Function<T, String> idOf, FileCommitter committer, ReadWriteLock backupLock, Runnable onWrite) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be at least 1");
+        }
+        this.directory = directory;
+        this.label = label;
+        this.gson = gson;
+        this.adapter = adapter;
+        this.idOf = idOf;
+        this.committer = committer;
+        this.backupLock = backupLock;
+        this.onWrite = onWrite;
+        this.shardCount = openDirectory(shardCount);
+        this.shardLocks = new Object[this.shardCount];
+        for (int i = 0; i < this.shardCount; i++) {
+            shardLocks[i] = new Object();
+        }
+        this.writtenChecksums = new long[this.shardCount];
+        this.writtenStamps = new long[this.shardCount];
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * True until the first save creates any shard file.
+     */
+    boolean isEmpty() {
+        return IntStream.range(0, shardCount).noneMatch(shard -> Files.exists(shardFile(shard)));
+    }
+
+    /**
+     * All records, shard by shard; within a shard in the order they were saved.
+     */
+    @Override
+    public List<T> loadAll() {
+        List<List<T>> shards = IntStream.range(0, shardCount).parallel()
+                .mapToObj(this::readShard)
+                .collect(Collectors.toList());
+        List<T> records = new ArrayList<>();
+        for (List<T> shard : shards) {
+            records.addAll(shard);
+        }
+        return records;
+    }
+
+    @Override
+    public void saveAll(List<T> records) {
+        List<List<T>> shards = partition(records);
+        boolean changed;
+        backupLock.readLock().lock();
+        try {
+            changed = IntStream.range(0, shardCount).parallel()
+                    .mapToObj(shard -> writeShard(shard, shards.get(shard), true))
+                    .reduce(false, Boolean::logicalOr);
+        } finally {
+            backupLock.readLock().unlock();
+        }
+        if (changed) {
+            onWrite.run();
+        }
+    }
+
+    @Override
+    public T find(String uniqueId) {
+        for (T record : readShard(shardOf(uniqueId))) {
+            if (uniqueId.equals(idOf.apply(record))) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    // Every shard holds a mix of ids, so they are all read
+    @Override
+    public List<T> scan(String fromId, String toId) {
+        List<T> records = new ArrayList<>();
+        for (T record : loadAll()) {
+            String id = idOf.apply(record);
+            if ((fromId == null || id.compareTo(fromId) >= 0) && (toId == null || id.compareTo(toId) < 0)) {
+                records.add(record);
+            }
+        }
+        records.sort(Comparator.comparing(idOf));
+        return records;
+    }
+
+    /**
+     * Rewrites the shards the batch touches, each as one atomic replace.
+     */
+    @Override
+    public void write(WriteBatch<T> batch) {
+        Map<Integer, List<WriteBatch.Operation<T>>> byShard = new HashMap<>();
+        for (WriteBatch.Operation<T> operation : batch.getOperations()) {
+            String uniqueId = operation.record != null ? idOf.apply(operation.record) : operation.removedId;
+            byShard.computeIfAbsent(shardOf(uniqueId), shard -> new ArrayList<>()).add(operation);
+        }
+        backupLock.readLock().lock();
+        try {
+            byShard.entrySet().parallelStream().forEach(entry -> updateShard(entry.getKey(), entry.getValue()));
+        } finally {
+            backupLock.readLock().unlock();
+        }
+        if (!byShard.isEmpty()) {
+            onWrite.run();
+        }
+    }
+
+    /**
+     * Puts the shards as they are now into {@code target}. Shards are only
+     * ever replaced, so hard links to them stay as they are; with
+     * {@link Durability#NONE} they are copied instead.
+     */
+    void backup(Path target) {
+        backupLock.writeLock().lock();
+        try {
+            Files.createDirectories(target);
+            Files.copy(directory.resolve(SHARD_COUNT_FILE), target.resolve(SHARD_COUNT_FILE),
+                    StandardCopyOption.REPLACE_EXISTING);
+            for (int shard = 0; shard < shardCount; shard++) {
+                Path file = shardFile(shard);
+                Path copy = target.resolve(file.getFileName());
+                Files.deleteIfExists(copy);
+                if (!Files.exists(file)) {
+                    continue;
+                }
+                if (committer.getDurability() == Durability.NONE) {
+                    Files.copy(file, copy);
+                } else {
+                    BackupFiles.link(file, copy);
+                }
+            }
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to back up " + label + " shards to " + target, e);
+        } finally {
+            backupLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * A value that changes whenever any shard file changes; 0 if none exist.
+     */
+    long modificationStamp() {
+        long stamp = 0;
+        for (int shard = 0; shard < shardCount; shard++) {
+            stamp = 31 * stamp + JsonPersistenceManager.fileStamp(shardFile(shard));
+        }
+        return stamp;
+    }
+
+    private void updateShard(int shard, List<WriteBatch.Operation<T>> operations) {
+        synchronized (shardLocks[shard]) {
+            List<T> records = readShard(shard);
+            for (WriteBatch.Operation<T> operation : operations) {
+                String uniqueId = operation.record != null ? idOf.apply(operation.record) : operation.removedId;
+                records.removeIf(record -> uniqueId.equals(idOf.apply(record)));
+                if (operation.record != null) {
+                    records.add(operation.record);
+                }
+            }
+            writeShard(shard, records, false);
+        }
+    }
+
+    private List<List<T>> partition(List<T> records) {
+        List<List<T>> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new ArrayList<>());
+        }
+        for (T record : records) {
+            shards.get(shardOf(idOf.apply(record))).add(record);
+        }
+        return shards;
+    }
+
+    int shardOf(String uniqueId) {
+        // String.hashCode is specified, so a uniqueId lands in the same shard on every run
+        return Math.floorMod(uniqueId.hashCode(), shardCount);
+    }
+
+    private List<T> readShard(int shard) {
+        Path file = shardFile(shard);
+        List<T> records = new ArrayList<>();
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8);
+             JsonReader in = gson.newJsonReader(reader)) {
+            in.beginArray();
+            while (in.hasNext()) {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                } else {
+                    records.add(adapter.read(in));
+                }
+            }
+            in.endArray();
+        } catch (NoSuchFileException e) {
+            return records;
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to load " + label + " data", e);
+        }
+        return records;
+    }
+
+    /**
+     * @param skipUnchanged - leave the file alone if it already holds exactly these records
+     * @return whether the file was written
+     */
+    private boolean writeShard(int shard, List<T> records, boolean skipUnchanged) {
+        synchronized (shardLocks[shard]) {
+            Path target = shardFile(shard);
+            byte[] bytes = encode(records);
+            long checksum = checksum(bytes);
+            if (skipUnchanged && records.isEmpty() && !Files.exists(target)) {
+                return false;
+            }
+            if (skipUnchanged && writtenChecksums[shard] == checksum
+                    && writtenStamps[shard] == JsonPersistenceManager.fileStamp(target)) {
+                return false;
+            }
+            Path written = null;
+            boolean committed = false;
+            try {
+                written = committer.begin(target);
+                Files.write(written, bytes);
+                committer.commit(written, target);
+                committed = true;
+            } catch (IOException e) {
+                throw StorageErrors.failure("Failed to save " + label + " data", e);
+            } finally {
+                if (!committed && written != null) {
+                    committer.abort(written, target);
+                }
+            }
+            writtenChecksums[shard] = checksum;
+            writtenStamps[shard] = JsonPersistenceManager.fileStamp(target);
+            return true;
+        }
+    }
+
+    private byte[] encode(List<T> records) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JsonWriter out = gson.newJsonWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8))) {
+            out.beginArray();
+            for (T record : records) {
+                adapter.write(out, record);
+            }
+            out.endArray();
+        } catch (IOException e) {
+            // Not expected when writing to memory
+            throw new RuntimeException("Failed to save " + label + " data", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private int openDirectory(int requestedCount) {
+        Path countFile = directory.resolve(SHARD_COUNT_FILE);
+        try {
+            if (Files.exists(countFile)) {
+                int existing = Integer.parseInt(new String(Files.readAllBytes(countFile), StandardCharsets.UTF_8).trim());
+                if (existing != requestedCount) {
+                    StorageErrors.warning("Keeping the " + existing + " " + label + " shards already in " + directory);
+                }
+                return existing;
+            }
+            Files.createDirectories(directory);
+            Files.write(countFile, Integer.toString(requestedCount).getBytes(StandardCharsets.UTF_8));
+            return requestedCount;
+        } catch (IOException | NumberFormatException e) {
+            throw StorageErrors.failure("Failed to open " + label + " shards in " + directory, e);
+        }
+    }
+
+    private Path shardFile(int shard) {
+        return directory.resolve(String.format("%s-%03d.json", label, shard));
+    }
+
+    private static long checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,61 @@
+package conf.persistence;
+
+import conf.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Converts between the JSON data files and a {@link BinarySnapshot}.
+ * <p>
+ * Usage: {@code SnapshotConverter to-binary <snapshot>} or
+ * {@code SnapshotConverter to-json <snapshot>}, run from the directory that
+ * holds the JSON files.
+ */
+public class SnapshotConverter {
+    private final JsonPersistenceManager persistenceManager;
+
+    public SnapshotConverter(JsonPersistenceManager persistenceManager) {
+        this.persistenceManager = persistenceManager;
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2 || !("to-binary".equals(args[0]) || "to-json".equals(args[0]))) {
+            StorageErrors.warning("Usage: SnapshotConverter to-binary|to-json <snapshot file>");
+            System.exit(1);
+        }
+        SnapshotConverter converter = new SnapshotConverter(new JsonPersistenceManager());
+        Path snapshot = Paths.get(args[1]);
+        if ("to-binary".equals(args[0])) {
+            converter.jsonToBinary(snapshot);
+        } else {
+            converter.binaryToJson(snapshot);
+        }
+    }
+
+    public void jsonToBinary(Path snapshot) {
+        Conference conference = persistenceManager.loadAll();
+        if (conference == null) {
+            throw new IllegalStateException("No conference data to convert");
+        }
+        BinarySnapshot.write(conference, snapshot);
+    }
+
+    public void binaryToJson(Path snapshot) {
+        Conference conference = BinarySnapshot.read(snapshot);
+        // The collections go to their own files, not into conference_data.json
+        persistenceManager.saveConference(new Conference(
+                conference.getName(), conference.getNickName(), conference.getYear(), conference.getVenue()));
+        persistenceManager.saveStaff(listOf(conference.getStaff()));
+        persistenceManager.saveSpeakers(listOf(conference.getSpeakers()));
+        persistenceManager.saveAttendees(listOf(conference.getAttendees()));
+        persistenceManager.saveVendors(listOf(conference.getVendorSponsors()));
+        persistenceManager.saveSessions(listOf(conference.getSessions()));
+    }
+
+    private static <T> List<T> listOf(Collection<T> items) {
+        return items == null ? new ArrayList<>() : new ArrayList<>(items);
+    }
+}
@@ -0,0 +1,30 @@
+package conf.persistence;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import conf.Speaker;
+import java.io.IOException;
+
+class SpeakerAdapter extends PersonAdapter<Speaker> {
+    private static final String SHIRT_SIZE = "shirtSize";
+
+    @Override
+    void writeFields(JsonWriter out, Speaker speaker) throws IOException {
+        out.name(SHIRT_SIZE).value(speaker.getShirtSizeLabel());
+        out.name(UNIQUE_ID).value(speaker.getUniqueId());
+    }
+
+    @Override
+    boolean readField(JsonReader in, String name, Fields fields) throws IOException {
+        if (SHIRT_SIZE.equals(name)) {
+            fields.detail = in.nextString();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    Speaker create(Fields fields) {
+        return new Speaker(fields.firstName, fields.lastName, fields.detail, fields.uniqueId);
+    }
+}
@@ -0,0 +1,29 @@
+package conf.persistence;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import conf.Staff;
+import java.io.IOException;
+
+class StaffAdapter extends PersonAdapter<Staff> {
+    private static final String HAT_SIZE = "hatSize";
+
+    @Override
+    void writeFields(JsonWriter out, Staff staff) throws IOException {
+        out.name(HAT_SIZE).value(staff.getHatSizeLabel());
+    }
+
+    @Override
+    boolean readField(JsonReader in, String name, Fields fields) throws IOException {
+        if (HAT_SIZE.equals(name)) {
+            fields.detail = in.nextString();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    Staff create(Fields fields) {
+        return new Staff(fields.firstName, fields.lastName, fields.detail);
+    }
+}
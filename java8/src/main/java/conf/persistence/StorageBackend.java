@@ -0,0 +1,99 @@
+package conf.persistence;
+
+import conf.*;
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Where the conference data is kept. {@link ConferenceRepository} and the
+ * panels only talk to this interface, so the files can be replaced by another
+ * store without touching them.
+ *
+ * @see JsonStorageBackend
+ * @see LogStructuredBackend
+ */
+public interface StorageBackend extends Closeable {
+    /**
+     * @return null if no conference has been saved
+     */
+    Conference loadConference();
+
+    void saveConference(Conference conference);
+
+    KeyedEntityRepository<Speaker> speakers();
+
+    KeyedEntityRepository<Attendee> attendees();
+
+    KeyedEntityRepository<VendorSponsor> vendors();
+
+    EntityRepository<Staff> staff();
+
+    /**
+     * Sessions refer to their speaker by uniqueId; {@code loadAll()} resolves
+     * them against the speakers currently stored.
+     */
+    EntityRepository<Session> sessions();
+
+    /**
+     * Loads the sessions pointing at the given speaker instances instead.
+     */
+    default List<Session> loadSessions(Collection<Speaker> speakers) {
+        Map<String, Speaker> speakersById = new HashMap<>();
+        for (Speaker speaker : speakers) {
+            speakersById.put(speaker.getUniqueId(), speaker);
+        }
+        List<Session> sessions = sessions().loadAll();
+        sessions.replaceAll(session -> SessionAdapter.relink(session, speakersById));
+        return sessions;
+    }
+
+    /**
+     * The conference with all its collections filled in.
+     *
+     * @return null when there is no conference data
+     */
+    default Conference loadAll() {
+        Conference conference = loadConference();
+        if (conference == null) {
+            return null;
+        }
+        List<Speaker> speakers = speakers().loadAll();
+        conference.setSpeakers(new LinkedHashSet<>(speakers));
+        conference.setAttendees(new LinkedHashSet<>(attendees().loadAll()));
+        conference.setSessions(new LinkedHashSet<>(loadSessions(speakers)));
+        conference.setStaff(new LinkedHashSet<>(staff().loadAll()));
+        conference.setVendorSponsors(new LinkedHashSet<>(vendors().loadAll()));
+        return conference;
+    }
+
+    /**
+     * A value that changes whenever the stored records of the entity type
+     * change, whoever changed them.
+     */
+    long modificationStamp(EntityType entityType);
+
+    /**
+     * Registers a callback that runs after this backend has written records
+     * of an entity type.
+     */
+    void addWriteListener(Consumer<EntityType> listener);
+
+    /**
+     * Copies everything stored into {@code directory} as it is at one moment,
+     * without stopping writers for longer than it takes to note what to copy.
+     * A backend opened on that directory sees the copy.
+     */
+    void backup(Path directory);
+
+    /**
+     * Writes anything still pending and releases the store.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,39 @@
+package conf.persistence;
+
+/**
+ * The one place the storage classes report problems. A failure is logged
+ * and handed back as an unchecked exception for the caller to throw; a
+ * problem that was worked around, such as a damaged record that is skipped,
+ * is only logged.
+ */
+final class StorageErrors {
+    private StorageErrors() {
+    }
+
+    /**
+     * Logs the failure and returns it for the caller to throw:
+     * {@code throw StorageErrors.failure("Failed to save staff data", e);}
+     */
+    static RuntimeException failure(String message, Exception cause) {
+        report(message, cause);
+        return new RuntimeException(message, cause);
+    }
+
+    /**
+     * For a failure nothing depends on, e.g. closing a file that was only read.
+     */
+    static void ignored(String message, Exception cause) {
+        report(message, cause);
+    }
+
+    static void warning(String message) {
+        report(message, null);
+    }
+
+    private static void report(String message, Exception cause) {
+        System.err.println(message);
+        if (cause != null) {
+            cause.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package conf.persistence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * How the record files (everything but {@code conference_data.json}) lay out
+ * their records. Loading recognizes either layout, so a file is simply
+ * rewritten in the configured one on its next save.
+ */
+public enum StorageFormat {
+    /** A single JSON array per file. */
+    JSON_ARRAY,
+    /**
+     * One compact JSON record per line (NDJSON). Large files are parsed in
+     * parallel, and new records are added by appending a line.
+     */
+    NDJSON;
+
+    /**
+     * Looks at the first character of the file: an array or a bare
+     * {@code null} is {@link #JSON_ARRAY}, anything else {@link #NDJSON}.
+     * Compressed files are looked at after decompression.
+     */
+    static StorageFormat detect(Path file) throws IOException {
+        try (InputStream in = CompressedFiles.open(file)) {
+            int b;
+            while ((b = in.read()) != -1) {
+                if (!Character.isWhitespace(b)) {
+                    return b == '[' || b == 'n' ? JSON_ARRAY : NDJSON;
+                }
+            }
+        }
+        return NDJSON;
+    }
+}
@@ -0,0 +1,71 @@
+package conf.persistence;
+
+/**
+ * How a {@link JsonPersistenceManager} writes its files. The defaults are
+ * pretty-printed JSON arrays, saved atomically and not compressed:
+ * <pre>
+ * new JsonPersistenceManager(new StorageSettings()
+ *         .format(StorageFormat.NDJSON)
+ *         .durability(Durability.GROUP_COMMIT));
+ * </pre>
+ * The manager reads the settings when it is created; changing them later
+ * does not affect it.
+ */
+public class StorageSettings {
+    private boolean prettyPrinting = true;
+    private StorageFormat format = StorageFormat.JSON_ARRAY;
+    private Durability durability = Durability.ATOMIC;
+    private Compression compression = Compression.NONE;
+
+    /**
+     * @param prettyPrinting - false writes compact JSON, which is noticeably
+     *                       smaller on disk; loading accepts either form
+     */
+    public StorageSettings prettyPrinting(boolean prettyPrinting) {
+        this.prettyPrinting = prettyPrinting;
+        return this;
+    }
+
+    /**
+     * @param format - how record files are written; loading accepts either
+     *               format. NDJSON records are always compact.
+     */
+    public StorageSettings format(StorageFormat format) {
+        this.format = format;
+        return this;
+    }
+
+    /**
+     * @param durability - how far a save or append goes to survive a crash
+     *                   before it returns
+     */
+    public StorageSettings durability(Durability durability) {
+        this.durability = durability;
+        return this;
+    }
+
+    /**
+     * @param compression - GZIP streams every data file through compression;
+     *                    loading detects compressed files either way
+     */
+    public StorageSettings compression(Compression compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    public boolean isPrettyPrinting() {
+        return prettyPrinting;
+    }
+
+    public StorageFormat getFormat() {
+        return format;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+}
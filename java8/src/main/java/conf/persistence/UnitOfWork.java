@@ -0,0 +1,88 @@
+package conf.persistence;
+
+import conf.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Changes to several entity types that are saved together: either every
+ * changed file is replaced, or, after a crash part way, none of them are.
+ * Only the entity types that were set are written; the other files are not
+ * touched.
+ * <pre>
+ * UnitOfWork work = persistenceManager.beginUnitOfWork();
+ * work.setSpeakers(speakers);
+ * work.setSessions(sessions);
+ * work.commit();
+ * </pre>
+ * The lists are copied when they are set, so later edits to them are not
+ * part of the unit of work.
+ */
+public class UnitOfWork {
+    private final JsonPersistenceManager persistenceManager;
+    private final Map<EntityType, Object> changes = new EnumMap<>(EntityType.class);
+    private boolean committed;
+
+    UnitOfWork(JsonPersistenceManager persistenceManager) {
+        this.persistenceManager = persistenceManager;
+    }
+
+    public void setConference(Conference conference) {
+        changed(EntityType.CONFERENCE, conference);
+    }
+
+    public void setSpeakers(List<Speaker> speakers) {
+        changed(EntityType.SPEAKERS, copyOf(speakers));
+    }
+
+    public void setAttendees(List<Attendee> attendees) {
+        changed(EntityType.ATTENDEES, copyOf(attendees));
+    }
+
+    public void setSessions(List<Session> sessions) {
+        changed(EntityType.SESSIONS, copyOf(sessions));
+    }
+
+    public void setStaff(List<Staff> staff) {
+        changed(EntityType.STAFF, copyOf(staff));
+    }
+
+    public void setVendors(List<VendorSponsor> vendors) {
+        changed(EntityType.VENDORS, copyOf(vendors));
+    }
+
+    public Set<EntityType> getChangedTypes() {
+        return Collections.unmodifiableSet(changes.keySet());
+    }
+
+    /**
+     * Writes the changed files in one batch. A unit of work can be committed
+     * only once.
+     */
+    public void commit() {
+        if (committed) {
+            throw new IllegalStateException("Unit of work already committed");
+        }
+        persistenceManager.commit(this);
+        committed = true;
+    }
+
+    Object getChange(EntityType entityType) {
+        return changes.get(entityType);
+    }
+
+    private void changed(EntityType entityType, Object value) {
+        if (committed) {
+            throw new IllegalStateException("Unit of work already committed");
+        }
+        changes.put(entityType, value);
+    }
+
+    private static <T> List<T> copyOf(List<T> items) {
+        return items == null ? null : new ArrayList<>(items);
+    }
+}
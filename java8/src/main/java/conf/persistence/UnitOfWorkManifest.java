@@ -0,0 +1,258 @@
+package conf.persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The commit point of a {@link UnitOfWork}: a manifest naming the file that
+ * holds the new contents of each entity type.
+ * <p>
+ * Each unit of work has its own manifest, written under a {@code .pending}
+ * name before any of its files and locked until the unit of work is done.
+ * Renaming it to its final name is the commit point. A manifest that nobody
+ * holds locked was left by a crash: a committed one still has renames to
+ * finish, and the files a pending one lists are deleted. Manifests that are
+ * locked belong to a unit of work still running, in this process or another
+ * one sharing the directory, and are left alone, as is every file no
+ * manifest lists.
+ */
+class UnitOfWorkManifest {
+    private static final String MANIFEST_PREFIX = "unit_of_work.";
+    private static final String MANIFEST_SUFFIX = ".manifest";
+    private static final String PENDING_SUFFIX = ".pending";
+
+    private final Gson gson;
+    private final FileCommitter committer;
+    private final Consumer<EntityType> replaced;
+
+    /**
+     * @param replaced - told of each entity type whose file was replaced
+     */
+    UnitOfWorkManifest(Gson gson, FileCommitter committer, Consumer<EntityType> replaced) {
+        this.gson = gson;
+        this.committer = committer;
+        this.replaced = replaced;
+    }
+
+    /**
+     * Where the new contents of the type are written for the unit of work with the given id.
+     */
+    static Path pendingFile(EntityType type, String id) {
+        return Paths.get(type.getFileName() + "." + id + PENDING_SUFFIX);
+    }
+
+    /**
+     * Lists the files the unit of work is about to write, before any of them
+     * is written. Closing the claim without committing it deletes them.
+     *
+     * @param pending - the file holding the new contents of each entity type
+     */
+    Claim claim(String id, Map<EntityType, Path> pending) throws IOException {
+        Path manifest = Paths.get(MANIFEST_PREFIX + id + MANIFEST_SUFFIX + PENDING_SUFFIX);
+        FileChannel channel = FileChannel.open(manifest, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.lock();
+            StringWriter json = new StringWriter();
+            try (JsonWriter writer = gson.newJsonWriter(json)) {
+                writer.beginObject();
+                for (Map.Entry<EntityType, Path> entry : pending.entrySet()) {
+                    writer.name(entry.getKey().name()).value(entry.getValue().toString());
+                }
+                writer.endObject();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(json.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            committer.sync(manifest);
+            return new Claim(manifest, pending, channel, lock);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            Files.deleteIfExists(manifest);
+            throw e;
+        }
+    }
+
+    // Finishes the units of work that were committed but not fully applied,
+    // and removes the files of those that never reached their commit point.
+    // Manifests some unit of work still holds are skipped.
+    void recover() {
+        Path directory = Paths.get("").toAbsolutePath();
+        try (DirectoryStream<Path> manifests = Files.newDirectoryStream(directory, MANIFEST_PREFIX + "*")) {
+            for (Path manifest : manifests) {
+                String name = manifest.getFileName().toString();
+                if (name.endsWith(MANIFEST_SUFFIX)) {
+                    recover(manifest, true);
+                } else if (name.endsWith(MANIFEST_SUFFIX + PENDING_SUFFIX)) {
+                    recover(manifest, false);
+                }
+            }
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to recover unit of work", e);
+        }
+    }
+
+    private void recover(Path manifest, boolean committed) throws IOException {
+        try (FileChannel channel = FileChannel.open(manifest, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileLock lock = tryLock(channel)) {
+            // Its unit of work may have finished and removed it meanwhile
+            if (lock == null || !Files.exists(manifest)) {
+                return;
+            }
+            Map<EntityType, Path> pending;
+            try {
+                pending = read(channel);
+            } catch (IOException | IllegalStateException e) {
+                if (committed) {
+                    throw e;
+                }
+                // Cut short while it was written, before any of its files were
+                pending = Collections.emptyMap();
+            }
+            if (pending == null) {
+                // Created, but not yet written by the unit of work claiming it
+                return;
+            }
+            if (committed) {
+                StorageErrors.warning("Completing interrupted unit of work for " + pending.keySet());
+                apply(manifest, pending);
+            } else {
+                for (Path file : pending.values()) {
+                    Files.deleteIfExists(file);
+                }
+                Files.delete(manifest);
+            }
+        } catch (NoSuchFileException e) {
+            // Finished by its own unit of work after it was listed
+        }
+    }
+
+    // Renames the new files over the old ones, then removes the manifest
+    private void apply(Path manifest, Map<EntityType, Path> pending) {
+        try {
+            for (Map.Entry<EntityType, Path> entry : pending.entrySet()) {
+                Path target = Paths.get(entry.getKey().getFileName());
+                if (Files.exists(entry.getValue())) {
+                    FileCommitter.replace(entry.getValue(), target);
+                }
+                replaced.accept(entry.getKey());
+            }
+            FileCommitter.syncDirectory(manifest);
+            Files.deleteIfExists(manifest);
+        } catch (IOException e) {
+            throw StorageErrors.failure("Failed to apply unit of work", e);
+        }
+    }
+
+    private Map<EntityType, Path> read(FileChannel channel) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate((int) channel.size());
+        while (bytes.hasRemaining() && channel.read(bytes, bytes.position()) >= 0) {
+            // Keep reading
+        }
+        if (bytes.position() == 0) {
+            return null;
+        }
+        Map<EntityType, Path> pending = new EnumMap<>(EntityType.class);
+        String json = new String(bytes.array(), 0, bytes.position(), StandardCharsets.UTF_8);
+        try (JsonReader reader = gson.newJsonReader(new StringReader(json))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                pending.put(EntityType.valueOf(reader.nextName()), Paths.get(reader.nextString()));
+            }
+            reader.endObject();
+        }
+        return pending;
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by a unit of work running in this process
+            return null;
+        }
+    }
+
+    /**
+     * The manifest of one unit of work, locked while it runs.
+     */
+    class Claim implements Closeable {
+        private final Path manifest;
+        private final Map<EntityType, Path> pending;
+        private final FileChannel channel;
+        private final FileLock lock;
+        private Path committed;
+
+        private Claim(Path manifest, Map<EntityType, Path> pending, FileChannel channel, FileLock lock) {
+            this.manifest = manifest;
+            this.pending = pending;
+            this.channel = channel;
+            this.lock = lock;
+        }
+
+        /**
+         * Puts the manifest under its final name once every pending file is
+         * on disk: from here on the unit of work is finished even after a crash.
+         */
+        void commit() throws IOException {
+            Path target = Paths.get(manifest.toString().substring(0, manifest.toString().length()
+                    - PENDING_SUFFIX.length()));
+            FileCommitter.replace(manifest, target);
+            FileCommitter.syncDirectory(target);
+            committed = target;
+        }
+
+        /**
+         * Renames the new files over the old ones and removes the manifest.
+         */
+        void apply() {
+            if (committed == null) {
+                throw new IllegalStateException("Unit of work not committed");
+            }
+            UnitOfWorkManifest.this.apply(committed, pending);
+        }
+
+        /**
+         * Releases the manifest; if it was never committed, it and the files
+         * it lists are deleted.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                if (committed == null) {
+                    for (Path file : pending.values()) {
+                        committer.abort(file, null);
+                    }
+                    Files.deleteIfExists(manifest);
+                }
+            } finally {
+                try {
+                    lock.release();
+                } finally {
+                    channel.close();
+                }
+            }
+        }
+    }
+}
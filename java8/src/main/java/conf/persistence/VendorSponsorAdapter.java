@@ -0,0 +1,30 @@
+package conf.persistence;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import conf.VendorSponsor;
+import java.io.IOException;
+
+class VendorSponsorAdapter extends PersonAdapter<VendorSponsor> {
+    private static final String BOOTH_NAME = "boothName";
+
+    @Override
+    void writeFields(JsonWriter out, VendorSponsor vendor) throws IOException {
+        out.name(BOOTH_NAME).value(vendor.getBoothName());
+        out.name(UNIQUE_ID).value(vendor.getUniqueId());
+    }
+
+    @Override
+    boolean readField(JsonReader in, String name, Fields fields) throws IOException {
+        if (BOOTH_NAME.equals(name)) {
+            fields.detail = in.nextString();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    VendorSponsor create(Fields fields) {
+        return new VendorSponsor(fields.firstName, fields.lastName, fields.detail, fields.uniqueId);
+    }
+}
@@ -0,0 +1,46 @@
+package conf.persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Puts and removals collected to be written to a
+ * {@link KeyedEntityRepository} together.
+ */
+public class WriteBatch<T> {
+    private final List<Operation<T>> operations = new ArrayList<>();
+
+    public WriteBatch<T> put(T record) {
+        operations.add(new Operation<>(null, record));
+        return this;
+    }
+
+    public WriteBatch<T> remove(String uniqueId) {
+        operations.add(new Operation<>(uniqueId, null));
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    List<Operation<T>> getOperations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    // A put when record is set, a removal of removedId otherwise
+    static class Operation<T> {
+        final String removedId;
+        final T record;
+
+        Operation(String removedId, T record) {
+            this.removedId = removedId;
+            this.record = record;
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package conf.persistence;
+
+import com.google.gson.JsonElement;
+import conf.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * A {@link JsonPersistenceManager} whose saves return immediately and are
+ * written by a single background thread.
+ * <p>
+ * Saves of the same entity type that arrive within {@code maxDelayMillis} of
+ * the first one are coalesced: only the latest full snapshot is written, while
+ * journal appends made after it are replayed in order. Loads first wait for the
+ * pending writes of their entity type, so callers always read their own
+ * writes. Failures are reported to the registered {@link SaveFailureListener}s
+ * and thrown from the next {@link #flush}, load or {@link #close}; the writes
+ * that failed stay queued and are tried again.
+ */
+public class WriteBehindPersistenceManager extends JsonPersistenceManager {
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 500;
+
+    private final long maxDelayMillis;
+    private final ScheduledThreadPoolExecutor writer;
+    private final Map<EntityType, PendingWrites> pending = new EnumMap<>(EntityType.class);
+    private final List<SaveFailureListener> failureListeners = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    public WriteBehindPersistenceManager() {
+        this(DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    public WriteBehindPersistenceManager(long maxDelayMillis) {
+        this(maxDelayMillis, new StorageSettings());
+    }
+
+    public WriteBehindPersistenceManager(long maxDelayMillis, StorageSettings settings) {
+        super(settings);
+        this.maxDelayMillis = maxDelayMillis;
+        this.writer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "persistence-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    public void addSaveFailureListener(SaveFailureListener listener) {
+        failureListeners.add(listener);
+    }
+
+    @Override
+    public void saveConference(Conference conference) {
+        // Captured now, since the caller goes on using and changing the conference
+        JsonElement snapshot = conferenceSnapshot(conference);
+        enqueueSnapshot(EntityType.CONFERENCE, () -> super.saveConferenceSnapshot(snapshot));
+    }
+
+    // Records are encoded on the caller's thread, like the conference, since
+    // the caller goes on editing the same instances while the writer writes
+    @Override
+    public void saveSpeakers(List<Speaker> speakers) {
+        List<JsonElement> snapshot = recordsSnapshot(EntityType.SPEAKERS, speakers);
+        enqueueSnapshot(EntityType.SPEAKERS, () -> super.saveSpeakers(fromSnapshot(EntityType.SPEAKERS, snapshot)));
+    }
+
+    @Override
+    public void saveAttendees(List<Attendee> attendees) {
+        List<JsonElement> snapshot = recordsSnapshot(EntityType.ATTENDEES, attendees);
+        enqueueSnapshot(EntityType.ATTENDEES, () -> super.saveAttendees(fromSnapshot(EntityType.ATTENDEES, snapshot)));
+    }
+
+    @Override
+    public void saveSessions(List<Session> sessions) {
+        List<JsonElement> snapshot = recordsSnapshot(EntityType.SESSIONS, sessions);
+        enqueueSnapshot(EntityType.SESSIONS, () -> super.saveSessions(fromSnapshot(EntityType.SESSIONS, snapshot)));
+    }
+
+    @Override
+    public void saveStaff(List<Staff> staff) {
+        List<JsonElement> snapshot = recordsSnapshot(EntityType.STAFF, staff);
+        enqueueSnapshot(EntityType.STAFF, () -> super.saveStaff(fromSnapshot(EntityType.STAFF, snapshot)));
+    }
+
+    @Override
+    public void saveVendors(List<VendorSponsor> vendors) {
+        List<JsonElement> snapshot = recordsSnapshot(EntityType.VENDORS, vendors);
+        enqueueSnapshot(EntityType.VENDORS, () -> super.saveVendors(fromSnapshot(EntityType.VENDORS, snapshot)));
+    }
+
+    @Override
+    public void appendSpeaker(Speaker speaker) {
+        JsonElement snapshot = recordSnapshot(EntityType.SPEAKERS, speaker);
+        enqueueAppend(EntityType.SPEAKERS, () -> super.appendSpeaker(fromSnapshot(EntityType.SPEAKERS, snapshot)));
+    }
+
+    @Override
+    public void appendSpeakerRemoval(String uniqueId) {
+        enqueueAppend(EntityType.SPEAKERS, () -> super.appendSpeakerRemoval(uniqueId));
+    }
+
+    @Override
+    public void appendAttendee(Attendee attendee) {
+        JsonElement snapshot = recordSnapshot(EntityType.ATTENDEES, attendee);
+        enqueueAppend(EntityType.ATTENDEES, () -> super.appendAttendee(fromSnapshot(EntityType.ATTENDEES, snapshot)));
+    }
+
+    @Override
+    public void appendAttendeeRemoval(String uniqueId) {
+        enqueueAppend(EntityType.ATTENDEES, () -> super.appendAttendeeRemoval(uniqueId));
+    }
+
+    @Override
+    public void appendVendor(VendorSponsor vendor) {
+        JsonElement snapshot = recordSnapshot(EntityType.VENDORS, vendor);
+        enqueueAppend(EntityType.VENDORS, () -> super.appendVendor(fromSnapshot(EntityType.VENDORS, snapshot)));
+    }
+
+    @Override
+    public void appendVendorRemoval(String uniqueId) {
+        enqueueAppend(EntityType.VENDORS, () -> super.appendVendorRemoval(uniqueId));
+    }
+
+    @Override
+    public Conference loadConference() {
+        flush(EntityType.CONFERENCE);
+        return super.loadConference();
+    }
+
+    @Override
+    public Speaker findSpeaker(String uniqueId) {
+        flush(EntityType.SPEAKERS);
+        return super.findSpeaker(uniqueId);
+    }
+
+    @Override
+    public List<Speaker> loadSpeakers() {
+        flush(EntityType.SPEAKERS);
+        return super.loadSpeakers();
+    }
+
+    @Override
+    public Stream<Speaker> streamSpeakers() {
+        flush(EntityType.SPEAKERS);
+        return super.streamSpeakers();
+    }
+
+    @Override
+    public Attendee findAttendee(String uniqueId) {
+        flush(EntityType.ATTENDEES);
+        return super.findAttendee(uniqueId);
+    }
+
+    @Override
+    public List<Attendee> loadAttendees() {
+        flush(EntityType.ATTENDEES);
+        return super.loadAttendees();
+    }
+
+    @Override
+    public Stream<Attendee> streamAttendees() {
+        flush(EntityType.ATTENDEES);
+        return super.streamAttendees();
+    }
+
+    @Override
+    public List<Session> loadSessions(Collection<Speaker> speakers) {
+        flush(EntityType.SESSIONS);
+        return super.loadSessions(speakers);
+    }
+
+    @Override
+    public Stream<Session> streamSessions(Collection<Speaker> speakers) {
+        flush(EntityType.SESSIONS);
+        return super.streamSessions(speakers);
+    }
+
+    @Override
+    public List<Staff> loadStaff() {
+        flush(EntityType.STAFF);
+        return super.loadStaff();
+    }
+
+    @Override
+    public Stream<Staff> streamStaff() {
+        flush(EntityType.STAFF);
+        return super.streamStaff();
+    }
+
+    @Override
+    public VendorSponsor findVendor(String uniqueId) {
+        flush(EntityType.VENDORS);
+        return super.findVendor(uniqueId);
+    }
+
+    @Override
+    public List<VendorSponsor> loadVendors() {
+        flush(EntityType.VENDORS);
+        return super.loadVendors();
+    }
+
+    @Override
+    public Stream<VendorSponsor> streamVendors() {
+        flush(EntityType.VENDORS);
+        return super.streamVendors();
+    }
+
+    @Override
+    Conference loadAll(Executor executor, ObjLongConsumer<EntityType> timings,
+                       Supplier<List<Attendee>> attendeeLoader) {
+        flush();
+        return super.loadAll(executor, timings, attendeeLoader);
+    }
+
+    /**
+     * Units of work are written on the calling thread, after everything
+     * queued before them, since the caller needs to know they succeeded.
+     */
+    @Override
+    void commit(UnitOfWork work) {
+        flush();
+        super.commit(work);
+    }
+
+    @Override
+    public void compactJournals() {
+        flush();
+        super.compactJournals();
+    }
+
+    /**
+     * Writes everything that is pending and waits for it to finish.
+     *
+     * @throws RuntimeException if a pending write failed; it is kept queued
+     */
+    public void flush() {
+        RuntimeException failure = null;
+        for (EntityType entityType : EntityType.values()) {
+            try {
+                flush(entityType);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public void flush(EntityType entityType) {
+        if (closed) {
+            return;
+        }
+        Future<?> done = writer.submit(() -> drain(entityType));
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while writing pending " + describe(entityType), e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to write pending " + describe(entityType), e.getCause());
+        }
+    }
+
+    /**
+     * Writes what is still queued first, so the backup has every save made
+     * before it was asked for.
+     */
+    @Override
+    void backup(Path directory, Consumer<Path> whileHeld) {
+        flush();
+        super.backup(directory, whileHeld);
+    }
+
+    /**
+     * Stops the writer thread, writes whatever is still pending and then
+     * compacts the journals. Saves made after closing are written synchronously.
+     *
+     * @throws RuntimeException if some of the pending writes could not be made
+     */
+    @Override
+    public void close() {
+        synchronized (pending) {
+            closed = true;
+        }
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // The writer has stopped, so this thread can drain the rest
+        RuntimeException failure = null;
+        for (EntityType entityType : EntityType.values()) {
+            try {
+                drain(entityType);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = new RuntimeException("Failed to write pending data on close", e);
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        super.close();
+    }
+
+    private void enqueueSnapshot(EntityType entityType, Runnable write) {
+        synchronized (pending) {
+            if (!closed) {
+                PendingWrites writes = pendingFor(entityType);
+                // A newer snapshot supersedes both the older one and the appends before it
+                writes.snapshot = write;
+                writes.appends.clear();
+                return;
+            }
+        }
+        write.run();
+    }
+
+    private void enqueueAppend(EntityType entityType, Runnable write) {
+        synchronized (pending) {
+            if (!closed) {
+                pendingFor(entityType).appends.add(write);
+                return;
+            }
+        }
+        write.run();
+    }
+
+    // Must hold the 'pending' lock
+    private PendingWrites pendingFor(EntityType entityType) {
+        PendingWrites writes = pending.get(entityType);
+        if (writes == null) {
+            writes = new PendingWrites();
+            pending.put(entityType, writes);
+        }
+        if (!writes.scheduled) {
+            // The first change of a burst fixes the deadline for the whole burst
+            writer.schedule(() -> drain(entityType), maxDelayMillis, TimeUnit.MILLISECONDS);
+            writes.scheduled = true;
+        }
+        return writes;
+    }
+
+    // Runs on the writer thread, or on the closing thread once the writer has stopped
+    private void drain(EntityType entityType) {
+        PendingWrites writes;
+        synchronized (pending) {
+            writes = pending.remove(entityType);
+        }
+        if (writes == null) {
+            return;
+        }
+        Runnable snapshot = writes.snapshot;
+        int written = 0;
+        try {
+            if (snapshot != null) {
+                snapshot.run();
+                snapshot = null;
+            }
+            for (; written < writes.appends.size(); written++) {
+                writes.appends.get(written).run();
+            }
+        } catch (RuntimeException e) {
+            // The failed write and the ones after it are kept, in order
+            requeue(entityType, snapshot, writes.appends.subList(written, writes.appends.size()));
+            for (SaveFailureListener listener : failureListeners) {
+                listener.saveFailed(entityType, e);
+            }
+            throw e;
+        }
+    }
+
+    // Puts writes that failed back in front of the ones queued since drain took them
+    private void requeue(EntityType entityType, Runnable snapshot, List<Runnable> appends) {
+        synchronized (pending) {
+            PendingWrites writes = pending.get(entityType);
+            if (writes != null && writes.snapshot != null) {
+                // A newer snapshot was saved meanwhile and supersedes them
+                return;
+            }
+            if (writes == null) {
+                // Not scheduled: tried again with the next save, flush or close rather than
+                // failing over and over while nothing changes
+                writes = new PendingWrites();
+                pending.put(entityType, writes);
+            }
+            writes.snapshot = snapshot;
+            writes.appends.addAll(0, appends);
+        }
+    }
+
+    private static String describe(EntityType entityType) {
+        return entityType.name().toLowerCase() + " data";
+    }
+
+    private static class PendingWrites {
+        private Runnable snapshot;
+        private final List<Runnable> appends = new ArrayList<>();
+        private boolean scheduled;
+    }
+}
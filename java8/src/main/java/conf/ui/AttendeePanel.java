@@ -2,7 +2,8 @@ package conf.ui;
 
 import conf.Attendee;
 import conf.PaymentType;
-import conf.persistence.JsonPersistenceManager;
+import conf.persistence.ConferenceRepository;
+import conf.persistence.StorageBackend;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
@@ -16,7 +17,7 @@ public class AttendeePanel extends JPanel {
     private JButton addButton;
     private JButton editButton;
     private JButton deleteButton;
-    private JsonPersistenceManager persistenceManager;
+    private StorageBackend storage;
 
     // Modern color scheme
     private static final Color BACKGROUND_COLOR = new Color(245, 245, 250);
@@ -27,9 +28,10 @@ public class AttendeePanel extends JPanel {
     private static final Font TABLE_FONT = new Font("Arial", Font.PLAIN, 13);
     private static final Font BUTTON_FONT = new Font("Arial", Font.BOLD, 13);
 
-    public AttendeePanel() {
-        persistenceManager = new JsonPersistenceManager();
-        attendees = persistenceManager.loadAttendees();
+    public AttendeePanel(ConferenceRepository repository) {
+        storage = repository.getStorage();
+        // Shared with every other panel; edits below go to the cached list
+        attendees = repository.getAttendees();
         setLayout(new BorderLayout());
         setBackground(BACKGROUND_COLOR);
         setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
@@ -109,10 +111,10 @@ public class AttendeePanel extends JPanel {
                     JOptionPane.YES_NO_OPTION);
 
                 if (confirm == JOptionPane.YES_OPTION) {
-                    attendees.remove(selectedRow);
+                    Attendee removed = attendees.remove(selectedRow);
                     tableModel.removeRow(selectedRow);
-                    // Save changes to file
-                    persistenceManager.saveAttendees(attendees);
+                    // Record just the removal
+                    storage.attendees().remove(removed.getUniqueId());
                 }
             } else {
                 JOptionPane.showMessageDialog(this,
@@ -225,10 +227,12 @@ public class AttendeePanel extends JPanel {
                     tableModel.setValueAt(lastName, selectedRow, 1);
                     tableModel.setValueAt(paymentType, selectedRow, 2);
                     tableModel.setValueAt(attendee.getUniqueId(), selectedRow, 3);
+                    // The edited attendee gets a new id, so retire the old one
+                    storage.attendees().remove(attendeeToEdit.getUniqueId());
                 }
 
-                // Save changes to file
-                persistenceManager.saveAttendees(attendees);
+                // Record just the changed attendee
+                storage.attendees().put(attendee);
 
                 dialog.dispose();
             } catch (Exception ex) {
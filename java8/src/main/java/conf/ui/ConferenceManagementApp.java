@@ -1,13 +1,24 @@
 package conf.ui;
 
 import conf.*;
+import conf.persistence.ConferenceRepository;
+import conf.persistence.DataFileWatcher;
+import conf.persistence.EntityType;
+import conf.persistence.WriteBehindPersistenceManager;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.nio.file.Path;
 
 public class ConferenceManagementApp extends JFrame {
     private JPanel mainPanel;
     private CardLayout cardLayout;
+    // Shared by all panels so saves are queued off the event dispatch thread
+    private final WriteBehindPersistenceManager persistenceManager = new WriteBehindPersistenceManager();
+    // Loaded entities are kept here, so switching panels does not re-read the files
+    private final ConferenceRepository repository = new ConferenceRepository(persistenceManager);
+    private DataFileWatcher watcher;
+    private String currentPanel = "Welcome";
 
     // Custom button class for better visual appearance
     private class StyledButton extends JButton {
@@ -62,19 +73,48 @@ public class ConferenceManagementApp extends JFrame {
     public ConferenceManagementApp() {
         setTitle("Conference Management System");
         setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+        persistenceManager.addSaveFailureListener((entityType, failure) ->
+            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                "Failed to save " + entityType.name().toLowerCase() + ": " + failure.getMessage(),
+                "Save Error",
+                JOptionPane.ERROR_MESSAGE)));
         addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
                 // Allow any cleanup to happen before closing
+                watcher.close();
+                try {
+                    persistenceManager.close();
+                } catch (RuntimeException failure) {
+                    JOptionPane.showMessageDialog(ConferenceManagementApp.this,
+                        "Some changes could not be saved: " + failure.getCause().getMessage(),
+                        "Save Error",
+                        JOptionPane.ERROR_MESSAGE);
+                }
                 dispose();
                 System.exit(0);
             }
         });
+        // Read all the data files in parallel up front instead of one per panel
+        repository.preload();
+        // Pick up records other writers add or change while the app is open
+        repository.addChangeListener(changes -> {
+            if (shows(currentPanel, changes.getEntityType())) {
+                switchPanel(currentPanel);
+            }
+        });
+        watcher = new DataFileWatcher(repository, SwingUtilities::invokeLater);
+        watcher.start();
         setSize(800, 600);
         setLocationRelativeTo(null);
 
         // Create menu bar
         JMenuBar menuBar = new JMenuBar();
+        JMenu fileMenu = new JMenu("File");
+        JMenuItem backupItem = new JMenuItem("Back Up Data...");
+        backupItem.addActionListener(e -> backUp());
+        fileMenu.add(backupItem);
+        menuBar.add(fileMenu);
         JMenu manageMenu = new JMenu("Manage");
 
         // Add menu items
@@ -140,6 +180,27 @@ public class ConferenceManagementApp extends JFrame {
         menu.add(menuItem);
     }
 
+    // Copies the data while the desks keep saving; only the copying runs off the event dispatch thread
+    private void backUp() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Back Up To Folder");
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path directory = chooser.getSelectedFile().toPath();
+        new Thread(() -> {
+            try {
+                repository.getStorage().backup(directory);
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                    "Data backed up to " + directory, "Backup", JOptionPane.INFORMATION_MESSAGE));
+            } catch (RuntimeException ex) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                    "Backup failed: " + ex.getMessage(), "Backup Error", JOptionPane.ERROR_MESSAGE));
+            }
+        }, "backup").start();
+    }
+
     public void showMainMenu() {
         switchPanel("Welcome");
     }
@@ -148,22 +209,22 @@ public class ConferenceManagementApp extends JFrame {
         JPanel panel;
         switch (panelName) {
             case "Conferences":
-                panel = new ConferencePanel();
+                panel = new ConferencePanel(repository);
                 break;
             case "Attendees":
-                panel = new AttendeePanel();
+                panel = new AttendeePanel(repository);
                 break;
             case "Speakers":
-                panel = new SpeakerPanel();
+                panel = new SpeakerPanel(repository);
                 break;
             case "Staff":
-                panel = new StaffPanel();
+                panel = new StaffPanel(repository);
                 break;
             case "Vendors/Sponsors":
-                panel = new VendorSponsorPanel();
+                panel = new VendorSponsorPanel(repository);
                 break;
             case "Sessions":
-                panel = new SessionPanel();
+                panel = new SessionPanel(repository);
                 break;
             default:
                 panel = new JPanel();
@@ -175,6 +236,20 @@ public class ConferenceManagementApp extends JFrame {
         mainPanel.revalidate();
         mainPanel.repaint();
         cardLayout.show(mainPanel, panelName);
+        currentPanel = panelName;
+    }
+
+    private static boolean shows(String panelName, EntityType entityType) {
+        switch (entityType) {
+            case ATTENDEES:
+                return "Attendees".equals(panelName);
+            case SPEAKERS:
+                return "Speakers".equals(panelName) || "Sessions".equals(panelName);
+            case VENDORS:
+                return "Vendors/Sponsors".equals(panelName);
+            default:
+                return false;
+        }
     }
 
     public static void main(String[] args) {
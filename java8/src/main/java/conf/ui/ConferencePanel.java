@@ -1,7 +1,7 @@
 package conf.ui;
 
 import conf.Conference;
-import conf.persistence.JsonPersistenceManager;
+import conf.persistence.ConferenceRepository;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
@@ -18,7 +18,7 @@ public class ConferencePanel extends JPanel {
     private JButton addButton;
     private JButton editButton;
     private JButton deleteButton;
-    private final JsonPersistenceManager persistenceManager;
+    private final ConferenceRepository repository;
 
     // Modern color scheme
     private static final Color BACKGROUND_COLOR = new Color(245, 245, 250);
@@ -29,8 +29,8 @@ public class ConferencePanel extends JPanel {
     private static final Font TABLE_FONT = new Font("Arial", Font.PLAIN, 13);
     private static final Font BUTTON_FONT = new Font("Arial", Font.BOLD, 13);
 
-    public ConferencePanel() {
-        persistenceManager = new JsonPersistenceManager();
+    public ConferencePanel(ConferenceRepository repository) {
+        this.repository = repository;
         setLayout(new BorderLayout());
         setBackground(BACKGROUND_COLOR);
         setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
@@ -77,7 +77,7 @@ public class ConferencePanel extends JPanel {
 
         // Load saved conferences
         conferences = new ArrayList<>();
-        Conference savedConference = persistenceManager.loadConference();
+        Conference savedConference = repository.getConference();
         if (savedConference != null) {
             conferences.add(savedConference);
             // Add saved conference to table
@@ -97,7 +97,7 @@ public class ConferencePanel extends JPanel {
                     @Override
                     public void windowClosing(WindowEvent e) {
                         if (!conferences.isEmpty()) {
-                            persistenceManager.saveConference(conferences.get(0));
+                            repository.saveConference(conferences.get(0));
                         }
                     }
                 });
@@ -133,10 +133,10 @@ public class ConferencePanel extends JPanel {
                     tableModel.removeRow(selectedRow);
                     // Save the updated conference list
                     if (!conferences.isEmpty()) {
-                        persistenceManager.saveConference(conferences.get(0));
+                        repository.saveConference(conferences.get(0));
                     } else {
                         // If no conferences left, create empty file
-                        persistenceManager.saveConference(null);
+                        repository.saveConference(null);
                     }
                 }
             } else {
@@ -256,7 +256,7 @@ public class ConferencePanel extends JPanel {
 
                 // Save the updated conference list
                 if (!conferences.isEmpty()) {
-                    persistenceManager.saveConference(conferences.get(0));
+                    repository.saveConference(conferences.get(0));
                 }
 
                 dialog.dispose();
@@ -1,8 +1,10 @@
 package conf.ui;
 
 import conf.Session;
+import conf.ShirtSize;
 import conf.Speaker;
-import conf.persistence.JsonPersistenceManager;
+import conf.persistence.ConferenceRepository;
+import conf.persistence.StorageBackend;
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import javax.swing.table.DefaultTableModel;
@@ -16,7 +18,8 @@ public class SessionPanel extends JPanel {
     private List<Session> sessions;
     private JButton addButton;
     private JButton deleteButton;
-    private JsonPersistenceManager persistenceManager;
+    private StorageBackend storage;
+    private ConferenceRepository repository;
 
     // Modern color scheme
     private static final Color BACKGROUND_COLOR = new Color(245, 245, 250);
@@ -27,9 +30,11 @@ public class SessionPanel extends JPanel {
     private static final Font TABLE_FONT = new Font("Arial", Font.PLAIN, 13);
     private static final Font BUTTON_FONT = new Font("Arial", Font.BOLD, 13);
 
-    public SessionPanel() {
-        persistenceManager = new JsonPersistenceManager();
-        sessions = persistenceManager.loadSessions();
+    public SessionPanel(ConferenceRepository repository) {
+        this.repository = repository;
+        storage = repository.getStorage();
+        // Shared with every other panel; edits below go to the cached list
+        sessions = repository.getSessions();
         setLayout(new BorderLayout());
         setBackground(BACKGROUND_COLOR);
         setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
@@ -64,7 +69,7 @@ public class SessionPanel extends JPanel {
             tableModel.addRow(new Object[]{
                 session.getSessionTitle(),
                 session.getSessionAbstract(),
-                session.getMainSpeakerModerator().getFirstName() + " " + session.getMainSpeakerModerator().getLastName()
+                speakerName(session)
             });
         }
 
@@ -96,7 +101,7 @@ public class SessionPanel extends JPanel {
                     sessions.remove(selectedRow);
                     tableModel.removeRow(selectedRow);
                     // Save changes to file
-                    persistenceManager.saveSessions(sessions);
+                    storage.sessions().saveAll(sessions);
                 }
             } else {
                 JOptionPane.showMessageDialog(this,
@@ -107,6 +112,15 @@ public class SessionPanel extends JPanel {
         });
     }
 
+    private static String speakerName(Session session) {
+        Speaker speaker = session.getMainSpeakerModerator();
+        if (speaker == null) {
+            // Only the id is known, e.g. the speaker was deleted elsewhere
+            return session.getMainSpeakerModeratorId() == null ? "" : "Unknown (" + session.getMainSpeakerModeratorId() + ")";
+        }
+        return speaker.getFirstName() + " " + speaker.getLastName();
+    }
+
     private JButton createStyledButton(String text, Color backgroundColor) {
         StyledButton button = new StyledButton(text, backgroundColor);
         button.setPreferredSize(new Dimension(0, 35));  // Only set height, let width be determined by layout
@@ -234,6 +248,9 @@ public class SessionPanel extends JPanel {
                     speakerShirtSize.isEmpty()) {
                     throw new IllegalArgumentException("All fields are required");
                 }
+                if (ShirtSize.parse(speakerShirtSize) == null) {
+                    throw new IllegalArgumentException("Unknown shirt size: " + speakerShirtSize);
+                }
 
                 Speaker speaker = new Speaker(speakerFirstName, speakerLastName, speakerShirtSize);
                 Session session = new Session(title, sessionAbstract, speaker);
@@ -245,8 +262,10 @@ public class SessionPanel extends JPanel {
                     speakerFirstName + " " + speakerLastName
                 });
 
-                // Save changes to file
-                persistenceManager.saveSessions(sessions);
+                // Sessions only store the speaker's id, so the speaker is saved too
+                repository.getSpeakers().add(speaker);
+                storage.speakers().put(speaker);
+                storage.sessions().saveAll(sessions);
 
                 dialog.dispose();
             } catch (Exception ex) {
@@ -1,7 +1,9 @@
 package conf.ui;
 
+import conf.ShirtSize;
 import conf.Speaker;
-import conf.persistence.JsonPersistenceManager;
+import conf.persistence.ConferenceRepository;
+import conf.persistence.StorageBackend;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
@@ -15,7 +17,8 @@ public class SpeakerPanel extends JPanel {
     private JButton addButton;
     private JButton editButton;
     private JButton deleteButton;
-    private JsonPersistenceManager persistenceManager;
+    private StorageBackend storage;
+    private ConferenceRepository repository;
 
     // Modern color scheme
     private static final Color BACKGROUND_COLOR = new Color(245, 245, 250);
@@ -26,9 +29,11 @@ public class SpeakerPanel extends JPanel {
     private static final Font TABLE_FONT = new Font("Arial", Font.PLAIN, 13);
     private static final Font BUTTON_FONT = new Font("Arial", Font.BOLD, 13);
 
-    public SpeakerPanel() {
-        persistenceManager = new JsonPersistenceManager();
-        speakers = persistenceManager.loadSpeakers();
+    public SpeakerPanel(ConferenceRepository repository) {
+        this.repository = repository;
+        storage = repository.getStorage();
+        // Shared with every other panel; edits below go to the cached list
+        speakers = repository.getSpeakers();
         setLayout(new BorderLayout());
         setBackground(BACKGROUND_COLOR);
         setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
@@ -63,7 +68,7 @@ public class SpeakerPanel extends JPanel {
             tableModel.addRow(new Object[]{
                 speaker.getFirstName(),
                 speaker.getLastName(),
-                speaker.getShirtSize(),
+                speaker.getShirtSizeLabel(),
                 speaker.getUniqueId()
             });
         }
@@ -110,9 +115,15 @@ public class SpeakerPanel extends JPanel {
                     JOptionPane.YES_NO_OPTION);
 
                 if (confirm == JOptionPane.YES_OPTION) {
-                    speakers.remove(selectedRow);
-                    tableModel.removeRow(selectedRow);
-                    persistenceManager.saveSpeakers(speakers);
+                    try {
+                        repository.removeSpeaker(speakers.get(selectedRow));
+                        tableModel.removeRow(selectedRow);
+                    } catch (IllegalStateException ex) {
+                        JOptionPane.showMessageDialog(this,
+                            ex.getMessage(),
+                            "Speaker In Use",
+                            JOptionPane.WARNING_MESSAGE);
+                    }
                 }
             } else {
                 JOptionPane.showMessageDialog(this,
@@ -167,7 +178,7 @@ public class SpeakerPanel extends JPanel {
         if (speakerToEdit != null) {
             firstNameField.setText(speakerToEdit.getFirstName());
             lastNameField.setText(speakerToEdit.getLastName());
-            shirtSizeField.setText(speakerToEdit.getShirtSize());
+            shirtSizeField.setText(speakerToEdit.getShirtSizeLabel());
         }
 
         // Add components to dialog with styled labels
@@ -203,29 +214,32 @@ public class SpeakerPanel extends JPanel {
                 if (firstName.isEmpty() || lastName.isEmpty() || shirtSize.isEmpty()) {
                     throw new IllegalArgumentException("All fields are required");
                 }
-
-                Speaker speaker = new Speaker(firstName, lastName, shirtSize);
+                if (ShirtSize.parse(shirtSize) == null) {
+                    throw new IllegalArgumentException("Unknown shirt size: " + shirtSize);
+                }
 
                 if (speakerToEdit == null) {
                     // Add new speaker
+                    Speaker speaker = new Speaker(firstName, lastName, shirtSize);
                     speakers.add(speaker);
                     tableModel.addRow(new Object[]{
                         firstName, 
                         lastName, 
-                        shirtSize,
+                        speaker.getShirtSizeLabel(),
                         speaker.getUniqueId()
                     });
-                    persistenceManager.saveSpeakers(speakers);
+                    storage.speakers().put(speaker);
                 } else {
-                    // Update existing speaker
-                    int index = speakers.indexOf(speakerToEdit);
-                    speakers.set(index, speaker);
+                    // Update the existing speaker in place, keeping its id, so the
+                    // sessions that refer to it stay linked
+                    speakerToEdit.setFirstName(firstName);
+                    speakerToEdit.setLastName(lastName);
+                    speakerToEdit.setShirtSize(ShirtSize.parse(shirtSize));
                     int selectedRow = speakerTable.getSelectedRow();
                     tableModel.setValueAt(firstName, selectedRow, 0);
                     tableModel.setValueAt(lastName, selectedRow, 1);
-                    tableModel.setValueAt(shirtSize, selectedRow, 2);
-                    tableModel.setValueAt(speaker.getUniqueId(), selectedRow, 3);
-                    persistenceManager.saveSpeakers(speakers);
+                    tableModel.setValueAt(speakerToEdit.getShirtSizeLabel(), selectedRow, 2);
+                    storage.speakers().put(speakerToEdit);
                 }
 
                 dialog.dispose();
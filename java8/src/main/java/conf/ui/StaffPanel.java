@@ -1,7 +1,9 @@
 package conf.ui;
 
+import conf.HatSize;
 import conf.Staff;
-import conf.persistence.JsonPersistenceManager;
+import conf.persistence.ConferenceRepository;
+import conf.persistence.StorageBackend;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
@@ -15,7 +17,7 @@ public class StaffPanel extends JPanel {
     private JButton addButton;
     private JButton editButton;
     private JButton deleteButton;
-    private JsonPersistenceManager persistenceManager;
+    private StorageBackend storage;
 
     // Modern color scheme
     private static final Color BACKGROUND_COLOR = new Color(245, 245, 250);
@@ -26,9 +28,10 @@ public class StaffPanel extends JPanel {
     private static final Font TABLE_FONT = new Font("Arial", Font.PLAIN, 13);
     private static final Font BUTTON_FONT = new Font("Arial", Font.BOLD, 13);
 
-    public StaffPanel() {
-        persistenceManager = new JsonPersistenceManager();
-        staffMembers = persistenceManager.loadStaff();
+    public StaffPanel(ConferenceRepository repository) {
+        storage = repository.getStorage();
+        // Shared with every other panel; edits below go to the cached list
+        staffMembers = repository.getStaff();
         setLayout(new BorderLayout());
         setBackground(BACKGROUND_COLOR);
         setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
@@ -63,7 +66,7 @@ public class StaffPanel extends JPanel {
             tableModel.addRow(new Object[]{
                 staff.getFirstName(),
                 staff.getLastName(),
-                staff.getHatSize()
+                staff.getHatSizeLabel()
             });
         }
 
@@ -110,7 +113,7 @@ public class StaffPanel extends JPanel {
                     staffMembers.remove(selectedRow);
                     tableModel.removeRow(selectedRow);
                     // Save changes to file
-                    persistenceManager.saveStaff(staffMembers);
+                    storage.staff().saveAll(staffMembers);
                 }
             } else {
                 JOptionPane.showMessageDialog(this,
@@ -165,7 +168,7 @@ public class StaffPanel extends JPanel {
         if (staffToEdit != null) {
             firstNameField.setText(staffToEdit.getFirstName());
             lastNameField.setText(staffToEdit.getLastName());
-            hatSizeField.setText(staffToEdit.getHatSize());
+            hatSizeField.setText(staffToEdit.getHatSizeLabel());
         }
 
         // Add components to dialog with styled labels
@@ -200,6 +203,9 @@ public class StaffPanel extends JPanel {
                 if (firstName.isEmpty() || lastName.isEmpty() || hatSize.isEmpty()) {
                     throw new IllegalArgumentException("All fields are required");
                 }
+                if (HatSize.parse(hatSize) == null) {
+                    throw new IllegalArgumentException("Unknown hat size: " + hatSize);
+                }
 
                 Staff staff = new Staff(firstName, lastName, hatSize);
 
@@ -209,7 +215,7 @@ public class StaffPanel extends JPanel {
                     tableModel.addRow(new Object[]{
                         firstName, 
                         lastName, 
-                        hatSize
+                        staff.getHatSizeLabel()
                     });
                 } else {
                     // Update existing staff member
@@ -218,11 +224,11 @@ public class StaffPanel extends JPanel {
                     int selectedRow = staffTable.getSelectedRow();
                     tableModel.setValueAt(firstName, selectedRow, 0);
                     tableModel.setValueAt(lastName, selectedRow, 1);
-                    tableModel.setValueAt(hatSize, selectedRow, 2);
+                    tableModel.setValueAt(staff.getHatSizeLabel(), selectedRow, 2);
                 }
 
                 // Save changes to file
-                persistenceManager.saveStaff(staffMembers);
+                storage.staff().saveAll(staffMembers);
 
                 dialog.dispose();
             } catch (Exception ex) {
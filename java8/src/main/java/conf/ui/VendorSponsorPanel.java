@@ -1,7 +1,8 @@
 package conf.ui;
 
 import conf.VendorSponsor;
-import conf.persistence.JsonPersistenceManager;
+import conf.persistence.ConferenceRepository;
+import conf.persistence.StorageBackend;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
@@ -15,7 +16,7 @@ public class VendorSponsorPanel extends JPanel {
     private JButton addButton;
     private JButton editButton;
     private JButton deleteButton;
-    private JsonPersistenceManager persistenceManager;
+    private StorageBackend storage;
 
     // Modern color scheme
     private static final Color BACKGROUND_COLOR = new Color(245, 245, 250);
@@ -26,9 +27,10 @@ public class VendorSponsorPanel extends JPanel {
     private static final Font TABLE_FONT = new Font("Arial", Font.PLAIN, 13);
     private static final Font BUTTON_FONT = new Font("Arial", Font.BOLD, 13);
 
-    public VendorSponsorPanel() {
-        persistenceManager = new JsonPersistenceManager();
-        vendors = persistenceManager.loadVendors();
+    public VendorSponsorPanel(ConferenceRepository repository) {
+        storage = repository.getStorage();
+        // Shared with every other panel; edits below go to the cached list
+        vendors = repository.getVendors();
         setLayout(new BorderLayout());
         setBackground(BACKGROUND_COLOR);
         setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
@@ -108,10 +110,10 @@ public class VendorSponsorPanel extends JPanel {
                     JOptionPane.YES_NO_OPTION);
 
                 if (confirm == JOptionPane.YES_OPTION) {
-                    vendors.remove(selectedRow);
+                    VendorSponsor removed = vendors.remove(selectedRow);
                     tableModel.removeRow(selectedRow);
-                    // Save changes to file
-                    persistenceManager.saveVendors(vendors);
+                    // Record just the removal
+                    storage.vendors().remove(removed.getUniqueId());
                 }
             } else {
                 JOptionPane.showMessageDialog(this,
@@ -222,10 +224,12 @@ public class VendorSponsorPanel extends JPanel {
                     tableModel.setValueAt(lastName, selectedRow, 1);
                     tableModel.setValueAt(boothName, selectedRow, 2);
                     tableModel.setValueAt(vendor.getUniqueId(), selectedRow, 3);
+                    // The edited vendor gets a new id, so retire the old one
+                    storage.vendors().remove(vendorToEdit.getUniqueId());
                 }
 
-                // Save changes to file
-                persistenceManager.saveVendors(vendors);
+                // Record just the changed vendor
+                storage.vendors().put(vendor);
 
                 dialog.dispose();
             } catch (Exception ex) {
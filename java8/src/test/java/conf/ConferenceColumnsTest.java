@@ -0,0 +1,104 @@
+package conf;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.time.Year;
+import java.util.Arrays;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConferenceColumnsTest {
+    private Conference conference;
+
+    @BeforeEach
+    void setUp() {
+        conference = new Conference("Java One", "J1", Year.of(2025), "Moscone");
+    }
+
+    @Test
+    void testUnknownSizesAreCountedAsGiven() {
+        conference.addSpeaker(new Speaker("Grace", "Hopper", "Large"));
+        conference.addSpeaker(new Speaker("Alan", "Kay", "5XL"));
+        conference.addSpeaker(new Speaker("Ada", "Lovelace", "5XL"));
+        conference.addSpeaker(new Speaker("Barbara", "Liskov", null));
+        conference.addStaff(new Staff("Niklaus", "Wirth", "Fedora"));
+
+        Map<String, Integer> shirts = App.determineShirtCount(conference);
+        assertEquals(Integer.valueOf(1), shirts.get("L"));
+        assertEquals(Integer.valueOf(2), shirts.get("5XL"));
+        assertEquals(Integer.valueOf(1), shirts.get(null));
+        assertEquals(4, shirts.values().stream().mapToInt(Integer::intValue).sum());
+
+        Map<String, Integer> hats = App.determineHatCount(conference);
+        assertEquals(Integer.valueOf(1), hats.get("Fedora"));
+    }
+
+    @Test
+    void testColumnsMatchThePeople() {
+        PaymentType[] paymentTypes = PaymentType.values();
+        String[] shirtSizes = {"S", "M", "L", "2XL"};
+        for (int i = 0; i < 50; i++) {
+            conference.addAttendee(new Attendee("First" + i % 7, "Last" + i, paymentTypes[i % paymentTypes.length]));
+            conference.addSpeaker(new Speaker("Speaker" + i, "Last" + i % 3, shirtSizes[i % shirtSizes.length]));
+        }
+        conference.addStaff(new Staff("Linus", "Torvalds", "L"));
+        conference.addStaff(new Staff("Guido", "van Rossum", "S/M"));
+        ConferenceColumns columns = conference.getColumns();
+
+        assertEquals(conference.getAttendees().size(), columns.attendeeCount());
+        assertEquals(conference.getSpeakers().size(), columns.speakerCount());
+        assertEquals(conference.getStaff().size(), columns.staffCount());
+
+        int row = 0;
+        for (Attendee attendee : conference.getAttendees()) {
+            assertEquals(attendee.getFirstName(), columns.attendeeFirstName(row));
+            assertEquals(attendee.getLastName(), columns.attendeeLastName(row));
+            assertEquals(attendee.getPaymentType(), columns.attendeePaymentType(row));
+            row++;
+        }
+        row = 0;
+        for (Speaker speaker : conference.getSpeakers()) {
+            assertEquals(speaker.getLastName(), columns.speakerLastName(row));
+            assertEquals(speaker.getShirtSize(), columns.speakerShirtSize(row));
+            row++;
+        }
+        assertEquals(HatSize.S_M, columns.staffHatSize(1));
+
+        int[] payments = columns.countPaymentTypes();
+        for (PaymentType paymentType : paymentTypes) {
+            long expected = conference.getAttendees().stream().filter(a -> a.getPaymentType() == paymentType).count();
+            assertEquals(expected, payments[paymentType.ordinal()]);
+        }
+        int[] shirts = columns.countShirtSizes();
+        for (ShirtSize shirtSize : ShirtSize.values()) {
+            long expected = conference.getSpeakers().stream().filter(s -> s.getShirtSize() == shirtSize).count();
+            assertEquals(expected, shirts[shirtSize.ordinal()]);
+        }
+        assertTrue(columns.countOtherShirtSizes().isEmpty());
+        assertEquals(1, columns.countHatSizes()[HatSize.L.ordinal()]);
+    }
+
+    @Test
+    void testColumnsAreBuiltAgainAfterChanges() {
+        conference.addSpeaker(new Speaker("Grace", "Hopper", "M"));
+        assertEquals(1, conference.getColumns().speakerCount());
+
+        Speaker alan = new Speaker("Alan", "Kay", "L");
+        conference.addSpeaker(alan);
+        assertEquals(2, conference.getColumns().speakerCount());
+
+        conference.removePerson(alan.getUniqueId());
+        assertEquals(1, conference.getColumns().speakerCount());
+        assertEquals(0, conference.getColumns().countShirtSizes()[ShirtSize.L.ordinal()]);
+    }
+
+    @Test
+    void testEmptyConferenceHasEmptyColumns() {
+        ConferenceColumns columns = conference.getColumns();
+
+        assertEquals(0, columns.attendeeCount());
+        assertEquals(0, columns.speakerCount());
+        assertEquals(0, columns.staffCount());
+        assertEquals(0, Arrays.stream(columns.countPaymentTypes()).sum());
+    }
+}
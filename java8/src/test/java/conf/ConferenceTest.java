@@ -0,0 +1,58 @@
+package conf;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.time.Year;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConferenceTest {
+    private Conference conference;
+
+    @BeforeEach
+    void setUp() {
+        conference = new Conference("Java One", "J1", Year.of(2025), "Moscone");
+    }
+
+    @Test
+    void testPeopleAreFoundByUniqueId() {
+        Attendee ada = new Attendee("Ada", "Lovelace", PaymentType.PAYPAL);
+        Speaker grace = new Speaker("Grace", "Hopper", "M");
+        VendorSponsor duke = new VendorSponsor("Duke", "Java", "Booth 1", "vendor-1");
+        conference.addAttendee(ada);
+        conference.addSpeaker(grace);
+        conference.addVendorSponsor(duke);
+
+        assertSame(ada, conference.findPerson(ada.getUniqueId()));
+        assertSame(grace, conference.findPerson(grace.getUniqueId()));
+        assertSame(duke, conference.findPerson("vendor-1"));
+        assertNull(conference.findPerson(new Attendee("Alan", "Kay", PaymentType.VISA).getUniqueId()));
+    }
+
+    @Test
+    void testSetsReplacedAreLookedUpAgain() {
+        Attendee ada = new Attendee("Ada", "Lovelace", PaymentType.PAYPAL);
+        conference.addAttendee(new Attendee("Alan", "Kay", PaymentType.VISA));
+        conference.findPerson(ada.getUniqueId());
+
+        conference.setAttendees(new LinkedHashSet<>(Arrays.asList(ada)));
+
+        assertSame(ada, conference.findPerson(ada.getUniqueId()));
+    }
+
+    @Test
+    void testRemovedPersonLeavesTheirSet() {
+        Attendee ada = new Attendee("Ada", "Lovelace", PaymentType.PAYPAL);
+        Speaker grace = new Speaker("Grace", "Hopper", "M");
+        conference.addAttendee(ada);
+        conference.addSpeaker(grace);
+
+        assertSame(grace, conference.removePerson(grace.getUniqueId()));
+
+        assertNull(conference.findPerson(grace.getUniqueId()));
+        assertTrue(conference.getSpeakers().isEmpty());
+        assertEquals(1, conference.getAttendees().size());
+        assertNull(conference.removePerson(grace.getUniqueId()));
+    }
+}
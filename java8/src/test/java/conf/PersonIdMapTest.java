@@ -0,0 +1,118 @@
+package conf;
+
+import org.junit.jupiter.api.Test;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersonIdMapTest {
+    // Table size of a new map
+    private static final int CAPACITY = 16;
+
+    @Test
+    void testCollidingIdsWrapAroundTheTable() {
+        // Ids whose halves xor to the same value share a home slot; this one is the last
+        List<PersonId> ids = collidingIds(homeSlot(CAPACITY - 1), 5);
+        PersonIdMap<String> map = new PersonIdMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            assertNull(map.put(ids.get(i), "person" + i));
+        }
+
+        assertEquals(5, map.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals("person" + i, map.get(ids.get(i)));
+            assertEquals("person" + i, map.get(ids.get(i).toString()));
+        }
+        assertEquals("person2", map.put(ids.get(2), "replaced"));
+        assertEquals(5, map.size());
+    }
+
+    @Test
+    void testRemovingFromARunKeepsTheRestReachable() {
+        List<PersonId> ids = collidingIds(homeSlot(CAPACITY - 1), 5);
+        PersonIdMap<String> map = new PersonIdMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            map.put(ids.get(i), "person" + i);
+        }
+
+        // The first sits at the end of the table, the rest after the wrap
+        assertEquals("person0", map.remove(ids.get(0)));
+        assertEquals("person3", map.remove(ids.get(3).toString()));
+
+        assertEquals(3, map.size());
+        assertNull(map.get(ids.get(0)));
+        assertNull(map.get(ids.get(3)));
+        assertEquals("person1", map.get(ids.get(1)));
+        assertEquals("person2", map.get(ids.get(2)));
+        assertEquals("person4", map.get(ids.get(4)));
+        assertNull(map.remove(ids.get(0)));
+    }
+
+    @Test
+    void testEntriesSurviveResizing() {
+        PersonIdMap<Integer> map = new PersonIdMap<>();
+        List<PersonId> ids = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            PersonId id = PersonId.random();
+            ids.add(id);
+            map.put(id, i);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            map.remove(ids.get(i));
+        }
+
+        assertEquals(500, map.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 == 0 ? null : Integer.valueOf(i), map.get(ids.get(i)));
+        }
+    }
+
+    @Test
+    void testIdsThatAreNotUuidsAreKept() {
+        PersonIdMap<String> map = new PersonIdMap<>();
+        map.put(PersonId.of("speaker-42"), "Grace");
+        map.put(PersonId.of("6F9619FF-8B86-D011-B42D-00C04FC964FF"), "Ada");
+
+        assertEquals(2, map.size());
+        assertEquals("Grace", map.get("speaker-42"));
+        assertEquals("Ada", map.get("6F9619FF-8B86-D011-B42D-00C04FC964FF"));
+        assertNull(map.get("6f9619ff-8b86-d011-b42d-00c04fc964ff"));
+        assertEquals("Grace", map.remove("speaker-42"));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void testNullIdIsNotFound() {
+        PersonIdMap<String> map = new PersonIdMap<>();
+        map.put(PersonId.random(), "Ada");
+
+        assertNull(map.get((String) null));
+        assertNull(map.get((PersonId) null));
+        assertNull(map.remove((String) null));
+        assertNull(new Conference("Java One", "J1", Year.of(2025), "Moscone").findPerson(null));
+    }
+
+    @Test
+    void testNullValuesAreRefused() {
+        assertThrows(IllegalArgumentException.class, () -> new PersonIdMap<String>().put(PersonId.random(), null));
+    }
+
+    // The most ^ least value, found by trying, whose ids start probing at the given slot
+    private static long homeSlot(int slot) {
+        for (long xor = 1; ; xor++) {
+            if ((int) ((xor * 0x9E3779B97F4A7C15L) >>> 32 & (CAPACITY - 1)) == slot) {
+                return xor;
+            }
+        }
+    }
+
+    private static List<PersonId> collidingIds(long xor, int count) {
+        List<PersonId> ids = new ArrayList<>();
+        for (long most = 1; most <= count; most++) {
+            ids.add(PersonId.of(new UUID(most, most ^ xor).toString()));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,55 @@
+package conf;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+import java.util.UUID;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersonIdTest {
+    private final Gson gson = new Gson();
+
+    @Test
+    void testLowerCaseUuidIsKeptAsTwoLongs() {
+        UUID uuid = UUID.randomUUID();
+        PersonId id = PersonId.of(uuid.toString());
+
+        assertTrue(id.isUuid());
+        assertEquals(uuid.getMostSignificantBits(), id.getMostSignificantBits());
+        assertEquals(uuid.getLeastSignificantBits(), id.getLeastSignificantBits());
+        assertEquals(uuid.toString(), id.toString());
+        assertEquals(id, PersonId.of(uuid.toString()));
+        assertEquals(id.hashCode(), PersonId.of(uuid.toString()).hashCode());
+    }
+
+    @Test
+    void testUpperCaseUuidComesBackUnchanged() {
+        String upper = "6F9619FF-8B86-D011-B42D-00C04FC964FF";
+        PersonId id = PersonId.of(upper);
+
+        assertFalse(id.isUuid());
+        assertEquals(upper, id.toString());
+        assertNotEquals(PersonId.of(upper.toLowerCase()), id);
+    }
+
+    @Test
+    void testOtherIdsComeBackUnchanged() {
+        for (String text : new String[] {"speaker-42", "", "6f9619ff8b86d011b42d00c04fc964ff",
+                "6f9619ff-8b86-d011-b42d-00c04fc964fg"}) {
+            PersonId id = PersonId.of(text);
+            assertFalse(id.isUuid());
+            assertEquals(text, id.toString());
+            assertEquals(id, PersonId.of(text));
+        }
+        assertNull(PersonId.of(null));
+    }
+
+    @Test
+    void testJsonIsTheStringForm() {
+        for (String text : new String[] {UUID.randomUUID().toString(), "6F9619FF-8B86-D011-B42D-00C04FC964FF",
+                "speaker-42"}) {
+            String json = gson.toJson(PersonId.of(text));
+            assertEquals("\"" + text + "\"", json);
+            assertEquals(PersonId.of(text), gson.fromJson(json, PersonId.class));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package conf;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersonSetTest {
+    private Conference conference;
+    private Attendee ada;
+    private Attendee alan;
+    private Speaker grace;
+    private VendorSponsor duke;
+
+    @BeforeEach
+    void setUp() {
+        conference = new Conference("Java One", "J1", Year.of(2025), "Moscone");
+        ada = new Attendee("Ada", "Lovelace", PaymentType.PAYPAL);
+        alan = new Attendee("Alan", "Kay", PaymentType.VISA);
+        grace = new Speaker("Grace", "Hopper", "M");
+        duke = new VendorSponsor("Duke", "Java", "Booth 1");
+        conference.addAttendee(ada);
+        conference.addAttendee(alan);
+        conference.addSpeaker(grace);
+        conference.addVendorSponsor(duke);
+    }
+
+    @Test
+    void testPeopleAreNumberedAsTheyAreAdded() {
+        assertEquals(0, conference.personNumber(ada));
+        assertEquals(1, conference.personNumber(alan));
+        assertEquals(2, conference.personNumber(grace));
+        assertEquals(3, conference.personNumber(duke));
+        assertSame(grace, conference.getPerson(2));
+        assertNull(conference.getPerson(4));
+    }
+
+    @Test
+    void testUnionIntersectionAndDifference() {
+        PersonSet checkedIn = setOf(ada, alan, grace);
+        PersonSet badged = setOf(grace, duke);
+
+        assertEquals(Arrays.asList(ada, alan, grace, duke), members(checkedIn.union(badged)));
+        assertEquals(Arrays.asList(grace), members(checkedIn.intersection(badged)));
+        assertEquals(Arrays.asList(ada, alan), members(checkedIn.difference(badged)));
+        // The operands are left alone
+        assertEquals(3, checkedIn.size());
+        assertEquals(2, badged.size());
+    }
+
+    @Test
+    void testAddRemoveAndContains() {
+        PersonSet set = conference.newPersonSet();
+        assertTrue(set.isEmpty());
+        assertTrue(set.add(ada));
+        assertFalse(set.add(ada));
+        assertTrue(set.contains(ada));
+        assertFalse(set.contains(alan));
+
+        assertTrue(set.remove(ada));
+        assertFalse(set.remove(ada));
+        assertFalse(set.contains(ada));
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    void testSetsStayValidWhenPeopleAreRemoved() {
+        PersonSet checkedIn = setOf(ada, alan, grace);
+        PersonSet won = setOf(alan);
+
+        conference.removePerson(alan.getUniqueId());
+        Attendee barbara = new Attendee("Barbara", "Liskov", PaymentType.AMEX);
+        conference.addAttendee(barbara);
+
+        // Alan keeps his number, so Barbara gets a new one and is in neither set
+        assertTrue(checkedIn.contains(alan));
+        assertFalse(checkedIn.contains(barbara));
+        assertEquals(4, conference.personNumber(barbara));
+        assertEquals(Arrays.asList(ada, grace), members(checkedIn.difference(won)));
+        assertEquals(Arrays.asList(ada, alan, grace), members(checkedIn.union(won)));
+    }
+
+    @Test
+    void testPersonInTwoConferencesHasANumberInEach() {
+        Conference other = new Conference("Devoxx", "DV", Year.of(2025), "Antwerp");
+        other.addSpeaker(new Speaker("Brian", "Goetz", "L"));
+        other.addAttendee(ada);
+
+        assertEquals(1, other.personNumber(ada));
+        assertEquals(0, conference.personNumber(ada));
+        PersonSet here = setOf(ada);
+        assertFalse(setOf(grace).contains(ada));
+        assertTrue(here.contains(ada));
+        assertThrows(IllegalArgumentException.class, () -> here.union(other.newPersonSet()));
+    }
+
+    private PersonSet setOf(AllowedPerson... people) {
+        PersonSet set = conference.newPersonSet();
+        set.addAll(Arrays.asList(people));
+        return set;
+    }
+
+    private static List<AllowedPerson> members(PersonSet set) {
+        List<AllowedPerson> members = new ArrayList<>();
+        set.forEach(members::add);
+        return members;
+    }
+}
@@ -0,0 +1,74 @@
+package conf.persistence;
+
+import conf.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import java.io.File;
+import java.nio.file.Paths;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinarySnapshotTest {
+    private static final String SNAPSHOT_TEST_FILE = "conference_test.snapshot";
+
+    @AfterEach
+    void tearDown() {
+        File file = new File(SNAPSHOT_TEST_FILE);
+        if (file.exists()) {
+            file.delete();
+        }
+    }
+
+    @Test
+    void testRoundTrip() {
+        Conference conference = new Conference("Mars Developer Summit", "MDS", Year.of(2025), "Elysium Planitia");
+        Speaker speaker = new Speaker("Chandra", "Guntur", "M");
+        Speaker guest = new Speaker("Mala", "Gupta", "L");
+        conference.setSpeakers(new LinkedHashSet<>(Collections.singletonList(speaker)));
+        conference.setSessions(new LinkedHashSet<>(Arrays.asList(
+            new Session("Records", "All about records", speaker),
+            new Session("Sealed types", "All about sealed types", speaker),
+            new Session("Keynote", "Welcome", guest))));
+        conference.setStaff(new LinkedHashSet<>(Collections.singletonList(new Staff("Duke", "Java", "XL"))));
+        conference.setAttendees(new LinkedHashSet<>(Collections.singletonList(
+            new Attendee("Ada", "Lovelace", PaymentType.PAYPAL))));
+        // Vendors left null on purpose
+
+        BinarySnapshot.write(conference, Paths.get(SNAPSHOT_TEST_FILE));
+        Conference loaded = BinarySnapshot.read(Paths.get(SNAPSHOT_TEST_FILE));
+
+        assertEquals("MDS", loaded.getNickName());
+        assertEquals(Year.of(2025), loaded.getYear());
+        assertNull(loaded.getVendorSponsors());
+
+        // Only the conference's own speakers are listed, session-only speakers are not
+        assertEquals(1, loaded.getSpeakers().size());
+        Speaker loadedSpeaker = loaded.getSpeakers().iterator().next();
+        assertEquals(speaker.getUniqueId(), loadedSpeaker.getUniqueId());
+
+        List<Session> sessions = new ArrayList<>(loaded.getSessions());
+        assertSame(loadedSpeaker, sessions.get(0).getMainSpeakerModerator());
+        assertSame(loadedSpeaker, sessions.get(1).getMainSpeakerModerator());
+        assertEquals(guest.getUniqueId(), sessions.get(2).getMainSpeakerModerator().getUniqueId());
+
+        Attendee attendee = loaded.getAttendees().iterator().next();
+        assertEquals(PaymentType.PAYPAL, attendee.getPaymentType());
+        assertEquals(HatSize.XL, loaded.getStaff().iterator().next().getHatSize());
+    }
+
+    @Test
+    void testRejectsOtherFiles() {
+        new JsonPersistenceManager().saveConference(new Conference("Test", "T", Year.of(2024), "Venue"));
+        try {
+            assertThrows(RuntimeException.class,
+                () -> BinarySnapshot.read(Paths.get("conference_data.json")));
+        } finally {
+            new File("conference_data.json").delete();
+        }
+    }
+}
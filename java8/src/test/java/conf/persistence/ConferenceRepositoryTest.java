@@ -0,0 +1,222 @@
+package conf.persistence;
+
+import conf.Attendee;
+import conf.Conference;
+import conf.LazySet;
+import conf.PaymentType;
+import conf.Session;
+import conf.Speaker;
+import conf.Staff;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConferenceRepositoryTest {
+    private static final String STAFF_TEST_FILE = "staff_data.json";
+    private static final String ATTENDEES_TEST_FILE = "attendees_data.json";
+    private static final String CONFERENCE_TEST_FILE = "conference_data.json";
+    private static final String SPEAKERS_TEST_FILE = "speakers_data.json";
+    private static final String SESSIONS_TEST_FILE = "sessions_data.json";
+    private ConferenceRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        new JsonPersistenceManager().saveStaff(Arrays.asList(new Staff("Niklaus", "Wirth", "L")));
+        repository = new ConferenceRepository(new JsonPersistenceManager());
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (String fileName : new String[] {STAFF_TEST_FILE, ATTENDEES_TEST_FILE, CONFERENCE_TEST_FILE,
+                SPEAKERS_TEST_FILE, SESSIONS_TEST_FILE, "speakers_data.journal", "speakers_data.idx",
+                "attendees_data.idx", "attendees_data.journal", "attendees_data.crc", "staff_data.crc", "speakers_data.crc", "sessions_data.crc"}) {
+            File file = new File(fileName);
+            if (file.exists()) {
+                file.delete();
+            }
+        }
+    }
+
+    @Test
+    void testSameInstancesAcrossCallers() {
+        List<Staff> first = repository.getStaff();
+        List<Staff> second = repository.getStaff();
+        assertSame(first, second);
+        assertSame(first.get(0), second.get(0));
+    }
+
+    @Test
+    void testOwnWritesKeepTheCache() {
+        List<Staff> staff = repository.getStaff();
+        staff.add(new Staff("John", "Backus", "XL"));
+        repository.getStorage().staff().saveAll(staff);
+
+        assertSame(staff, repository.getStaff());
+    }
+
+    @Test
+    void testOutsideChangesAreReloaded() {
+        List<Staff> staff = repository.getStaff();
+
+        // Another writer replaces the file
+        new JsonPersistenceManager().saveStaff(Arrays.asList(
+            new Staff("Tony", "Hoare", "S/M"),
+            new Staff("Donald", "Knuth", "XL")));
+
+        // The list everyone holds is brought up to date rather than replaced
+        List<Staff> reloaded = repository.getStaff();
+        assertSame(staff, reloaded);
+        assertEquals(2, reloaded.size());
+        assertEquals("Hoare", staff.get(0).getLastName());
+    }
+
+    @Test
+    void testReloadKeepsRecordInstances() {
+        Attendee ada = new Attendee("Ada", "Lovelace", PaymentType.PAYPAL);
+        new JsonPersistenceManager().saveAttendees(Arrays.asList(ada));
+        List<Attendee> attendees = repository.getAttendees();
+        Attendee cachedAda = attendees.get(0);
+
+        // Reloaded on the next get rather than through detectChanges
+        new JsonPersistenceManager().saveAttendees(Arrays.asList(
+            new Attendee("Ada", "King", PaymentType.PAYPAL, ada.getUniqueId()),
+            new Attendee("Alan", "Turing", PaymentType.AMEX)));
+        assertSame(attendees, repository.getAttendees());
+        assertEquals(2, attendees.size());
+        assertSame(cachedAda, attendees.get(0));
+        assertEquals("King", cachedAda.getLastName());
+    }
+
+    @Test
+    void testOutsideChangesAreAppliedInPlace() {
+        Attendee ada = new Attendee("Ada", "Lovelace", PaymentType.PAYPAL);
+        Attendee grace = new Attendee("Grace", "Hopper", PaymentType.VISA);
+        new JsonPersistenceManager().saveAttendees(Arrays.asList(ada, grace));
+        List<Attendee> attendees = repository.getAttendees();
+        Attendee cachedAda = attendees.get(0);
+        assertNull(repository.detectChanges(EntityType.ATTENDEES));
+
+        // Another writer changes Ada, drops Grace and adds Alan
+        Attendee changedAda = new Attendee("Ada", "King", PaymentType.PAYPAL, ada.getUniqueId());
+        Attendee alan = new Attendee("Alan", "Turing", PaymentType.AMEX);
+        new JsonPersistenceManager().saveAttendees(Arrays.asList(changedAda, alan));
+
+        EntityChanges<?> changes = repository.detectChanges(EntityType.ATTENDEES);
+        assertEquals(1, changes.getAdded().size());
+        assertSame(cachedAda, changes.getChanged().get(0));
+        assertEquals(grace.getUniqueId(), ((Attendee) changes.getRemoved().get(0)).getUniqueId());
+
+        List<EntityChanges<?>> published = new ArrayList<>();
+        repository.addChangeListener(published::add);
+        repository.applyChanges(changes);
+
+        assertSame(attendees, repository.getAttendees());
+        assertEquals(2, attendees.size());
+        assertSame(cachedAda, attendees.get(0));
+        assertEquals("King", cachedAda.getLastName());
+        assertEquals(alan.getUniqueId(), attendees.get(1).getUniqueId());
+        assertEquals(1, published.size());
+        assertNull(repository.detectChanges(EntityType.ATTENDEES));
+    }
+
+    @Test
+    void testApplyingChangesKeepsANewerStamp() {
+        Attendee ada = new Attendee("Ada", "Lovelace", PaymentType.PAYPAL);
+        new JsonPersistenceManager().saveAttendees(Arrays.asList(ada));
+        List<Attendee> attendees = repository.getAttendees();
+        new JsonPersistenceManager().saveAttendees(Arrays.asList(ada,
+            new Attendee("Alan", "Turing", PaymentType.AMEX)));
+        EntityChanges<?> changes = repository.detectChanges(EntityType.ATTENDEES);
+
+        // Our own write lands between detecting and applying the changes
+        Attendee grace = new Attendee("Grace", "Hopper", PaymentType.VISA);
+        attendees.add(grace);
+        repository.getStorage().attendees().put(grace);
+        repository.applyChanges(changes);
+
+        assertEquals(3, attendees.size());
+        assertNull(repository.detectChanges(EntityType.ATTENDEES));
+    }
+
+    @Test
+    void testConferenceCollectionsLoadOnFirstUse() throws IOException {
+        new JsonPersistenceManager().saveConference(new Conference("Java One", "J1", Year.of(2025), "Moscone"));
+        Conference conference = repository.getConference();
+        LazySet<Staff> staff = (LazySet<Staff>) conference.getStaff();
+        assertFalse(staff.isLoaded());
+
+        // Saving the header leaves the collections in their own files
+        repository.saveConference(conference);
+        assertFalse(staff.isLoaded());
+        String saved = new String(Files.readAllBytes(Paths.get(CONFERENCE_TEST_FILE)), StandardCharsets.UTF_8);
+        assertFalse(saved.contains("staff"));
+
+        assertEquals(1, staff.size());
+        assertSame(repository.getStaff().get(0), staff.iterator().next());
+    }
+
+    @Test
+    void testConferenceCollectionsAreViewsOfTheRepository() throws IOException {
+        new JsonPersistenceManager().saveConference(new Conference("Java One", "J1", Year.of(2025), "Moscone"));
+        Conference conference = repository.getConference();
+        Set<Staff> staff = conference.getStaff();
+        assertEquals(1, staff.size());
+
+        // Added through the repository, as the panels do
+        Staff duke = new Staff("Duke", "Java", "L");
+        repository.getStaff().add(duke);
+        assertTrue(staff.contains(duke));
+
+        // Removed through the conference, and stored
+        Iterator<Staff> iterator = staff.iterator();
+        iterator.next();
+        iterator.remove();
+        assertEquals(Arrays.asList(duke), repository.getStaff());
+        assertEquals("Java", repository.getStorage().staff().loadAll().get(0).getLastName());
+
+        Attendee grace = new Attendee("Grace", "Hopper", PaymentType.VISA);
+        conference.addAttendee(grace);
+        assertTrue(repository.getAttendees().contains(grace));
+        assertNotNull(repository.getStorage().attendees().find(grace.getUniqueId()));
+    }
+
+    @Test
+    void testDeletedSpeakerIsNotRecreated() throws IOException {
+        Speaker grace = new Speaker("Grace", "Hopper", "M");
+        Speaker alan = new Speaker("Alan", "Kay", "L");
+        JsonPersistenceManager persistenceManager = new JsonPersistenceManager();
+        persistenceManager.saveSpeakers(Arrays.asList(grace, alan));
+        persistenceManager.saveSessions(Arrays.asList(new Session("COBOL", "Business languages", grace)));
+
+        // A speaker with a session cannot be deleted, one without can
+        assertThrows(IllegalStateException.class, () -> repository.removeSpeaker(repository.getSpeakers().get(0)));
+        repository.removeSpeaker(repository.getSpeakers().get(1));
+        assertEquals(1, repository.getSpeakers().size());
+
+        // Deleted behind the sessions' back, the speaker stays gone after a reload
+        repository.getStorage().speakers().remove(grace.getUniqueId());
+        ConferenceRepository reloaded = new ConferenceRepository(new JsonPersistenceManager());
+        Session session = reloaded.getSessions().get(0);
+        assertNull(session.getMainSpeakerModerator());
+        assertEquals(grace.getUniqueId(), session.getMainSpeakerModeratorId());
+        assertTrue(reloaded.getSpeakers().isEmpty());
+        assertTrue(new JsonPersistenceManager().loadSpeakers().isEmpty());
+
+        // Saving the sessions again keeps the reference
+        reloaded.getStorage().sessions().saveAll(reloaded.getSessions());
+        String saved = new String(Files.readAllBytes(Paths.get(SESSIONS_TEST_FILE)), StandardCharsets.UTF_8);
+        assertTrue(saved.contains(grace.getUniqueId()));
+    }
+}
@@ -2,14 +2,35 @@ package conf.persistence;
 
 import conf.Conference;
 import conf.Attendee;
+import conf.HatSize;
 import conf.PaymentType;
+import conf.Session;
+import conf.ShirtSize;
+import conf.Speaker;
+import conf.Staff;
+import conf.VendorSponsor;
+import com.google.gson.Gson;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.time.Year;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import static org.junit.jupiter.api.Assertions.*;
 
 class JsonPersistenceManagerTest {
@@ -17,8 +38,16 @@ class JsonPersistenceManagerTest {
     private static final String CONFERENCE_TEST_FILE = "conference_data.json";
     private static final String ATTENDEES_TEST_FILE = "attendees_data.json";
     private static final String SESSIONS_TEST_FILE = "sessions_data.json";
+    private static final String SPEAKERS_TEST_FILE = "speakers_data.json";
     private static final String STAFF_TEST_FILE = "staff_data.json";
     private static final String VENDORS_TEST_FILE = "vendors_data.json";
+    private static final String ATTENDEES_JOURNAL_TEST_FILE = "attendees_data.journal";
+    private static final String ATTENDEES_INDEX_TEST_FILE = "attendees_data.idx";
+    private static final String SPEAKERS_INDEX_TEST_FILE = "speakers_data.idx";
+    private static final String VENDORS_INDEX_TEST_FILE = "vendors_data.idx";
+    private static final String ATTENDEES_CHECKSUM_TEST_FILE = "attendees_data.crc";
+    private static final String MANIFEST_TEST_FILE = "unit_of_work.crashed.manifest";
+    private static final String PENDING_MANIFEST_TEST_FILE = "unit_of_work.abandoned.manifest.pending";
 
     @BeforeEach
     void setUp() {
@@ -32,8 +61,20 @@ class JsonPersistenceManagerTest {
             CONFERENCE_TEST_FILE,
             ATTENDEES_TEST_FILE,
             SESSIONS_TEST_FILE,
+            SPEAKERS_TEST_FILE,
             STAFF_TEST_FILE,
-            VENDORS_TEST_FILE
+            VENDORS_TEST_FILE,
+            ATTENDEES_JOURNAL_TEST_FILE,
+            ATTENDEES_INDEX_TEST_FILE,
+            SPEAKERS_INDEX_TEST_FILE,
+            VENDORS_INDEX_TEST_FILE,
+            ATTENDEES_CHECKSUM_TEST_FILE,
+            "speakers_data.crc",
+            "sessions_data.crc",
+            "staff_data.crc",
+            "vendors_data.crc",
+            MANIFEST_TEST_FILE,
+            PENDING_MANIFEST_TEST_FILE
         };
 
         for (String testFile : testFiles) {
@@ -85,4 +126,637 @@ class JsonPersistenceManagerTest {
         Conference conference = persistenceManager.loadConference();
         assertNull(conference);
     }
+
+    @Test
+    void testStreamAttendees() {
+        List<Attendee> attendees = Arrays.asList(
+            new Attendee("Ada", "Lovelace", PaymentType.VISA),
+            new Attendee("Alan", "Turing", PaymentType.AMEX));
+        persistenceManager.saveAttendees(attendees);
+
+        // Records come back one at a time, in file order
+        try (Stream<Attendee> stream = persistenceManager.streamAttendees()) {
+            Iterator<Attendee> iterator = stream.iterator();
+            Attendee first = iterator.next();
+            assertEquals("Ada", first.getFirstName());
+            assertEquals(attendees.get(0).getUniqueId(), first.getUniqueId());
+            assertEquals(PaymentType.AMEX, iterator.next().getPaymentType());
+            assertFalse(iterator.hasNext());
+        }
+
+        // The list loader is built on the same path
+        List<String> ids = persistenceManager.loadAttendees().stream()
+            .map(Attendee::getUniqueId)
+            .collect(Collectors.toList());
+        assertEquals(Arrays.asList(attendees.get(0).getUniqueId(), attendees.get(1).getUniqueId()), ids);
+    }
+
+    @Test
+    void testStreamMissingOrNullFile() {
+        // No file yet
+        try (Stream<Attendee> stream = persistenceManager.streamAttendees()) {
+            assertEquals(0, stream.count());
+        }
+
+        // A null list is written as a JSON null
+        persistenceManager.saveAttendees(null);
+        assertTrue(persistenceManager.loadAttendees().isEmpty());
+    }
+
+    @Test
+    void testNullPaymentTypeRoundTrip() {
+        Attendee unpaid = new Attendee("Ada", "Lovelace", PaymentType.VISA);
+        unpaid.setPaymentType(null);
+        Attendee paid = new Attendee("Alan", "Turing", PaymentType.AMEX);
+        persistenceManager.saveAttendees(Arrays.asList(unpaid, paid));
+
+        List<Attendee> loaded = persistenceManager.loadAttendees();
+        assertEquals(2, loaded.size());
+        assertNull(loaded.get(0).getPaymentType());
+        assertEquals(unpaid.getUniqueId(), loaded.get(0).getUniqueId());
+        assertEquals(PaymentType.AMEX, loaded.get(1).getPaymentType());
+    }
+
+    @Test
+    void testCompactSaveRoundTrip() throws IOException {
+        List<Attendee> attendees = Arrays.asList(
+            new Attendee("Grace", "Hopper", PaymentType.PAYPAL),
+            new Attendee("Edsger", "Dijkstra", PaymentType.MASTERCARD));
+
+        persistenceManager.saveAttendees(attendees);
+        long prettySize = Files.size(Paths.get(ATTENDEES_TEST_FILE));
+
+        JsonPersistenceManager compactManager = new JsonPersistenceManager(new StorageSettings().prettyPrinting(false));
+        compactManager.saveAttendees(attendees);
+        long compactSize = Files.size(Paths.get(ATTENDEES_TEST_FILE));
+        assertTrue(compactSize < prettySize);
+
+        // Either manager reads the compact form back
+        List<Attendee> loaded = persistenceManager.loadAttendees();
+        assertEquals(2, loaded.size());
+        assertEquals("Hopper", loaded.get(0).getLastName());
+        assertEquals(attendees.get(1).getUniqueId(), loaded.get(1).getUniqueId());
+    }
+
+    @Test
+    void testJournaledAttendeeChanges() {
+        Attendee kept = new Attendee("Barbara", "Liskov", PaymentType.VISA);
+        Attendee removed = new Attendee("Ken", "Thompson", PaymentType.AMEX);
+        persistenceManager.saveAttendees(Arrays.asList(kept, removed));
+
+        // Journal an add and a delete without rewriting the snapshot
+        Attendee added = new Attendee("Frances", "Allen", PaymentType.PAYPAL);
+        persistenceManager.appendAttendee(added);
+        persistenceManager.appendAttendeeRemoval(removed.getUniqueId());
+        assertTrue(new File(ATTENDEES_JOURNAL_TEST_FILE).exists());
+
+        List<Attendee> loaded = new JsonPersistenceManager().loadAttendees();
+        assertEquals(2, loaded.size());
+        assertEquals(kept.getUniqueId(), loaded.get(0).getUniqueId());
+        assertEquals(added.getUniqueId(), loaded.get(1).getUniqueId());
+
+        // Compaction folds the journal into the snapshot
+        persistenceManager.compactJournals();
+        assertFalse(new File(ATTENDEES_JOURNAL_TEST_FILE).exists());
+        assertEquals(2, persistenceManager.loadAttendees().size());
+    }
+
+    @Test
+    void testTornJournalLineIsRepaired() throws IOException {
+        Attendee kept = new Attendee("Barbara", "Liskov", PaymentType.VISA);
+        persistenceManager.saveAttendees(new ArrayList<>());
+        persistenceManager.appendAttendee(kept);
+        // A crash part way through the next append leaves half a line
+        Files.write(Paths.get(ATTENDEES_JOURNAL_TEST_FILE), "{\"op\":\"put\",\"id\":\"x".getBytes("UTF-8"),
+            StandardOpenOption.APPEND);
+
+        JsonPersistenceManager reader = new JsonPersistenceManager();
+        assertEquals("Liskov", reader.findAttendee(kept.getUniqueId()).getLastName());
+        List<String> lines = Files.readAllLines(Paths.get(ATTENDEES_JOURNAL_TEST_FILE));
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).contains(kept.getUniqueId()));
+
+        // Later appends follow the repaired journal
+        Attendee added = new Attendee("Frances", "Allen", PaymentType.PAYPAL);
+        reader.appendAttendee(added);
+        assertEquals(2, new JsonPersistenceManager().loadAttendees().size());
+    }
+
+    @Test
+    void testSessionsShareSpeakerInstances() throws IOException {
+        Speaker speaker = new Speaker("Grace", "Hopper", "M");
+        persistenceManager.saveSpeakers(Arrays.asList(speaker));
+        persistenceManager.saveSessions(Arrays.asList(
+            new Session("COBOL", "Business languages", speaker),
+            new Session("Nanoseconds", "A foot of wire", speaker)));
+
+        String json = new String(Files.readAllBytes(Paths.get(SESSIONS_TEST_FILE)), "UTF-8");
+        assertTrue(json.contains("\"mainSpeakerModeratorId\": \"" + speaker.getUniqueId() + "\""));
+        assertFalse(json.contains("Hopper"));
+
+        List<Speaker> speakers = persistenceManager.loadSpeakers();
+        List<Session> sessions = persistenceManager.loadSessions(speakers);
+        assertSame(speakers.get(0), sessions.get(0).getMainSpeakerModerator());
+        assertSame(speakers.get(0), sessions.get(1).getMainSpeakerModerator());
+    }
+
+    @Test
+    void testLoadsSessionsWithInlineSpeakers() throws IOException {
+        String inline = "{\"firstName\": \"Alan\", \"lastName\": \"Kay\", \"shirtSize\": \"L\", \"uniqueId\": \"ak\"}";
+        Files.write(Paths.get(SESSIONS_TEST_FILE), Arrays.asList(
+            "[{\"sessionTitle\": \"Smalltalk\", \"mainSpeakerModerator\": " + inline + "},",
+            " {\"sessionTitle\": \"Dynabook\", \"mainSpeakerModerator\": " + inline + "}]"));
+
+        List<Session> sessions = persistenceManager.loadSessions();
+        Speaker speaker = sessions.get(0).getMainSpeakerModerator();
+        assertEquals("Kay", speaker.getLastName());
+        assertEquals("ak", speaker.getUniqueId());
+        assertSame(speaker, sessions.get(1).getMainSpeakerModerator());
+    }
+
+    @Test
+    void testSizesAreNormalizedOnLoad() throws IOException {
+        Files.write(Paths.get(STAFF_TEST_FILE), Arrays.asList(
+            "[{\"firstName\": \"Duke\", \"lastName\": \"Java\", \"hatSize\": \"Large\"},",
+            " {\"firstName\": \"Jane\", \"lastName\": \"Doe\", \"hatSize\": \"s/m\"}]"));
+        Files.write(Paths.get(SPEAKERS_TEST_FILE), Arrays.asList(
+            "[{\"firstName\": \"Alan\", \"lastName\": \"Kay\", \"shirtSize\": \"2xl\", \"uniqueId\": \"ak\"}]"));
+
+        List<Staff> staff = persistenceManager.loadStaff();
+        assertEquals(HatSize.L, staff.get(0).getHatSize());
+        assertEquals(HatSize.S_M, staff.get(1).getHatSize());
+        assertEquals(ShirtSize.XXL, persistenceManager.loadSpeakers().get(0).getShirtSize());
+
+        // Written back by their labels
+        persistenceManager.saveStaff(staff);
+        String json = new String(Files.readAllBytes(Paths.get(STAFF_TEST_FILE)), "UTF-8");
+        assertTrue(json.contains("\"hatSize\": \"L\""));
+        assertTrue(json.contains("\"hatSize\": \"S/M\""));
+    }
+
+    @Test
+    void testUnknownSizesSurviveASave() throws IOException {
+        Files.write(Paths.get(STAFF_TEST_FILE), Arrays.asList(
+            "[{\"firstName\": \"Duke\", \"lastName\": \"Java\", \"hatSize\": \"Bowler 7 1/4\"}]"));
+        Files.write(Paths.get(SPEAKERS_TEST_FILE), Arrays.asList(
+            "[{\"firstName\": \"Alan\", \"lastName\": \"Kay\", \"shirtSize\": \"6XL\", \"uniqueId\": \"ak\"}]"));
+
+        Staff staff = persistenceManager.loadStaff().get(0);
+        Speaker speaker = persistenceManager.loadSpeakers().get(0);
+        assertNull(staff.getHatSize());
+        assertEquals("Bowler 7 1/4", staff.getHatSizeLabel());
+        assertNull(speaker.getShirtSize());
+        assertEquals("6XL", speaker.getShirtSizeLabel());
+
+        persistenceManager.saveStaff(Arrays.asList(staff));
+        persistenceManager.saveSpeakers(Arrays.asList(speaker));
+        assertEquals("Bowler 7 1/4", persistenceManager.loadStaff().get(0).getHatSizeLabel());
+        assertEquals("6XL", persistenceManager.loadSpeakers().get(0).getShirtSizeLabel());
+    }
+
+    @Test
+    void testLoadAllAssemblesConference() {
+        persistenceManager.saveConference(new Conference("Test Conference", "TestConf", Year.of(2024), "Test Venue"));
+        Speaker speaker = new Speaker("Grace", "Hopper", "M");
+        persistenceManager.saveSpeakers(Arrays.asList(speaker));
+        persistenceManager.saveSessions(Arrays.asList(new Session("COBOL", "Business languages", speaker)));
+        persistenceManager.saveAttendees(Arrays.asList(new Attendee("Ada", "Lovelace", PaymentType.VISA)));
+
+        Map<EntityType, Long> timings = new EnumMap<>(EntityType.class);
+        Conference loaded = persistenceManager.loadAll((entityType, nanos) -> {
+            synchronized (timings) {
+                timings.put(entityType, nanos);
+            }
+        });
+
+        assertEquals("TestConf", loaded.getNickName());
+        assertEquals(1, loaded.getAttendees().size());
+        assertTrue(loaded.getStaff().isEmpty());
+        Speaker loadedSpeaker = loaded.getSpeakers().iterator().next();
+        assertSame(loadedSpeaker, loaded.getSessions().iterator().next().getMainSpeakerModerator());
+        assertEquals(EntityType.values().length, timings.size());
+    }
+
+    @Test
+    void testReadsAndWritesTheReflectiveFormat() throws IOException {
+        // Files written by plain Gson reflection still load
+        Gson reflective = new Gson();
+        Attendee attendee = new Attendee("Ada", "Lovelace", PaymentType.MASTERCARD);
+        Files.write(Paths.get(ATTENDEES_TEST_FILE),
+            reflective.toJson(Arrays.asList(attendee)).getBytes("UTF-8"));
+        Attendee loaded = persistenceManager.loadAttendees().get(0);
+        assertEquals("Lovelace", loaded.getLastName());
+        assertEquals(PaymentType.MASTERCARD, loaded.getPaymentType());
+        assertEquals(attendee.getUniqueId(), loaded.getUniqueId());
+
+        // And what the adapters write is what reflection would have written
+        Staff staff = new Staff("Duke", "Java", null);
+        VendorSponsor vendor = new VendorSponsor("Jane", "Doe", "Booth 7");
+        JsonPersistenceManager compactManager = new JsonPersistenceManager(new StorageSettings().prettyPrinting(false));
+        compactManager.saveStaff(Arrays.asList(staff));
+        compactManager.saveVendors(Arrays.asList(vendor));
+        assertEquals(reflective.toJson(Arrays.asList(staff)),
+            new String(Files.readAllBytes(Paths.get(STAFF_TEST_FILE)), "UTF-8"));
+        assertEquals(reflective.toJson(Arrays.asList(vendor)),
+            new String(Files.readAllBytes(Paths.get(VENDORS_TEST_FILE)), "UTF-8"));
+    }
+
+    @Test
+    void testFindAttendeeThroughIndex() throws IOException {
+        Attendee first = new Attendee("Barbara", "Liskov", PaymentType.VISA);
+        Attendee second = new Attendee("Ken", "Thompson", PaymentType.AMEX);
+        persistenceManager.saveAttendees(Arrays.asList(first, second));
+        assertTrue(new File(ATTENDEES_INDEX_TEST_FILE).exists());
+
+        JsonPersistenceManager reader = new JsonPersistenceManager();
+        assertEquals("Thompson", reader.findAttendee(second.getUniqueId()).getLastName());
+        assertEquals("Liskov", reader.findAttendee(first.getUniqueId()).getLastName());
+        assertNull(reader.findAttendee("no-such-id"));
+
+        // Journaled changes win over the indexed snapshot
+        persistenceManager.appendAttendeeRemoval(first.getUniqueId());
+        assertNull(reader.findAttendee(first.getUniqueId()));
+
+        // An out of date index falls back to scanning the file
+        Files.write(Paths.get(ATTENDEES_TEST_FILE), new Gson()
+            .toJson(Arrays.asList(new Attendee("Ken", "Ritchie", PaymentType.AMEX, second.getUniqueId())))
+            .getBytes("UTF-8"));
+        assertEquals("Ritchie", reader.findAttendee(second.getUniqueId()).getLastName());
+    }
+
+    @Test
+    void testNdjsonStorage() throws IOException {
+        JsonPersistenceManager ndjson = new JsonPersistenceManager(new StorageSettings().format(StorageFormat.NDJSON));
+        List<Attendee> attendees = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            attendees.add(new Attendee("First" + i, "Last" + i, PaymentType.values()[i % 4]));
+        }
+        ndjson.saveAttendees(attendees);
+        List<String> lines = Files.readAllLines(Paths.get(ATTENDEES_TEST_FILE));
+        assertEquals(20000, lines.size());
+        assertTrue(lines.get(0).startsWith("{"));
+
+        // Big enough to be parsed in several pieces, which must come back in order
+        List<Attendee> loaded = persistenceManager.loadAttendees();
+        assertEquals(20000, loaded.size());
+        assertEquals("Last19999", loaded.get(19999).getLastName());
+
+        // A new registration is one more line, not a journal record
+        Attendee added = new Attendee("Frances", "Allen", PaymentType.PAYPAL);
+        ndjson.appendAttendee(added);
+        assertFalse(new File(ATTENDEES_JOURNAL_TEST_FILE).exists());
+        assertEquals(20001, Files.readAllLines(Paths.get(ATTENDEES_TEST_FILE)).size());
+        assertEquals("Allen", new JsonPersistenceManager().findAttendee(added.getUniqueId()).getLastName());
+
+        // An edit of an existing record still goes to the journal
+        ndjson.appendAttendee(new Attendee("First0", "Changed", PaymentType.AMEX, attendees.get(0).getUniqueId()));
+        assertTrue(new File(ATTENDEES_JOURNAL_TEST_FILE).exists());
+        loaded = persistenceManager.loadAttendees();
+        assertEquals(20001, loaded.size());
+        assertEquals("Changed", loaded.get(0).getLastName());
+    }
+
+    @Test
+    void testNdjsonIgnoresPartialLastLine() throws IOException {
+        Files.write(Paths.get(STAFF_TEST_FILE), Arrays.asList(
+            "{\"hatSize\":\"L\",\"firstName\":\"Niklaus\",\"lastName\":\"Wirth\"}",
+            "{\"hatSize\":\"XL\",\"first"));
+        // Files.write ends every line; cut the last line break to leave it partial
+        byte[] bytes = Files.readAllBytes(Paths.get(STAFF_TEST_FILE));
+        Files.write(Paths.get(STAFF_TEST_FILE), Arrays.copyOf(bytes, bytes.length - 1));
+
+        List<Staff> staff = persistenceManager.loadStaff();
+        assertEquals(1, staff.size());
+        assertEquals("Wirth", staff.get(0).getLastName());
+    }
+
+    @Test
+    void testNdjsonAppendLeavesPartialLineInPlace() throws IOException {
+        JsonPersistenceManager ndjson = new JsonPersistenceManager(new StorageSettings().format(StorageFormat.NDJSON));
+        ndjson.saveAttendees(Arrays.asList(new Attendee("Ada", "Lovelace", PaymentType.PAYPAL)));
+        // A crash mid-append left half a line behind
+        Files.write(Paths.get(ATTENDEES_TEST_FILE), "{\"first".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        byte[] torn = Files.readAllBytes(Paths.get(ATTENDEES_TEST_FILE));
+
+        // A backup may be copying the file, so it is not cut; the record is journalled
+        Attendee added = new Attendee("Frances", "Allen", PaymentType.AMEX);
+        ndjson.appendAttendee(added);
+        assertArrayEquals(torn, Files.readAllBytes(Paths.get(ATTENDEES_TEST_FILE)));
+        assertTrue(new File(ATTENDEES_JOURNAL_TEST_FILE).exists());
+        List<Attendee> loaded = persistenceManager.loadAttendees();
+        assertEquals(2, loaded.size());
+        assertEquals("Allen", loaded.get(1).getLastName());
+    }
+
+    @Test
+    void testDurabilityModes() throws Exception {
+        for (Durability durability : Durability.values()) {
+            JsonPersistenceManager durable = new JsonPersistenceManager(new StorageSettings().durability(durability));
+            Attendee attendee = new Attendee("Barbara", "Liskov", PaymentType.VISA);
+            durable.saveAttendees(Arrays.asList(attendee));
+            durable.appendAttendee(new Attendee("Ken", "Thompson", PaymentType.AMEX));
+            durable.saveConference(new Conference("Test Conference", "TestConf", Year.of(2024), "Test Venue"));
+
+            assertEquals(2, persistenceManager.loadAttendees().size(), durability.name());
+            assertEquals("TestConf", persistenceManager.loadConference().getNickName(), durability.name());
+        }
+        try (Stream<Path> files = Files.list(Paths.get("."))) {
+            assertFalse(files.anyMatch(file -> file.toString().endsWith(".tmp")), "temporary files left behind");
+        }
+    }
+
+    @Test
+    void testGroupCommitOfConcurrentSaves() throws Exception {
+        JsonPersistenceManager durable =
+            new JsonPersistenceManager(new StorageSettings().durability(Durability.GROUP_COMMIT));
+        List<Thread> threads = new ArrayList<>();
+        threads.add(new Thread(() -> durable.saveAttendees(Arrays.asList(new Attendee("Ada", "Lovelace", PaymentType.VISA)))));
+        threads.add(new Thread(() -> durable.saveStaff(Arrays.asList(new Staff("Duke", "Java", "L")))));
+        threads.add(new Thread(() -> durable.saveVendors(Arrays.asList(new VendorSponsor("Jane", "Doe", "Booth 7")))));
+        threads.add(new Thread(() -> durable.saveConference(new Conference("Test", "T", Year.of(2024), "Venue"))));
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, persistenceManager.loadAttendees().size());
+        assertEquals(1, persistenceManager.loadStaff().size());
+        assertEquals(1, persistenceManager.loadVendors().size());
+        assertEquals("T", persistenceManager.loadConference().getNickName());
+    }
+
+    @Test
+    void testCompressedFilesAreDetectedOnLoad() throws IOException {
+        Speaker speaker = new Speaker("Grace", "Hopper", "M");
+        List<Session> sessions = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            sessions.add(new Session("Session " + i, "Lorem ipsum dolor sit amet, consectetur adipiscing elit", speaker));
+        }
+        persistenceManager.saveSessions(sessions);
+        long plainSize = Files.size(Paths.get(SESSIONS_TEST_FILE));
+
+        for (StorageFormat format : StorageFormat.values()) {
+            JsonPersistenceManager compressed =
+                new JsonPersistenceManager(new StorageSettings().format(format).compression(Compression.GZIP));
+            compressed.saveSpeakers(Arrays.asList(speaker));
+            compressed.saveSessions(sessions);
+            compressed.saveConference(new Conference("Test Conference", "TestConf", Year.of(2024), "Test Venue"));
+
+            byte[] bytes = Files.readAllBytes(Paths.get(SESSIONS_TEST_FILE));
+            assertEquals((byte) 0x1f, bytes[0], format.name());
+            assertEquals((byte) 0x8b, bytes[1], format.name());
+            assertTrue(bytes.length * 10 < plainSize, format.name());
+
+            // A manager set up for plain files reads them all the same
+            List<Session> loaded = persistenceManager.loadSessions();
+            assertEquals(200, loaded.size(), format.name());
+            assertEquals("Hopper", loaded.get(199).getMainSpeakerModerator().getLastName(), format.name());
+            assertEquals("TestConf", persistenceManager.loadConference().getNickName(), format.name());
+            assertEquals("Hopper", persistenceManager.findSpeaker(speaker.getUniqueId()).getLastName(), format.name());
+        }
+    }
+
+    @Test
+    void testUnitOfWorkWritesOnlyChangedFiles() {
+        persistenceManager.saveStaff(Arrays.asList(new Staff("Duke", "Java", "L")));
+        long staffStamp = persistenceManager.modificationStamp(EntityType.STAFF);
+        Attendee journaled = new Attendee("Ken", "Thompson", PaymentType.AMEX);
+        persistenceManager.appendAttendee(journaled);
+
+        Speaker speaker = new Speaker("Grace", "Hopper", "M");
+        UnitOfWork work = persistenceManager.beginUnitOfWork();
+        work.setSpeakers(Arrays.asList(speaker));
+        work.setSessions(Arrays.asList(new Session("COBOL", "Business languages", speaker)));
+        work.setAttendees(Arrays.asList(new Attendee("Ada", "Lovelace", PaymentType.VISA)));
+        work.commit();
+
+        assertEquals(staffStamp, persistenceManager.modificationStamp(EntityType.STAFF));
+        assertEquals(0, new File(".").list((dir, name) -> name.startsWith("unit_of_work.")).length);
+        // The new snapshot replaces what was journaled before
+        assertFalse(new File(ATTENDEES_JOURNAL_TEST_FILE).exists());
+        assertEquals("Lovelace", persistenceManager.loadAttendees().get(0).getLastName());
+        assertEquals("Hopper", persistenceManager.findSpeaker(speaker.getUniqueId()).getLastName());
+        assertEquals(1, persistenceManager.loadSpeakers().size());
+        assertThrows(IllegalStateException.class, work::commit);
+    }
+
+    @Test
+    void testInterruptedUnitOfWorkIsCompletedOnStart() throws IOException {
+        persistenceManager.saveStaff(Arrays.asList(new Staff("Niklaus", "Wirth", "XL")));
+
+        // Simulate a crash after the commit point: new contents and manifest, not yet renamed
+        Files.move(Paths.get(STAFF_TEST_FILE), Paths.get(STAFF_TEST_FILE + ".crashed.pending"));
+        persistenceManager.saveStaff(Arrays.asList(new Staff("Duke", "Java", "L")));
+        Files.write(Paths.get(MANIFEST_TEST_FILE),
+            Arrays.asList("{\"STAFF\": \"" + STAFF_TEST_FILE + ".crashed.pending\"}"));
+        // And the leftovers of one that never got that far
+        Files.write(Paths.get(VENDORS_TEST_FILE + ".abandoned.pending"), Arrays.asList("[]"));
+        Files.write(Paths.get(PENDING_MANIFEST_TEST_FILE),
+            Arrays.asList("{\"VENDORS\": \"" + VENDORS_TEST_FILE + ".abandoned.pending\"}"));
+        // A pending file no manifest lists is not recovery's to delete
+        Path unlisted = Paths.get(VENDORS_TEST_FILE + ".unlisted.pending");
+        Files.write(unlisted, Arrays.asList("[]"));
+        try {
+            List<Staff> staff = new JsonPersistenceManager().loadStaff();
+            assertEquals("Wirth", staff.get(0).getLastName());
+            assertFalse(new File(MANIFEST_TEST_FILE).exists());
+            assertFalse(new File(PENDING_MANIFEST_TEST_FILE).exists());
+            assertFalse(new File(VENDORS_TEST_FILE + ".abandoned.pending").exists());
+            assertTrue(Files.exists(unlisted));
+        } finally {
+            Files.deleteIfExists(unlisted);
+        }
+    }
+
+    @Test
+    void testRunningUnitOfWorkIsLeftAlone() throws IOException {
+        UnitOfWorkManifest running = new UnitOfWorkManifest(new Gson(), new FileCommitter(Durability.NONE), type -> { });
+        Path file = UnitOfWorkManifest.pendingFile(EntityType.VENDORS, "running");
+        Map<EntityType, Path> pending = new EnumMap<>(EntityType.class);
+        pending.put(EntityType.VENDORS, file);
+        try (UnitOfWorkManifest.Claim claim = running.claim("running", pending)) {
+            Files.write(file, Arrays.asList("[]"));
+            // Another manager starting meanwhile must not take it for a crashed one
+            new JsonPersistenceManager();
+            assertTrue(Files.exists(file));
+        }
+        // Given up without being committed, so its own files go
+        assertFalse(Files.exists(file));
+        assertEquals(0, new File(".").list((dir, name) -> name.startsWith("unit_of_work.")).length);
+    }
+
+    @Test
+    void testStaleJournalIsNotReplayedOverNewerSnapshot() throws IOException {
+        Attendee ada = new Attendee("Ada", "Lovelace", PaymentType.PAYPAL);
+        persistenceManager.saveAttendees(Arrays.asList(ada));
+        persistenceManager.appendAttendee(new Attendee("Grace", "Hopper", PaymentType.VISA));
+        byte[] staleJournal = Files.readAllBytes(Paths.get(ATTENDEES_JOURNAL_TEST_FILE));
+        persistenceManager.saveAttendees(new ArrayList<>());
+
+        // Simulate a crash after the new snapshot was renamed into place but
+        // before the journal it supersedes was removed
+        Files.write(Paths.get(ATTENDEES_JOURNAL_TEST_FILE), staleJournal);
+        Files.write(Paths.get(MANIFEST_TEST_FILE),
+            Arrays.asList("{\"ATTENDEES\": \"" + ATTENDEES_TEST_FILE + ".crashed.pending\"}"));
+
+        assertTrue(new JsonPersistenceManager().loadAttendees().isEmpty());
+        assertFalse(new File(ATTENDEES_JOURNAL_TEST_FILE).exists());
+    }
+
+    @Test
+    void testCloseCompactsJournals() {
+        persistenceManager.saveAttendees(new ArrayList<>());
+        persistenceManager.appendAttendee(new Attendee("Grace", "Hopper", PaymentType.VISA));
+        persistenceManager.close();
+
+        assertFalse(new File(ATTENDEES_JOURNAL_TEST_FILE).exists());
+        assertEquals("Hopper", new JsonPersistenceManager().loadAttendees().get(0).getLastName());
+    }
+
+    @Test
+    void testBackupIsUnaffectedByLaterWrites() throws IOException {
+        Path backup = Paths.get("backup_test");
+        try {
+            persistenceManager.saveStaff(Arrays.asList(new Staff("Niklaus", "Wirth", "XL")));
+            Attendee ada = new Attendee("Ada", "Lovelace", PaymentType.PAYPAL);
+            persistenceManager.saveAttendees(Arrays.asList(ada));
+            persistenceManager.appendAttendee(new Attendee("Grace", "Hopper", PaymentType.VISA));
+            persistenceManager.backup(backup);
+
+            // Replaces the staff file, and compacting folds the journal into a new attendees file
+            persistenceManager.saveStaff(Arrays.asList(new Staff("Duke", "Java", "L")));
+            persistenceManager.appendAttendeeRemoval(ada.getUniqueId());
+            persistenceManager.compactJournals();
+
+            // Restore the backup over the live files
+            for (File file : backup.toFile().listFiles()) {
+                Files.copy(file.toPath(), Paths.get(file.getName()), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.deleteIfExists(Paths.get(ATTENDEES_INDEX_TEST_FILE));
+            JsonPersistenceManager restored = new JsonPersistenceManager();
+            assertEquals("Wirth", restored.loadStaff().get(0).getLastName());
+            assertEquals(2, restored.loadAttendees().size());
+        } finally {
+            File[] files = backup.toFile().listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            backup.toFile().delete();
+        }
+    }
+
+    @Test
+    void testBackupIncludesChecksums() throws IOException {
+        Path backup = Paths.get("backup_test");
+        try {
+            persistenceManager.saveAttendees(Arrays.asList(new Attendee("Ada", "Lovelace", PaymentType.PAYPAL)));
+            persistenceManager.backup(backup);
+
+            assertTrue(Files.exists(backup.resolve(ATTENDEES_TEST_FILE)));
+            assertTrue(Files.exists(backup.resolve(ATTENDEES_CHECKSUM_TEST_FILE)));
+            assertEquals(Files.getLastModifiedTime(Paths.get(ATTENDEES_TEST_FILE)),
+                    Files.getLastModifiedTime(backup.resolve(ATTENDEES_TEST_FILE)));
+            // Nothing is left of the staging directory
+            assertEquals(2, backup.toFile().listFiles().length);
+        } finally {
+            File[] files = backup.toFile().listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            backup.toFile().delete();
+        }
+    }
+
+    @Test
+    void testBackupIntoTheDataDirectoryIsRefused() {
+        persistenceManager.saveStaff(Arrays.asList(new Staff("Niklaus", "Wirth", "XL")));
+
+        assertThrows(IllegalArgumentException.class, () -> persistenceManager.backup(Paths.get(".")));
+        assertEquals("Wirth", persistenceManager.loadStaff().get(0).getLastName());
+    }
+
+    @Test
+    void testDamagedBlockIsDroppedOnceRecoveryIsAccepted() throws IOException {
+        List<Attendee> attendees = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            attendees.add(new Attendee("First" + i, "Last" + i, PaymentType.VISA));
+        }
+        persistenceManager.saveAttendees(attendees);
+        Attendee late = new Attendee("Ada", "Lovelace", PaymentType.PAYPAL);
+        persistenceManager.appendAttendee(late);
+
+        // Scribble over part of the second block, as a bad sector would
+        Path file = Paths.get(ATTENDEES_TEST_FILE);
+        byte[] bytes = Files.readAllBytes(file);
+        byte[] damage = "\"]]]]]]]".getBytes();
+        System.arraycopy(damage, 0, bytes, BlockChecksums.BLOCK_SIZE + 100, damage.length);
+        overwriteKeepingModificationTime(file, bytes);
+        File[] quarantined = null;
+        try {
+            JsonPersistenceManager reader = new JsonPersistenceManager();
+            DamagedDataException damaged = assertThrows(DamagedDataException.class, reader::loadAttendees);
+            assertEquals(EntityType.ATTENDEES, damaged.getEntityType());
+            assertTrue(damaged.getRecoverable() > 1000 && damaged.getRecoverable() < 2000);
+            // Nothing is rewritten until the user says so
+            assertArrayEquals(bytes, Files.readAllBytes(file));
+            assertThrows(IllegalStateException.class, () -> reader.saveAttendees(new ArrayList<>()));
+            reader.close();
+            assertArrayEquals(bytes, Files.readAllBytes(file));
+            assertTrue(new File(ATTENDEES_JOURNAL_TEST_FILE).exists());
+
+            reader.acceptRecovery(EntityType.ATTENDEES);
+            List<Attendee> loaded = reader.loadAttendees();
+            List<String> ids = loaded.stream().map(Attendee::getUniqueId).collect(Collectors.toList());
+            assertEquals(damaged.getRecoverable() + 1, loaded.size(), "Only the damaged block is lost");
+            assertTrue(ids.contains(attendees.get(0).getUniqueId()));
+            assertTrue(ids.contains(attendees.get(1999).getUniqueId()));
+            assertTrue(ids.contains(late.getUniqueId()), "The journal still applies");
+
+            quarantined = new File(".").listFiles((dir, name) -> name.startsWith(ATTENDEES_TEST_FILE + ".quarantine-"));
+            assertEquals(1, quarantined.length);
+            assertArrayEquals(bytes, Files.readAllBytes(quarantined[0].toPath()));
+            assertEquals(loaded.size(), new JsonPersistenceManager().loadAttendees().size());
+        } finally {
+            if (quarantined != null) {
+                for (File quarantine : quarantined) {
+                    quarantine.delete();
+                }
+            }
+        }
+    }
+
+    @Test
+    void testChecksumsAreVerifiedOnLoad() throws IOException {
+        persistenceManager.saveAttendees(Arrays.asList(new Attendee("Ada", "Lovelace", PaymentType.PAYPAL)));
+        Path file = Paths.get(ATTENDEES_TEST_FILE);
+        byte[] original = Files.readAllBytes(file);
+
+        // Damage that still parses is caught by the checksums alone
+        byte[] bytes = original.clone();
+        int name = new String(bytes, "UTF-8").indexOf("Lovelace");
+        bytes[name] = 'J';
+        overwriteKeepingModificationTime(file, bytes);
+        JsonPersistenceManager reader = new JsonPersistenceManager();
+        assertThrows(DamagedDataException.class, reader::loadAttendees);
+        assertThrows(IllegalStateException.class, () -> reader.appendAttendee(new Attendee("Grace", "Hopper", PaymentType.VISA)));
+
+        // Restoring the file is the other way out
+        overwriteKeepingModificationTime(file, original);
+        assertEquals("Lovelace", reader.loadAttendees().get(0).getLastName());
+        reader.saveAttendees(new ArrayList<>());
+        assertThrows(IllegalStateException.class, () -> reader.acceptRecovery(EntityType.ATTENDEES));
+    }
+
+    private static void overwriteKeepingModificationTime(Path file, byte[] bytes) throws IOException {
+        FileTime modified = Files.getLastModifiedTime(file);
+        Files.write(file, bytes);
+        Files.setLastModifiedTime(file, modified);
+    }
 }
@@ -0,0 +1,108 @@
+package conf.persistence;
+
+import conf.Attendee;
+import conf.Conference;
+import conf.PaymentType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonStorageBackendTest {
+    private static final String ATTENDEES_TEST_FILE = "attendees_data.json";
+    private static final Path SHARD_DIRECTORY = Paths.get("attendee_shards_test");
+
+    @AfterEach
+    void tearDown() {
+        File[] files = SHARD_DIRECTORY.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        SHARD_DIRECTORY.toFile().delete();
+        for (String fileName : new String[] {ATTENDEES_TEST_FILE, "attendees_data.idx", "attendees_data.crc",
+                ATTENDEES_TEST_FILE + ".migrated", "conference_data.json"}) {
+            new File(fileName).delete();
+        }
+    }
+
+    @Test
+    void testShardedAttendees() throws IOException {
+        List<Attendee> attendees = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            attendees.add(new Attendee("First" + i, "Last" + i, PaymentType.VISA));
+        }
+        JsonPersistenceManager persistenceManager = new JsonPersistenceManager();
+        persistenceManager.saveAttendees(attendees);
+
+        persistenceManager.saveConference(new Conference("Test Conference", "TestConf", Year.of(2024), "Test Venue"));
+
+        // The attendees already saved move into the shards, and the old file is set aside
+        JsonStorageBackend backend = new JsonStorageBackend(persistenceManager, SHARD_DIRECTORY, 8);
+        assertEquals(40, backend.attendees().loadAll().size());
+        assertFalse(new File(ATTENDEES_TEST_FILE).exists());
+        assertTrue(new File(ATTENDEES_TEST_FILE + ".migrated").exists());
+        assertEquals(40, backend.loadAll().getAttendees().size());
+        Attendee first = attendees.get(0);
+        assertEquals("Last0", backend.attendees().find(first.getUniqueId()).getLastName());
+
+        AtomicInteger writes = new AtomicInteger();
+        backend.addWriteListener(entityType -> writes.incrementAndGet());
+        backend.attendees().saveAll(attendees);
+        assertEquals(0, writes.get(), "Unchanged shards are not rewritten");
+
+        // A single put only rewrites the shard of its uniqueId
+        FileTime old = FileTime.fromMillis(0);
+        for (File shard : SHARD_DIRECTORY.toFile().listFiles((dir, name) -> name.endsWith(".json"))) {
+            Files.setLastModifiedTime(shard.toPath(), old);
+        }
+        Attendee added = new Attendee("Ada", "Lovelace", PaymentType.PAYPAL);
+        backend.attendees().put(added);
+        int touched = 0;
+        for (File shard : SHARD_DIRECTORY.toFile().listFiles((dir, name) -> name.endsWith(".json"))) {
+            if (!Files.getLastModifiedTime(shard.toPath()).equals(old)) {
+                touched++;
+            }
+        }
+        assertEquals(1, touched);
+        assertEquals(1, writes.get());
+
+        backend.attendees().remove(first.getUniqueId());
+        JsonStorageBackend reopened = new JsonStorageBackend(new JsonPersistenceManager(), SHARD_DIRECTORY, 4);
+        assertEquals(40, reopened.attendees().loadAll().size());
+        assertNull(reopened.attendees().find(first.getUniqueId()));
+        assertNotNull(reopened.attendees().find(added.getUniqueId()));
+    }
+
+    @Test
+    void testBackupHoldsOffShardWrites() throws Exception {
+        JsonPersistenceManager persistenceManager = new JsonPersistenceManager();
+        JsonStorageBackend backend = new JsonStorageBackend(persistenceManager, SHARD_DIRECTORY, 4);
+
+        // The shards wait for the same barrier as the manager's own files
+        persistenceManager.getBackupLock().writeLock().lock();
+        CompletableFuture<Void> put;
+        try {
+            put = CompletableFuture.runAsync(() ->
+                backend.attendees().put(new Attendee("Ada", "Lovelace", PaymentType.PAYPAL)));
+            assertThrows(TimeoutException.class, () -> put.get(200, TimeUnit.MILLISECONDS));
+        } finally {
+            persistenceManager.getBackupLock().writeLock().unlock();
+        }
+        put.get(5, TimeUnit.SECONDS);
+        assertEquals(1, backend.attendees().loadAll().size());
+    }
+}
@@ -0,0 +1,147 @@
+package conf.persistence;
+
+import conf.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Year;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogStructuredBackendTest {
+    private static final Path STORE_DIRECTORY = Paths.get("log_store_test");
+    private static final Path BACKUP_DIRECTORY = Paths.get("log_store_backup_test");
+
+    @AfterEach
+    void tearDown() {
+        for (Path directory : new Path[] {STORE_DIRECTORY, BACKUP_DIRECTORY}) {
+            File[] files = directory.toFile().listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.toFile().delete();
+        }
+    }
+
+    @Test
+    void testPointReadsScansAndBatches() {
+        Speaker ada = new Speaker("Ada", "Lovelace", "S", "a-1");
+        Speaker alan = new Speaker("Alan", "Turing", "M", "b-2");
+        Speaker grace = new Speaker("Grace", "Hopper", "L", "c-3");
+        try (LogStructuredBackend backend = new LogStructuredBackend(STORE_DIRECTORY)) {
+            backend.speakers().saveAll(Arrays.asList(grace, ada));
+            backend.speakers().write(new WriteBatch<Speaker>().put(alan).remove("c-3"));
+
+            assertEquals("Turing", backend.speakers().find("b-2").getLastName());
+            assertNull(backend.speakers().find("c-3"));
+            List<Speaker> scanned = backend.speakers().scan("a-1", "b-2");
+            assertEquals(1, scanned.size());
+            assertEquals("a-1", scanned.get(0).getUniqueId());
+        }
+
+        // Everything is read back from the log when opened again
+        try (LogStructuredBackend backend = new LogStructuredBackend(STORE_DIRECTORY)) {
+            List<Speaker> speakers = backend.speakers().loadAll();
+            assertEquals(2, speakers.size());
+            assertEquals("a-1", speakers.get(0).getUniqueId());
+            assertEquals("b-2", speakers.get(1).getUniqueId());
+        }
+    }
+
+    @Test
+    void testListsConferenceAndSessions() {
+        Speaker speaker = new Speaker("Chandra", "Guntur", "M");
+        try (LogStructuredBackend backend = new LogStructuredBackend(STORE_DIRECTORY)) {
+            backend.saveConference(new Conference("Mars Developer Summit", "MDS", Year.of(2025), "Elysium Planitia"));
+            backend.speakers().put(speaker);
+            backend.sessions().saveAll(Arrays.asList(
+                new Session("Records", "All about records", speaker),
+                new Session("Sealed types", "All about sealed types", speaker)));
+            backend.staff().saveAll(Arrays.asList(new Staff("Niklaus", "Wirth", "L"), new Staff("Duke", "Java", "XL")));
+            backend.staff().saveAll(Arrays.asList(new Staff("Duke", "Java", "XL")));
+
+            Conference conference = backend.loadAll();
+            assertEquals("MDS", conference.getNickName());
+            assertEquals(1, conference.getStaff().size());
+            Speaker loaded = conference.getSpeakers().iterator().next();
+            for (Session session : conference.getSessions()) {
+                assertSame(loaded, session.getMainSpeakerModerator());
+            }
+            assertEquals("Records", backend.sessions().loadAll().get(0).getSessionTitle());
+        }
+    }
+
+    @Test
+    void testConferenceHeaderMatchesJsonBackend() {
+        Conference conference = new Conference("Mars Developer Summit", "MDS", Year.of(2025), "Elysium Planitia");
+        conference.setWinner1(new Attendee("Ada", "Lovelace", PaymentType.PAYPAL));
+        conference.setWinner2(new Speaker("Grace", "Hopper", "M"));
+        conference.setWinner3(new Staff("Duke", "Java", "XL"));
+
+        try (LogStructuredBackend logBackend = new LogStructuredBackend(STORE_DIRECTORY);
+             JsonStorageBackend jsonBackend = new JsonStorageBackend(new JsonPersistenceManager())) {
+            logBackend.saveConference(conference);
+            jsonBackend.saveConference(conference);
+            Conference fromLog = logBackend.loadConference();
+            Conference fromJson = jsonBackend.loadConference();
+
+            assertEquals(fromJson.getVenue(), fromLog.getVenue());
+            assertEquals("Lovelace", fromLog.getWinner1().getLastName());
+            assertEquals(fromJson.getWinner1().getLastName(), fromLog.getWinner1().getLastName());
+            assertEquals(fromJson.getWinner2().getLastName(), fromLog.getWinner2().getLastName());
+            assertEquals(fromJson.getWinner3().getFirstName(), fromLog.getWinner3().getFirstName());
+        } finally {
+            new File("conference_data.json").delete();
+        }
+    }
+
+    @Test
+    void testTornWriteIsDropped() throws IOException {
+        try (LogStructuredBackend backend = new LogStructuredBackend(STORE_DIRECTORY)) {
+            backend.attendees().put(new Attendee("Ada", "Lovelace", PaymentType.PAYPAL, "a-1"));
+            backend.attendees().put(new Attendee("Grace", "Hopper", PaymentType.VISA, "b-2"));
+        }
+        // Cut the last batch short, as a crash part way through the write would
+        File log = STORE_DIRECTORY.resolve("attendees.log").toFile();
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            file.setLength(file.length() - 5);
+        }
+
+        try (LogStructuredBackend backend = new LogStructuredBackend(STORE_DIRECTORY)) {
+            assertNotNull(backend.attendees().find("a-1"));
+            assertNull(backend.attendees().find("b-2"));
+            // New writes go after the last complete batch
+            backend.attendees().put(new Attendee("Alan", "Turing", PaymentType.AMEX, "c-3"));
+        }
+        try (LogStructuredBackend backend = new LogStructuredBackend(STORE_DIRECTORY)) {
+            assertEquals(2, backend.attendees().loadAll().size());
+        }
+    }
+
+    @Test
+    void testDirectoryIsLocked() {
+        try (LogStructuredBackend backend = new LogStructuredBackend(STORE_DIRECTORY)) {
+            assertThrows(IllegalStateException.class, () -> new LogStructuredBackend(STORE_DIRECTORY));
+        }
+    }
+
+    @Test
+    void testBackupWhileWriting() {
+        try (LogStructuredBackend backend = new LogStructuredBackend(STORE_DIRECTORY)) {
+            backend.vendors().put(new VendorSponsor("Duke", "Java", "Booth 1", "v-1"));
+            backend.backup(BACKUP_DIRECTORY);
+            backend.vendors().put(new VendorSponsor("Tux", "Penguin", "Booth 2", "v-2"));
+        }
+        try (LogStructuredBackend backup = new LogStructuredBackend(BACKUP_DIRECTORY)) {
+            assertEquals(1, backup.vendors().loadAll().size());
+            assertNotNull(backup.vendors().find("v-1"));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package conf.persistence;
+
+import conf.Attendee;
+import conf.Conference;
+import conf.PaymentType;
+import conf.Staff;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.io.File;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindPersistenceManagerTest {
+    private static final String STAFF_TEST_FILE = "staff_data.json";
+    private static final String ATTENDEES_JOURNAL_FILE = "attendees_data.journal";
+    private WriteBehindPersistenceManager persistenceManager;
+
+    @BeforeEach
+    void setUp() {
+        persistenceManager = new WriteBehindPersistenceManager(10_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        persistenceManager.close();
+        for (String fileName : new String[] {STAFF_TEST_FILE, "staff_data.crc", ATTENDEES_JOURNAL_FILE,
+                "attendees_data.json", "attendees_data.idx", "attendees_data.crc", "conference_data.json"}) {
+            File file = new File(fileName);
+            if (file.exists()) {
+                file.delete();
+            }
+        }
+    }
+
+    @Test
+    void testSavesAreDeferredAndCoalesced() {
+        List<Staff> staff = new ArrayList<>();
+        staff.add(new Staff("Linus", "Torvalds", "L"));
+        persistenceManager.saveStaff(staff);
+        staff.add(new Staff("Guido", "van Rossum", "XL"));
+        persistenceManager.saveStaff(staff);
+
+        // Nothing has been written yet, the delay is far in the future
+        assertFalse(new File(STAFF_TEST_FILE).exists());
+
+        // Loading waits for the pending save, and only the latest one is written
+        List<Staff> loaded = persistenceManager.loadStaff();
+        assertEquals(2, loaded.size());
+        assertEquals("van Rossum", loaded.get(1).getLastName());
+    }
+
+    @Test
+    void testFailuresAreReported() throws InterruptedException {
+        // A directory where the file should be makes the write fail
+        File blocker = new File(STAFF_TEST_FILE);
+        assertTrue(blocker.mkdir());
+
+        CountDownLatch reported = new CountDownLatch(1);
+        AtomicReference<EntityType> failedType = new AtomicReference<>();
+        persistenceManager.addSaveFailureListener((entityType, failure) -> {
+            failedType.set(entityType);
+            reported.countDown();
+        });
+
+        persistenceManager.saveStaff(Arrays.asList(new Staff("Ada", "Lovelace", "S/M")));
+        assertThrows(RuntimeException.class, persistenceManager::flush);
+
+        assertTrue(reported.await(5, TimeUnit.SECONDS));
+        assertEquals(EntityType.STAFF, failedType.get());
+
+        // The failed save was kept and is written once it can be
+        assertTrue(blocker.delete());
+        persistenceManager.flush();
+        assertEquals("Lovelace", persistenceManager.loadStaff().get(0).getLastName());
+    }
+
+    @Test
+    void testAppendsAfterAFailureAreKept() {
+        File blocker = new File(ATTENDEES_JOURNAL_FILE);
+        assertTrue(blocker.mkdir());
+
+        persistenceManager.appendAttendee(new Attendee("Ada", "Lovelace", PaymentType.PAYPAL));
+        persistenceManager.appendAttendee(new Attendee("Alan", "Turing", PaymentType.AMEX));
+        assertThrows(RuntimeException.class, persistenceManager::flush);
+
+        assertTrue(blocker.delete());
+        List<Attendee> loaded = persistenceManager.loadAttendees();
+        assertEquals(2, loaded.size());
+        assertEquals("Turing", loaded.get(1).getLastName());
+    }
+
+    @Test
+    void testConferenceIsCapturedWhenSaved() {
+        Conference conference = new Conference("Java One", "J1", Year.of(2025), "Moscone");
+        conference.addStaff(new Staff("Linus", "Torvalds", "L"));
+        persistenceManager.saveConference(conference);
+
+        // Changed after saving, before the writer gets to it
+        conference.addStaff(new Staff("Guido", "van Rossum", "XL"));
+
+        assertEquals(1, persistenceManager.loadConference().getStaff().size());
+    }
+
+    @Test
+    void testRecordsAreCapturedWhenSaved() {
+        Staff linus = new Staff("Linus", "Torvalds", "L");
+        persistenceManager.saveStaff(Arrays.asList(linus));
+        Attendee ada = new Attendee("Ada", "Lovelace", PaymentType.PAYPAL);
+        persistenceManager.appendAttendee(ada);
+
+        // Edited in place after saving, before the writer gets to it
+        linus.setLastName("Changed");
+        ada.setLastName("Changed");
+
+        assertEquals("Torvalds", persistenceManager.loadStaff().get(0).getLastName());
+        assertEquals("Lovelace", persistenceManager.findAttendee(ada.getUniqueId()).getLastName());
+    }
+}